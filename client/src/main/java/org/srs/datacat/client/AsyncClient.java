@@ -0,0 +1,203 @@
+package org.srs.datacat.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import org.srs.datacat.client.exception.DcException;
+import org.srs.datacat.model.DatacatNode;
+import org.srs.datacat.model.DatasetModel;
+
+/**
+ * Asynchronous methods for a {@link Client}. Requests are run on a fixed number of threads, which
+ * limits how many are in flight at once, and reuse the client's (pooled) connections.
+ *
+ * Futures fail with the same exceptions the synchronous methods throw. The bulk methods wait for
+ * all requests and throw the first failure.
+ *
+ * @author bvan
+ */
+public class AsyncClient implements AutoCloseable {
+
+    private final Client client;
+    private final ListeningExecutorService executor;
+
+    /**
+     * Create an async client.
+     *
+     * @param client Client to make requests with
+     * @param maxConcurrency Maximum number of requests in flight. Should be no more than the
+     * maximum number of connections per route of the client's connection pool.
+     */
+    public AsyncClient(Client client, int maxConcurrency){
+        if(maxConcurrency < 1){
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.client = client;
+        this.executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(maxConcurrency,
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("datacat-client-async-%d")
+                    .build()));
+    }
+
+    public Client getClient(){
+        return client;
+    }
+
+    public ListenableFuture<Boolean> exists(final String path){
+        return exists(path, null, null);
+    }
+
+    /**
+     * @see Client#exists(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public ListenableFuture<Boolean> exists(final String path, final String versionId, final String site){
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call(){
+                return client.exists(path, versionId, site);
+            }
+        });
+    }
+
+    public ListenableFuture<DatacatNode> getObject(final String path){
+        return getObject(path, null, null);
+    }
+
+    /**
+     * @see Client#getObject(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public ListenableFuture<DatacatNode> getObject(final String path, final String versionId, final String site){
+        return executor.submit(new Callable<DatacatNode>() {
+            @Override
+            public DatacatNode call(){
+                return client.getObject(path, versionId, site);
+            }
+        });
+    }
+
+    /**
+     * @see Client#createDataset(java.lang.String, org.srs.datacat.model.DatasetModel)
+     */
+    public ListenableFuture<DatasetModel> createDataset(final String path, final DatasetModel payload){
+        return executor.submit(new Callable<DatasetModel>() {
+            @Override
+            public DatasetModel call(){
+                return client.createDataset(path, payload);
+            }
+        });
+    }
+
+    /**
+     * @see Client#patchDataset(java.lang.String, java.lang.String, java.lang.String,
+     * org.srs.datacat.model.DatasetModel)
+     */
+    public ListenableFuture<DatasetModel> patchDataset(final String path, final String versionId,
+            final String site, final DatasetModel payload){
+        return executor.submit(new Callable<DatasetModel>() {
+            @Override
+            public DatasetModel call(){
+                return client.patchDataset(path, versionId, site, payload);
+            }
+        });
+    }
+
+    /**
+     * Check if records exist at all the given paths.
+     *
+     * @param paths Paths to check
+     * @return Whether each path exists, in the order given
+     */
+    public Map<String, Boolean> existsAll(Collection<String> paths){
+        List<ListenableFuture<Boolean>> futures = new ArrayList<>(paths.size());
+        for(String path: paths){
+            futures.add(exists(path));
+        }
+        return toMap(paths, futures);
+    }
+
+    /**
+     * Get the objects at all the given paths.
+     *
+     * @param paths Paths of objects
+     * @param versionId version ID specifier for datasets, may be null
+     * @param site site specifier for datasets, may be null
+     * @return The object at each path, in the order given
+     * @throws DcException if any object couldn't be retrieved
+     */
+    public Map<String, DatacatNode> getObjects(Collection<String> paths, String versionId, String site){
+        List<ListenableFuture<DatacatNode>> futures = new ArrayList<>(paths.size());
+        for(String path: paths){
+            futures.add(getObject(path, versionId, site));
+        }
+        return toMap(paths, futures);
+    }
+
+    /**
+     * Create datasets.
+     *
+     * @param path Path of the container to create the datasets in
+     * @param payloads Datasets to create
+     * @return The datasets that were created, in the order given
+     * @throws DcException if any dataset couldn't be created
+     */
+    public List<DatasetModel> createDatasets(String path, Collection<DatasetModel> payloads){
+        List<ListenableFuture<DatasetModel>> futures = new ArrayList<>(payloads.size());
+        for(DatasetModel payload: payloads){
+            futures.add(createDataset(path, payload));
+        }
+        return getAll(futures);
+    }
+
+    private static <T> Map<String, T> toMap(Collection<String> paths, List<ListenableFuture<T>> futures){
+        List<T> results = getAll(futures);
+        Map<String, T> ret = new LinkedHashMap<>();
+        int i = 0;
+        for(String path: paths){
+            ret.put(path, results.get(i++));
+        }
+        return ret;
+    }
+
+    private static <T> List<T> getAll(List<ListenableFuture<T>> futures){
+        try {
+            return Futures.allAsList(futures).get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelAll(futures);
+            throw new IllegalStateException("Interrupted while waiting for requests", ex);
+        } catch(ExecutionException ex) {
+            cancelAll(futures);
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void cancelAll(List<? extends ListenableFuture<?>> futures){
+        for(ListenableFuture<?> future: futures){
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Stop accepting requests. Requests already submitted still run. The client isn't closed.
+     */
+    @Override
+    public void close(){
+        executor.shutdown();
+    }
+
+}
@@ -1,18 +1,28 @@
 package org.srs.datacat.client;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.ClientResponseFilter;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Feature;
 import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
@@ -21,6 +31,10 @@ import javax.ws.rs.core.Response.Status;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.filter.EncodingFeature;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+import org.srs.datacat.client.auth.RequestFilterProperty;
 import org.srs.datacat.client.exception.DcClientException;
 import org.srs.datacat.client.exception.DcException;
 import org.srs.datacat.client.exception.DcRequestException;
@@ -39,6 +53,7 @@ import org.srs.datacat.model.security.DcAclEntry;
 import org.srs.datacat.model.security.DcGroup;
 import org.srs.datacat.rest.ErrorResponse;
 import org.srs.datacat.rest.JacksonFeature;
+import org.srs.datacat.rest.PageModel;
 import org.srs.datacat.rest.security.AclEntryProxy;
 import org.srs.datacat.shared.Provider;
 import org.srs.vfs.PathUtils;
@@ -49,6 +64,8 @@ import org.srs.vfs.PathUtils;
  * @author bvan
  */
 public class Client {
+    private static final int VALIDATOR_CACHE_SIZE = 1000;
+
     private javax.ws.rs.client.Client client;
     private WebTarget baseTarget;
     private Path pathResource;
@@ -57,6 +74,23 @@ public class Client {
     private Containers containersResource;
     private Permissions permissionsResource;
     private ModelProvider modelProvider;
+    private ObjectMapper jsonMapper;
+    private Cache<String, Validated> validatorCache = CacheBuilder.newBuilder()
+            .maximumSize(VALIDATOR_CACHE_SIZE)
+            .build();
+
+    /**
+     * An object we've already retrieved and the entity tag it was returned with.
+     */
+    private static final class Validated {
+        private final EntityTag tag;
+        private final DatacatNode object;
+
+        Validated(EntityTag tag, DatacatNode object){
+            this.tag = tag;
+            this.object = object;
+        }
+    }
 
     public Client(URI url, List<ClientRequestFilter> requestFilters,
             List<ClientResponseFilter> responseFilters, List<Feature> features,
@@ -72,15 +106,31 @@ public class Client {
                 Collections.<String, Object>emptyMap());
     }
 
+    /**
+     * A view of a client which runs an extra filter on every request.
+     */
+    private Client(Client shared, ClientRequestFilter requestFilter){
+        this.client = shared.client;
+        this.baseTarget = shared.baseTarget;
+        this.modelProvider = shared.modelProvider;
+        this.jsonMapper = shared.jsonMapper;
+        this.validatorCache = shared.validatorCache;
+        initResources(requestFilter);
+    }
+
     private void init(URI baseUrl, List<ClientRequestFilter> requestFilters,
             List<ClientResponseFilter> responseFilters, List<Feature> features,
             Map<String, Object> properties){
         this.modelProvider = new Provider();
+        JacksonFeature jacksonFeature = new JacksonFeature(modelProvider);
+        this.jsonMapper = jacksonFeature.getJsonMapper();
         ClientConfig clientConfig = new ClientConfig();
         clientConfig.connectorProvider(new ApacheConnectorProvider());
         ClientBuilder builder = ClientBuilder.newBuilder()
                 .withConfig(clientConfig)
-                .register(new JacksonFeature(modelProvider))
+                .register(jacksonFeature)
+                // Sends Accept-Encoding and transparently decodes compressed responses
+                .register(new EncodingFeature(GZipEncoder.class, DeflateEncoder.class))
                 .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true);
 
         for(ClientRequestFilter filter: requestFilters){
@@ -99,13 +149,48 @@ public class Client {
             builder.property(e.getKey(), e.getValue());
         }
 
+        // Runs the filter passed with each request by clients from withRequestFilter
+        builder.register(new RequestFilterProperty());
+
         this.client = builder.build();
         this.baseTarget = client.target(baseUrl);
-        this.pathResource = new Path(baseTarget);
-        this.searchResource = new Search(baseTarget);
-        this.datasetsResource = new Datasets(baseTarget);
-        this.containersResource = new Containers(baseTarget);
-        this.permissionsResource = new Permissions(baseTarget);
+        initResources(null);
+    }
+
+    private void initResources(ClientRequestFilter requestFilter){
+        this.pathResource = new Path(baseTarget, requestFilter);
+        this.searchResource = new Search(baseTarget, requestFilter);
+        this.datasetsResource = new Datasets(baseTarget, requestFilter);
+        this.containersResource = new Containers(baseTarget, requestFilter);
+        this.permissionsResource = new Permissions(baseTarget, requestFilter);
+    }
+
+    /**
+     * Get a client which shares this client's connections and configuration, and also runs the
+     * given filter on each request. This is cheap, so it can be used to authenticate each user 
+     * of a long-lived client.
+     * @param requestFilter Filter to run on each request.
+     * @return A client
+     */
+    public Client withRequestFilter(ClientRequestFilter requestFilter){
+        return new Client(this, requestFilter);
+    }
+
+    /**
+     * Get asynchronous and bulk methods for this client. Close the returned client when done.
+     * @param maxConcurrency Maximum number of requests in flight
+     * @return An async client
+     */
+    public AsyncClient async(int maxConcurrency){
+        return new AsyncClient(this, maxConcurrency);
+    }
+
+    /**
+     * Close the client. Clients from {@link #withRequestFilter} share the same resources, so they
+     * are closed too. A shared {@link ConnectionPool} stays open.
+     */
+    public void close(){
+        client.close();
     }
 
     /**
@@ -181,6 +266,48 @@ public class Client {
         return resp.readEntity(new GenericType<List<DatacatNode>>() {});
     }
 
+    /**
+     * Iterate over the datasets and containers at given path. Children are retrieved a page at a 
+     * time, as the iterator is consumed, by following the cursor the server returns with each page.
+     * @param path Path of container to list.
+     * @param versionId version ID specifier for datasets you want back (null, "current", "0", "1", etc...)
+     * @param site site specifier for datasets you want back ("any", "master", "SLAC", etc...)
+     * @param pageSize Number of children to retrieve per request.
+     * @return An iterator over all children
+     */
+    public Iterator<DatacatNode> getChildrenIterator(final String path, final String versionId, 
+            final String site, final int pageSize){
+        return new Iterator<DatacatNode>() {
+            private Iterator<DatacatNode> page = Collections.<DatacatNode>emptyIterator();
+            private String cursor = "";
+
+            @Override
+            public boolean hasNext(){
+                while(!page.hasNext() && cursor != null){
+                    Response resp = pathResource.getChildrenAfter(path, Optional.fromNullable(versionId),
+                            Optional.fromNullable(site), cursor, Optional.of(pageSize));
+                    checkResponse(resp);
+                    cursor = resp.getHeaderString("x-pagination-after");
+                    page = resp.readEntity(new GenericType<List<DatacatNode>>() {}).iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public DatacatNode next(){
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+
+            @Override
+            public void remove(){
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     /**
      * Get children containers.
      * @param path Path to search into for child containers.
@@ -224,9 +351,25 @@ public class Client {
      * @param site site specifier for datasets you want back ("any", "master", "SLAC", etc...)
      */
     public DatacatNode getObject(String path, String versionId, String site){
-        Response resp = pathResource.getObject(path, Optional.fromNullable(versionId), Optional.fromNullable(site));
+        // Revalidate objects we've seen before instead of downloading them again.
+        String key = path + ";v=" + versionId + ";s=" + site;
+        Validated cached = validatorCache.getIfPresent(key);
+        Optional<EntityTag> ifNoneMatch = Optional.fromNullable(cached != null ? cached.tag : null);
+        Response resp = pathResource.getObject(path, Optional.fromNullable(versionId), 
+                Optional.fromNullable(site), ifNoneMatch);
+        if(cached != null && resp.getStatus() == Status.NOT_MODIFIED.getStatusCode()){
+            resp.close();
+            return cached.object;
+        }
         checkResponse(resp);
-        return resp.readEntity(new GenericType<DatacatNode>() {});
+        DatacatNode ret = resp.readEntity(new GenericType<DatacatNode>() {});
+        EntityTag tag = resp.getEntityTag();
+        if(tag != null){
+            validatorCache.put(key, new Validated(tag, ret));
+        } else {
+            validatorCache.invalidate(key);
+        }
+        return ret;
     }
 
     /**
@@ -411,6 +554,145 @@ public class Client {
         }
     }
 
+    /**
+     * Aggregate the datasets matching a search, instead of returning them. Only the aggregated 
+     * rows are returned, one for each distinct combination of the group by fields.
+     * @param target The path (or glob-like path) of which to search
+     * @param versionId Version Id to aggregate
+     * @param site Site to aggregate
+     * @param query Query String
+     * @param folderQuery Query string for matching folders
+     * @param groupBy Fields and Metadata fields to group by, or null for a single row
+     * @param aggregates Aggregates to compute, as in {@code count} or {@code sum(fileSizeBytes)}.
+     * {@code count}, {@code sum}, {@code min}, {@code max} and {@code avg} are supported.
+     * @return The rows, mapping each group by field and aggregate to its value
+     */
+    public List<Map<String, Object>> aggregateDatasets(String target, String versionId, String site,
+            String query, String folderQuery, String[] groupBy, String[] aggregates){
+        try {
+            Response resp = searchResource.aggregateDatasets(target, Optional.fromNullable(versionId),
+                    Optional.fromNullable(site), Optional.fromNullable(query),
+                    Optional.fromNullable(folderQuery), Optional.fromNullable(groupBy), aggregates);
+            checkResponse(resp);
+            return resp.readEntity(new GenericType<List<Map<String, Object>>>() {});
+        } catch(WebApplicationException ex) {
+            throw new DcRequestException(ex);
+        }
+    }
+
+    /**
+     * Count the distinct values of fields over the datasets matching a search, as in which 
+     * values of a metadata field exist under a path.
+     * @param target The path (or glob-like path) of which to search
+     * @param versionId Version Id to count
+     * @param site Site to count
+     * @param query Query String
+     * @param folderQuery Query string for matching folders
+     * @param fields Fields and Metadata fields to count the values of
+     * @param limit Maximum number of values to return for each field, or null for the default
+     * @return For each field, its most common values first, each a map with a "value" and a "count"
+     */
+    public Map<String, List<Map<String, Object>>> facetDatasets(String target, String versionId, String site,
+            String query, String folderQuery, String[] fields, Integer limit){
+        try {
+            Response resp = searchResource.facetDatasets(target, Optional.fromNullable(versionId),
+                    Optional.fromNullable(site), Optional.fromNullable(query),
+                    Optional.fromNullable(folderQuery), fields, Optional.fromNullable(limit));
+            checkResponse(resp);
+            return resp.readEntity(new GenericType<Map<String, List<Map<String, Object>>>>() {});
+        } catch(WebApplicationException ex) {
+            throw new DcRequestException(ex);
+        }
+    }
+
+    /**
+     * Search a target for containers matching a query. The sort and the limit are applied by the 
+     * server.
+     * @param target The path (or glob-like path) of which to search
+     * @param query Query String
+     * @param sort Fields and Metadata fields to sort on.
+     * @param show Metadata fields to optionally return
+     * @param offset Offset at which to start returning objects.
+     * @param max Maximum number of containers to return
+     * @return The containers
+     */
+    public List<DatasetContainer> searchForContainers(String target, String query, String[] sort, String[] show,
+            Integer offset, Integer max){
+        try {
+            Response resp = searchResource.searchForContainers(target, Optional.fromNullable(query),
+                    Optional.fromNullable(sort), Optional.fromNullable(show),
+                    Optional.<Integer>fromNullable(offset), Optional.<Integer>fromNullable(max));
+            checkResponse(resp);
+            return resp.readEntity(new GenericType<List<DatasetContainer>>() {});
+        } catch(WebApplicationException ex) {
+            throw new DcRequestException(ex);
+        }
+    }
+
+    /**
+     * Get one page of search results. The datasets are read from the response one at a time, 
+     * rather than reading the whole response first.
+     * @see #searchForDatasets(java.lang.String, java.lang.String, java.lang.String, java.lang.String, 
+     * java.lang.String, java.lang.String[], java.lang.String[], java.lang.Integer, java.lang.Integer) 
+     * @return The datasets in the page
+     */
+    public List<DatasetModel> searchForDatasetsPage(String target, String versionId, String site,
+            String query, String folderQuery, String[] sort, String[] show, int offset, int max){
+        Response resp;
+        try {
+            resp = searchResource.searchForDatasets(target, Optional.fromNullable(versionId),
+                    Optional.fromNullable(site), Optional.fromNullable(query),
+                    Optional.fromNullable(folderQuery),
+                    Optional.fromNullable(sort), Optional.fromNullable(show),
+                    Optional.of(offset), Optional.of(max));
+        } catch(WebApplicationException ex) {
+            throw new DcRequestException(ex);
+        }
+        checkResponse(resp);
+        List<DatasetModel> results = new ArrayList<>();
+        try(InputStream stream = resp.readEntity(InputStream.class);
+                JsonParser parser = jsonMapper.getFactory().createParser(stream)) {
+            // Read each dataset from the results array as it arrives, skipping everything else
+            if(parser.nextToken() == JsonToken.START_OBJECT){
+                while(parser.nextToken() == JsonToken.FIELD_NAME){
+                    String field = parser.getCurrentName();
+                    if(parser.nextToken() == JsonToken.START_ARRAY && "results".equals(field)){
+                        while(parser.nextToken() == JsonToken.START_OBJECT){
+                            results.add(jsonMapper.readValue(parser, DatasetModel.class));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch(IOException ex) {
+            throw new DcException("Unable to read search results", ex);
+        } finally {
+            resp.close();
+        }
+        return results;
+    }
+
+    /**
+     * Get everything needed to display a path in a single request: the object, its parent, 
+     * your permissions, child and sibling containers, and a page of datasets.
+     * @param path Path of the object
+     * @param versionId Version of the datasets, or null for the current version
+     * @param site Site of the datasets, or null for the master site
+     * @param offset Offset of the first dataset
+     * @param max Maximum number of datasets
+     * @param coffset Offset of the first container
+     * @param cmax Maximum number of containers
+     * @return The page
+     */
+    public PageModel getPage(String path, String versionId, String site, int offset, int max,
+            int coffset, int cmax){
+        Response resp = pathResource.getPage(path, Optional.fromNullable(versionId), Optional.fromNullable(site),
+                Optional.of(offset), Optional.of(max), Optional.of(coffset), Optional.of(cmax));
+        checkResponse(resp);
+        return resp.readEntity(PageModel.class);
+    }
+
     /**
      * Get the effective permissions for you or a specific group.
      * @param path Path of DatacatNode you want to check permissions for.
@@ -54,6 +54,14 @@ public class ClientBuilder {
         features.add(feature);
         return this;
     }
+
+    /**
+     * Use a pool of persistent connections, which may be shared with other clients.
+     */
+    public ClientBuilder setConnectionPool(ConnectionPool pool){
+        pool.configure(clientProperties);
+        return this;
+    }
     
     public Client build(){
         return new Client(this.url, this.clientRequestFilters, 
@@ -72,6 +80,10 @@ public class ClientBuilder {
             builder.addClientRequestFilter(authFilter);
         }
         builder.setUrl(config.get("url"));
+        if(config.containsKey("maxConnections") || config.containsKey("maxConnectionsPerRoute")
+                || config.containsKey("idleTimeout")){
+            builder.setConnectionPool(ConnectionPool.fromConfig(config));
+        }
         return builder;
     }
     
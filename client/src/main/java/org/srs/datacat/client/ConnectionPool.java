@@ -0,0 +1,109 @@
+package org.srs.datacat.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+
+/**
+ * A pool of persistent HTTP connections which can be shared by any number of clients.
+ * Connections are kept alive between requests, limited in total and per route (host), and
+ * closed by a background thread once they have been idle for too long.
+ *
+ * The pool is thread-safe. Close it when the clients using it are no longer needed.
+ *
+ * @author bvan
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 50;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ScheduledExecutorService evictor;
+    private final long idleTimeoutMillis;
+
+    public ConnectionPool(){
+        this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Create a connection pool.
+     *
+     * @param maxTotal Maximum number of connections
+     * @param maxPerRoute Maximum number of connections to a single host
+     * @param idleTimeoutMillis Time after which an idle connection is closed
+     */
+    public ConnectionPool(int maxTotal, int maxPerRoute, long idleTimeoutMillis){
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // Check a connection is still open before reusing it if it's been idle for a while
+        connectionManager.setValidateAfterInactivity((int) Math.min(idleTimeoutMillis, 2000));
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("datacat-client-evictor-%d")
+                .build());
+        long period = Math.max(idleTimeoutMillis / 2, 1000);
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run(){
+                evictIdleConnections();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a connection pool from a client configuration. The keys are {@code maxConnections},
+     * {@code maxConnectionsPerRoute} and {@code idleTimeout} (milliseconds).
+     *
+     * @param config Configuration
+     * @return A connection pool
+     */
+    public static ConnectionPool fromConfig(Map<String, String> config){
+        return new ConnectionPool(
+                intValue(config.get("maxConnections"), DEFAULT_MAX_TOTAL),
+                intValue(config.get("maxConnectionsPerRoute"), DEFAULT_MAX_PER_ROUTE),
+                config.get("idleTimeout") != null ? Long.parseLong(config.get("idleTimeout").trim())
+                        : DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    private static int intValue(String value, int defaultValue){
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    /**
+     * Close expired connections, and connections which have been idle for too long.
+     */
+    public void evictIdleConnections(){
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Client properties which make a client use this pool.
+     *
+     * @param properties Client properties to add to
+     */
+    void configure(Map<String, Object> properties){
+        properties.put(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        // Closing one client must not close the pool for the others
+        properties.put(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager(){
+        return connectionManager;
+    }
+
+    @Override
+    public void close(){
+        evictor.shutdownNow();
+        connectionManager.shutdown();
+    }
+
+}
@@ -8,7 +8,10 @@ import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -18,17 +21,32 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.xml.bind.DatatypeConverter;
 
 /**
+ * Signs requests with an HMAC of the method, path, content headers and date.
+ *
+ * The filter is thread-safe. Each thread keeps its own initialized {@link Mac} and date format,
+ * since neither is thread-safe and both are relatively expensive to create.
  *
  * @author bvan
  */
 public class HmacAuthFilter implements ClientRequestFilter {
+    private static final Logger LOG = Logger.getLogger(HmacAuthFilter.class.getName());
+    private static final String HMACSHA1 = "HmacSHA1";
+
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue(){
+            SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return dateFormat;
+        }
+    };
+
     private String keyId;
     private byte[] secretKey;
     private String headerName;
     private String signatureFormat;
     private URI baseUrl;
-
-    private static final String HMACSHA1 = "HmacSHA1";
+    private final ThreadLocal<Mac> hmac = new ThreadLocal<>();
 
     public HmacAuthFilter(String keyId, String secretKey, String headerName, String signatureFormat,
             URI url) {
@@ -51,16 +69,15 @@ public class HmacAuthFilter implements ClientRequestFilter {
         if(baseUrl != null){
             path = path.replace(baseUrl.getPath(), "");
         }
-        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
-        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-        
         StringBuilder fullHeader = new StringBuilder()
                 .append(method).append("\n")
                 .append(path).append("\n")
                 .append(Strings.nullToEmpty((String)headers.getFirst("content-md5"))).append("\n")
                 .append(Strings.nullToEmpty((String)headers.getFirst("content-type"))).append("\n")
-                .append(dateFormat.format(headers.getFirst("date"))).append("\n");
-        System.out.println(fullHeader.toString());
+                .append(DATE_FORMAT.get().format(headers.getFirst("date"))).append("\n");
+        if(LOG.isLoggable(Level.FINE)){
+            LOG.log(Level.FINE, "Signing request:\n{0}", fullHeader);
+        }
         return fullHeader.toString();
     }
 
@@ -69,19 +86,13 @@ public class HmacAuthFilter implements ClientRequestFilter {
         MultivaluedMap<String, Object> headers = crc.getHeaders();
         checkDateHeader(headers);
         doFilter(crc.getMethod(), crc.getUri(), headers);
-        System.out.println(crc.getHeaders());
-        
     }
         
     public void doFilter(String method, URI uri, MultivaluedMap<String, Object> headers) throws IOException{
         String fullHeader = requestToString(method, uri, headers);
 
         try {
-            Mac hmac = Mac.getInstance(HMACSHA1);
-            //Get key from database using clientKeyID
-            SecretKey hmacKey = new SecretKeySpec(secretKey, HMACSHA1);
-            hmac.init(hmacKey);
-            byte[] serverRawDigest = hmac.doFinal(fullHeader.getBytes());
+            byte[] serverRawDigest = getMac().doFinal(fullHeader.getBytes());
             String digest = DatatypeConverter.printBase64Binary(serverRawDigest);
             String header = MessageFormat.format(signatureFormat, keyId, digest);
             headers.add(headerName, header);
@@ -90,6 +101,21 @@ public class HmacAuthFilter implements ClientRequestFilter {
         }
     }
 
+    /**
+     * Get this thread's Mac, initialized with the secret key. doFinal resets the Mac, so it can
+     * be reused for the next request.
+     */
+    private Mac getMac() throws NoSuchAlgorithmException, InvalidKeyException{
+        Mac mac = hmac.get();
+        if(mac == null){
+            mac = Mac.getInstance(HMACSHA1);
+            SecretKey hmacKey = new SecretKeySpec(secretKey, HMACSHA1);
+            mac.init(hmacKey);
+            hmac.set(mac);
+        }
+        return mac;
+    }
+
     @Override
     public String toString(){
         return "HmacAuthFilter{" + "keyId=" + keyId + ", secretKey=" + secretKey + 
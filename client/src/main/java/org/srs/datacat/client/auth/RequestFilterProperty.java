@@ -0,0 +1,26 @@
+package org.srs.datacat.client.auth;
+
+import java.io.IOException;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+/**
+ * Runs the filter stored in a request's {@link #PROPERTY} property, if any. This lets a single
+ * shared client authenticate each request differently, without registering a filter on (and
+ * so re-initializing) the client for every user.
+ *
+ * @author bvan
+ */
+public class RequestFilterProperty implements ClientRequestFilter {
+
+    public static final String PROPERTY = "org.srs.datacat.client.requestFilter";
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException{
+        Object filter = requestContext.getProperty(PROPERTY);
+        if(filter instanceof ClientRequestFilter){
+            ((ClientRequestFilter) filter).filter(requestContext);
+        }
+    }
+
+}
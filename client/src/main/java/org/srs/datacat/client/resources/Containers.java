@@ -3,8 +3,10 @@ package org.srs.datacat.client.resources;
 
 import com.google.common.base.Optional;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
+import org.srs.datacat.client.auth.RequestFilterProperty;
 import org.glassfish.jersey.client.HttpUrlConnectorProvider;
 import static org.srs.datacat.client.resources.Path.getTarget;
 import org.srs.datacat.model.DatasetContainer;
@@ -16,28 +18,39 @@ import org.srs.datacat.model.DatasetContainer;
 public class Containers {
     
     WebTarget target;
+    ClientRequestFilter requestFilter;
 
     public Containers(WebTarget baseTarget){
+        this(baseTarget, null);
+    }
+
+    /**
+     * Create the resource.
+     * @param baseTarget Base target of the API
+     * @param requestFilter Filter to run on each request, i.e. to authenticate a user. May be null.
+     */
+    public Containers(WebTarget baseTarget, ClientRequestFilter requestFilter){
         this.target = baseTarget.path("containers.json");
+        this.requestFilter = requestFilter;
     }
         
     public Response getContainer(String path, Optional<String> versionId, Optional<String> site,
             Optional<String> stat){
-        return getTarget(target.path(path), versionId, site).matrixParam("stat", stat.orNull()).
-                request()
+        return getTarget(target.path(path), versionId, site).matrixParam("stat", stat.orNull())
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .get();
     }
     
     public Response createContainer(String path, Entity<DatasetContainer> payload){
         return getTarget(target.path(path), Optional.<String>absent(), Optional.<String>absent())
-                .request()
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
                 .post(payload);
     }
 
     public Response patchContainer(String path, Entity<DatasetContainer> payload){
         return getTarget(target.path(path), Optional.<String>absent(), Optional.<String>absent())
-                .request()
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
                 .method("PATCH", payload);
     }
@@ -3,8 +3,10 @@ package org.srs.datacat.client.resources;
 
 import com.google.common.base.Optional;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
+import org.srs.datacat.client.auth.RequestFilterProperty;
 import static org.srs.datacat.client.resources.Path.getTarget;
 import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.dataset.DatasetLocationModel;
@@ -16,9 +18,20 @@ import org.srs.datacat.model.dataset.DatasetLocationModel;
 public class Datasets {
     
     WebTarget target;
+    ClientRequestFilter requestFilter;
 
     public Datasets(WebTarget baseTarget){
+        this(baseTarget, null);
+    }
+
+    /**
+     * Create the resource.
+     * @param baseTarget Base target of the API
+     * @param requestFilter Filter to run on each request, i.e. to authenticate a user. May be null.
+     */
+    public Datasets(WebTarget baseTarget, ClientRequestFilter requestFilter){
         this.target = baseTarget.path("datasets.json");
+        this.requestFilter = requestFilter;
     }
     
     /**
@@ -28,7 +41,7 @@ public class Datasets {
      */
     public Response mkds(String path, Entity<DatasetModel> payload){
         return Path.getTarget(target.path(path), Optional.<String>absent(), Optional.<String>absent())
-                .request().post(payload);
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter).post(payload);
     }
     
     /**
@@ -38,12 +51,13 @@ public class Datasets {
      */
     public Response mkloc(String path, Entity<DatasetLocationModel> payload){
         return Path.getTarget(target.path(path), Optional.<String>absent(), Optional.<String>absent())
-                .request().post(payload);
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter).post(payload);
     }
     
     public Response patchDataset(String path, Optional<String> versionId, Optional<String> site,
             Entity<DatasetModel> payload){
-        return getTarget(target.path(path), versionId, site).request()
+        return getTarget(target.path(path), versionId, site)
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .method("PATCH", payload);
     }
 }
@@ -1,8 +1,13 @@
 package org.srs.datacat.client.resources;
 
 import com.google.common.base.Optional;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import org.srs.datacat.client.auth.RequestFilterProperty;
 
 /**
  * Helper class representing the path interface.
@@ -12,9 +17,20 @@ import javax.ws.rs.core.Response;
 public class Path {
 
     WebTarget target;
+    ClientRequestFilter requestFilter;
 
     public Path(WebTarget baseTarget){
+        this(baseTarget, null);
+    }
+
+    /**
+     * Create the resource.
+     * @param baseTarget Base target of the API
+     * @param requestFilter Filter to run on each request, i.e. to authenticate a user. May be null.
+     */
+    public Path(WebTarget baseTarget, ClientRequestFilter requestFilter){
         this.target = baseTarget.path("path.json");
+        this.requestFilter = requestFilter;
     }
 
     public Response getChildren(String path, Optional<String> versionId, Optional<String> site,
@@ -22,7 +38,19 @@ public class Path {
         return getTarget(target.path(path), versionId, site).matrixParam("children", "")
                 .queryParam("offset", offset.orNull())
                 .queryParam("max", max.orNull())
-                .request()
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
+                .get();
+    }
+    
+    /**
+     * Get a page of children using a cursor. An empty cursor starts at the first child.
+     */
+    public Response getChildrenAfter(String path, Optional<String> versionId, Optional<String> site,
+            String after, Optional<Integer> max){
+        return getTarget(target.path(path), versionId, site).matrixParam("children", "")
+                .queryParam("after", after)
+                .queryParam("max", max.orNull())
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .get();
     }
     
@@ -31,14 +59,44 @@ public class Path {
                 .queryParam("offset", offset.orNull())
                 .queryParam("max", max.orNull())
                 .queryParam("stat", stat.orNull())
-                .request().get();
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter).get();
+    }
+
+    /**
+     * Get the page view of a path, with datasets paged by offset and max, and containers by 
+     * coffset and cmax.
+     */
+    public Response getPage(String path, Optional<String> versionId, Optional<String> site,
+            Optional<Integer> offset, Optional<Integer> max, Optional<Integer> coffset, Optional<Integer> cmax){
+        return getTarget(target.path(path), versionId, site).matrixParam("view", "page")
+                .queryParam("offset", offset.orNull())
+                .queryParam("max", max.orNull())
+                .queryParam("coffset", coffset.orNull())
+                .queryParam("cmax", cmax.orNull())
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
+                .get();
     }
 
     public Response getObject(String path, Optional<String> versionId, Optional<String> site){
-        return getTarget(target.path(path), versionId, site).request()
+        return getTarget(target.path(path), versionId, site)
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .get();
     }
 
+    /**
+     * Conditionally get an object. If the entity tag still matches, the server will respond with
+     * 304 (Not Modified) and no entity.
+     */
+    public Response getObject(String path, Optional<String> versionId, Optional<String> site,
+            Optional<EntityTag> ifNoneMatch){
+        Invocation.Builder builder = getTarget(target.path(path), versionId, site)
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter);
+        if(ifNoneMatch.isPresent()){
+            builder.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch.get());
+        }
+        return builder.get();
+    }
+
     public static WebTarget getTarget(WebTarget base, Optional<String> versionId,
             Optional<String> site){
         if(versionId.isPresent()){
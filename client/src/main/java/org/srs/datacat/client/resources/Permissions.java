@@ -3,8 +3,10 @@ package org.srs.datacat.client.resources;
 import com.google.common.base.Optional;
 import java.util.List;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
+import org.srs.datacat.client.auth.RequestFilterProperty;
 import org.srs.datacat.rest.security.AclEntryProxy;
 
 /**
@@ -15,25 +17,36 @@ import org.srs.datacat.rest.security.AclEntryProxy;
 public class Permissions {
 
     WebTarget target;
+    ClientRequestFilter requestFilter;
 
     public Permissions(WebTarget baseTarget){
+        this(baseTarget, null);
+    }
+
+    /**
+     * Create the resource.
+     * @param baseTarget Base target of the API
+     * @param requestFilter Filter to run on each request, i.e. to authenticate a user. May be null.
+     */
+    public Permissions(WebTarget baseTarget, ClientRequestFilter requestFilter){
         this.target = baseTarget.path("permissions.json");
+        this.requestFilter = requestFilter;
     }
 
     public Response getPermissions(String path, Optional<String> groupSpec){
         return target.path(path)
                 .queryParam("subject", groupSpec.isPresent() ? "group" : "user")
                 .queryParam("group", groupSpec.orNull())
-                .request()
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .get();
     }
     
     public Response getAcl(String path){
-        return target.path(path).request().get();
+        return target.path(path).request().property(RequestFilterProperty.PROPERTY, requestFilter).get();
     }
     
     public Response patchAcl(String path, Entity<List<AclEntryProxy>> payload){
-        return target.path(path).request()
+        return target.path(path).request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .method("PATCH", payload);
     }
 
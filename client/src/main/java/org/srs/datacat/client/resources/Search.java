@@ -2,8 +2,10 @@
 package org.srs.datacat.client.resources;
 
 import com.google.common.base.Optional;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
+import org.srs.datacat.client.auth.RequestFilterProperty;
 
 /**
  *
@@ -12,9 +14,20 @@ import javax.ws.rs.core.Response;
 public class Search {
     
     WebTarget webTarget;
+    ClientRequestFilter requestFilter;
 
     public Search(WebTarget baseTarget){
+        this(baseTarget, null);
+    }
+
+    /**
+     * Create the resource.
+     * @param baseTarget Base target of the API
+     * @param requestFilter Filter to run on each request, i.e. to authenticate a user. May be null.
+     */
+    public Search(WebTarget baseTarget, ClientRequestFilter requestFilter){
         this.webTarget = baseTarget.path("search.json");
+        this.requestFilter = requestFilter;
     }
     
     /**
@@ -45,7 +58,77 @@ public class Search {
                 .queryParam("show", show.orNull())
                 .queryParam("offset", offset.orNull())
                 .queryParam("max", max.orNull())
-                .request()
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
+                .get();
+    }
+
+    /**
+     * Aggregate the datasets matching a search, instead of returning them.
+     * @param target The path (or glob-like path) of which to search
+     * @param versionId Version Id to aggregate
+     * @param site Site to aggregate
+     * @param query Query String
+     * @param folderQuery Query string for matching folders
+     * @param groupBy Fields and Metadata fields to group by
+     * @param aggregates Aggregates to compute, as in {@code count} or {@code sum(fileSizeBytes)}
+     * @return Response object of the aggregation
+     */
+    public Response aggregateDatasets(String target, Optional<String> versionId, Optional<String> site,
+            Optional<String> query, Optional<String> folderQuery, 
+            Optional<String[]> groupBy, String[] aggregates){
+        return Path.getTarget(webTarget.path(target), versionId, site)
+                .queryParam("filter", query.orNull())
+                .queryParam("containerFilter", folderQuery.orNull())
+                .queryParam("groupBy", groupBy.orNull())
+                .queryParam("aggregate", aggregates)
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
+                .get();
+    }
+
+    /**
+     * Count the distinct values of fields over the datasets matching a search.
+     * @param target The path (or glob-like path) of which to search
+     * @param versionId Version Id to count
+     * @param site Site to count
+     * @param query Query String
+     * @param folderQuery Query string for matching folders
+     * @param fields Fields and Metadata fields to count the values of
+     * @param limit Maximum number of values to return for each field
+     * @return Response object of the counts
+     */
+    public Response facetDatasets(String target, Optional<String> versionId, Optional<String> site,
+            Optional<String> query, Optional<String> folderQuery, 
+            String[] fields, Optional<Integer> limit){
+        return Path.getTarget(webTarget.path(target), versionId, site)
+                .queryParam("filter", query.orNull())
+                .queryParam("containerFilter", folderQuery.orNull())
+                .queryParam("facet", fields)
+                .queryParam("facetLimit", limit.orNull())
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
+                .get();
+    }
+
+    /**
+     * Search a target for containers matching a query.
+     * @param target The path (or glob-like path) of which to search
+     * @param query Query String
+     * @param sort Fields and Metadata fields to sort on.
+     * @param show Metadata fields to optionally return
+     * @param offset Offset at which to start returning objects.
+     * @param max Maximum number of containers to return
+     * @return Response object of the search
+     */
+    public Response searchForContainers(String target, Optional<String> query,
+            Optional<String[]> sort, Optional<String[]> show, 
+            Optional<Integer> offset, Optional<Integer> max){
+        return webTarget.path(target)
+                .queryParam("type", "containers")
+                .queryParam("filter", query.orNull())
+                .queryParam("sort", sort.orNull())
+                .queryParam("show", show.orNull())
+                .queryParam("offset", offset.orNull())
+                .queryParam("max", max.orNull())
+                .request().property(RequestFilterProperty.PROPERTY, requestFilter)
                 .get();
     }
 
@@ -0,0 +1,141 @@
+package org.srs.datacat.client.search;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.srs.datacat.client.Client;
+import org.srs.datacat.model.DatasetModel;
+
+/**
+ * Lazily iterates over the results of a search, one page at a time. While a page is being
+ * consumed, the next page is fetched in the background.
+ *
+ * Pages are retrieved by offset, so the search should be sorted for the pages to be consistent.
+ * Each call to {@link #iterator()} starts the search again.
+ *
+ * @author bvan
+ */
+public class PagedSearch implements Iterable<DatasetModel> {
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("datacat-search-prefetch-%d")
+                .build());
+
+    private final Client client;
+    private final String target;
+    private final String versionId;
+    private final String site;
+    private final String query;
+    private final String folderQuery;
+    private final String[] sort;
+    private final String[] show;
+    private final int offset;
+    private final Integer max;
+    private final int pageSize;
+
+    PagedSearch(Client client, String target, String versionId, String site, String query, String folderQuery,
+            String[] sort, String[] show, Integer offset, Integer max, int pageSize){
+        if(pageSize < 1){
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.client = client;
+        this.target = target;
+        this.versionId = versionId;
+        this.site = site;
+        this.query = query;
+        this.folderQuery = folderQuery;
+        this.sort = sort;
+        this.show = show;
+        this.offset = offset != null ? offset : 0;
+        this.max = max;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Iterator<DatasetModel> iterator(){
+        return new PageIterator();
+    }
+
+    private class PageIterator implements Iterator<DatasetModel> {
+        private Iterator<DatasetModel> page = Collections.<DatasetModel>emptyIterator();
+        private Future<List<DatasetModel>> nextPage;
+        private int nextPageMax;
+        private int nextOffset = offset;
+        private int remaining = max != null ? max : Integer.MAX_VALUE;
+
+        PageIterator(){
+            nextPage = fetch();
+        }
+
+        /**
+         * Start fetching the next page, or return null if there are no more.
+         */
+        private Future<List<DatasetModel>> fetch(){
+            if(remaining <= 0){
+                return null;
+            }
+            final int pageOffset = nextOffset;
+            final int pageMax = Math.min(pageSize, remaining);
+            nextPageMax = pageMax;
+            nextOffset += pageMax;
+            remaining -= pageMax;
+            return PREFETCH_EXECUTOR.submit(new Callable<List<DatasetModel>>() {
+                @Override
+                public List<DatasetModel> call(){
+                    return client.searchForDatasetsPage(target, versionId, site, query, folderQuery,
+                            sort, show, pageOffset, pageMax);
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext(){
+            while(!page.hasNext() && nextPage != null){
+                int requested = nextPageMax;
+                List<DatasetModel> results = await(nextPage);
+                // A short page is the last one
+                nextPage = results.size() < requested ? null : fetch();
+                page = results.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public DatasetModel next(){
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+
+    private static List<DatasetModel> await(Future<List<DatasetModel>> future){
+        try {
+            return future.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while fetching search results", ex);
+        } catch(ExecutionException ex) {
+            if(ex.getCause() instanceof RuntimeException){
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+}
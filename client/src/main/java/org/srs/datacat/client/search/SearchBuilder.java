@@ -3,8 +3,10 @@ package org.srs.datacat.client.search;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import org.srs.datacat.client.Client;
+import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.DatasetResultSetModel;
 
 /**
@@ -13,6 +15,8 @@ import org.srs.datacat.model.DatasetResultSetModel;
  */
 public class SearchBuilder {
     
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
     private final Client client;
     private String target;
     private String versionId;
@@ -21,6 +25,9 @@ public class SearchBuilder {
     private String folderQuery;
     private List<String> sort = new ArrayList<>();
     private List<String> show = new ArrayList<>();
+    private List<String> groupBy = new ArrayList<>();
+    private List<String> aggregates = new ArrayList<>();
+    private List<String> facets = new ArrayList<>();
     private Integer offset;
     private Integer max;
 
@@ -103,6 +110,31 @@ public class SearchBuilder {
         this.show = new ArrayList(show);
     }
 
+    /**
+     * Add a field to group by when aggregating.
+     * @see #aggregate() 
+     */
+    public void addGroupBy(String groupByItem){
+        this.groupBy.add(groupByItem);
+    }
+
+    /**
+     * Add an aggregate to compute, as in {@code count}, {@code sum(fileSizeBytes)}, 
+     * {@code min(runMin)} or {@code max(runMax)}. 
+     * @see #aggregate() 
+     */
+    public void addAggregate(String aggregate){
+        this.aggregates.add(aggregate);
+    }
+
+    /**
+     * Add a field to count the values of.
+     * @see #facets(java.lang.Integer) 
+     */
+    public void addFacet(String facet){
+        this.facets.add(facet);
+    }
+
     /**
      * Offset of first returned record.
      */
@@ -127,4 +159,50 @@ public class SearchBuilder {
                 offset, max);
     }
 
+    /**
+     * Execute the search, but only retrieve the aggregates, with a row for each distinct 
+     * combination of the group by fields. The sort, show, offset and max don't apply.
+     */
+    public List<Map<String, Object>> aggregate(){
+        if(aggregates.isEmpty()){
+            throw new IllegalStateException("No aggregates to compute");
+        }
+        return client.aggregateDatasets(target, versionId, site, query, folderQuery, 
+                groupBy.toArray(new String[0]), aggregates.toArray(new String[0]));
+    }
+
+    /**
+     * Execute the search, but only retrieve the distinct values of the facet fields and their 
+     * counts. The sort, show, offset and max don't apply.
+     * @param limit Maximum number of values to retrieve for each field, or null for the default
+     */
+    public Map<String, List<Map<String, Object>>> facets(Integer limit){
+        if(facets.isEmpty()){
+            throw new IllegalStateException("No facet fields to count");
+        }
+        return client.facetDatasets(target, versionId, site, query, folderQuery, 
+                facets.toArray(new String[0]), limit);
+    }
+
+    /**
+     * Lazily iterate over the results of the search, retrieving {@link #DEFAULT_PAGE_SIZE} 
+     * datasets at a time.
+     * @see #iterate(int) 
+     */
+    public Iterable<DatasetModel> iterate(){
+        return iterate(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Lazily iterate over the results of the search. Only a page or two of results are held in 
+     * memory at once, so this can be used for searches with too many results to retrieve at once.
+     * The offset and max, if set, still apply to the results as a whole. Set a sort so pages are
+     * consistent.
+     * @param pageSize Number of datasets to retrieve per request
+     */
+    public Iterable<DatasetModel> iterate(int pageSize){
+        return new PagedSearch(client, target, versionId, site, query, folderQuery, 
+                sort.toArray(new String[0]), show.toArray(new String[0]), offset, max, pageSize);
+    }
+
 }
@@ -0,0 +1,81 @@
+package org.srs.datacat.client;
+
+import java.net.URISyntaxException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.Application;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.srs.datacat.client.auth.HeaderFilter;
+import org.srs.datacat.client.exception.DcClientException;
+import org.srs.datacat.model.DatacatNode;
+import org.srs.datacat.rest.App;
+import org.srs.datacat.rest.resources.PathResource;
+import org.srs.datacat.shared.Provider;
+import org.srs.datacat.test.DbHarness;
+import org.srs.datacat.vfs.TestUtils;
+
+/**
+ *
+ * @author bvan
+ */
+public class AsyncClientTest extends JerseyTest {
+
+    @Override
+    protected Application configure(){
+        try {
+            DbHarness harness = DbHarness.getDbHarness();
+            ResourceConfig app = new App(harness.getDataSource(), new Provider(), TestUtils.getLookupService())
+                    .register(DatasetClientsTest.TestSecurityFilter.class)
+                    .register(PathResource.class);
+            return app;
+        } catch(SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private AsyncClient getAsyncClient(ConnectionPool pool) throws URISyntaxException{
+        HashMap<String, Object> authHeader = new HashMap<>();
+        authHeader.put("authentication", DbHarness.TEST_USER);
+        Client client = ClientBuilder.newBuilder()
+                .setUrl(getBaseUri())
+                .setConnectionPool(pool)
+                .addClientRequestFilter(new HeaderFilter(authHeader))
+                .build();
+        return client.async(4);
+    }
+
+    @Test
+    public void testBulk() throws Exception{
+        try(ConnectionPool pool = new ConnectionPool(4, 4, 1000);
+                AsyncClient async = getAsyncClient(pool)) {
+            List<String> paths = Arrays.asList("/testpath", "/testpath/testfolder", "/testpath/nonexistent");
+            Map<String, Boolean> exists = async.existsAll(paths);
+            Assert.assertEquals(paths, Arrays.asList(exists.keySet().toArray()));
+            Assert.assertTrue(exists.get("/testpath"));
+            Assert.assertTrue(exists.get("/testpath/testfolder"));
+            Assert.assertFalse(exists.get("/testpath/nonexistent"));
+
+            Map<String, DatacatNode> objects = async.getObjects(paths.subList(0, 2), null, null);
+            Iterator<DatacatNode> iter = objects.values().iterator();
+            Assert.assertEquals("testpath", iter.next().getName());
+            Assert.assertEquals("testfolder", iter.next().getName());
+
+            Assert.assertEquals("testfolder", async.getObject("/testpath/testfolder").get().getName());
+            try {
+                async.getObjects(paths, null, null);
+                Assert.fail("Expected a missing path to fail");
+            } catch(DcClientException ex) {
+                Assert.assertTrue(ex.getType().contains("NoSuchFile"));
+            }
+            async.getClient().close();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.srs.datacat.client;
+
+import java.net.URISyntaxException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.ws.rs.core.Application;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.srs.datacat.client.auth.HeaderFilter;
+import org.srs.datacat.model.security.DcPermissions;
+import org.srs.datacat.rest.App;
+import org.srs.datacat.rest.resources.ContainerResource;
+import org.srs.datacat.rest.resources.PathResource;
+import org.srs.datacat.rest.resources.PermissionsResource;
+import org.srs.datacat.shared.Provider;
+import org.srs.datacat.test.DbHarness;
+import org.srs.datacat.vfs.TestUtils;
+
+/**
+ * Checks per-request authentication on a shared, pooled client.
+ *
+ * @author bvan
+ */
+public class ConnectionPoolTest extends JerseyTest {
+    private static final String TEST_PATH = "/testpath";
+
+    @Override
+    protected Application configure(){
+        try {
+            DbHarness harness = DbHarness.getDbHarness();
+            ResourceConfig app = new App(harness.getDataSource(), new Provider(), TestUtils.getLookupService())
+                    .register(DatasetClientsTest.TestSecurityFilter.class)
+                    .register(ContainerResource.class)
+                    .register(PermissionsResource.class)
+                    .register(PathResource.class);
+            return app;
+        } catch(SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static HeaderFilter authFilter(String user){
+        Map<String, Object> headers = new HashMap<>();
+        if(user != null){
+            headers.put("authentication", user);
+        }
+        return new HeaderFilter(headers);
+    }
+
+    @Test
+    public void testRequestFilter() throws URISyntaxException{
+        try(ConnectionPool pool = new ConnectionPool(8, 8, 1000)) {
+            Client shared = ClientBuilder.newBuilder()
+                    .setUrl(getBaseUri())
+                    .setConnectionPool(pool)
+                    .build();
+            Client user = shared.withRequestFilter(authFilter(DbHarness.TEST_USER));
+            Client anonymous = shared.withRequestFilter(authFilter(null));
+            for(int i = 0; i < 3; i++){
+                Assert.assertTrue(user.getPermissions(TEST_PATH, null)
+                        .getPermissions().contains(DcPermissions.WRITE));
+                Assert.assertFalse(anonymous.getPermissions(TEST_PATH, null)
+                        .getPermissions().contains(DcPermissions.WRITE));
+            }
+            Assert.assertTrue(pool.getConnectionManager().getTotalStats().getAvailable() > 0);
+            shared.close();
+        }
+    }
+
+}
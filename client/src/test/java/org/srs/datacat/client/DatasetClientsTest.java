@@ -5,9 +5,11 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.Principal;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -21,8 +23,11 @@ import org.glassfish.jersey.test.JerseyTest;
 import org.junit.Assert;
 import org.junit.Test;
 import org.srs.datacat.client.auth.HeaderFilter;
+import org.srs.datacat.client.search.SearchBuilder;
+import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.DatasetView;
+import org.srs.datacat.model.RecordType;
 import org.srs.datacat.model.security.DcGroup;
 import org.srs.datacat.model.security.DcPermissions;
 import org.srs.datacat.model.security.DcUser;
@@ -31,6 +36,7 @@ import org.srs.datacat.rest.resources.ContainerResource;
 import org.srs.datacat.rest.resources.DatasetsResource;
 import org.srs.datacat.rest.resources.PathResource;
 import org.srs.datacat.rest.resources.PermissionsResource;
+import org.srs.datacat.rest.resources.SearchResource;
 import org.srs.datacat.shared.Provider;
 import org.srs.datacat.test.DbHarness;
 import org.srs.datacat.test.HSqlDbHarness;
@@ -54,7 +60,8 @@ public class DatasetClientsTest extends JerseyTest {
                     .register(ContainerResource.class)
                     .register(PermissionsResource.class)
                     .register(PathResource.class)
-                    .register(DatasetsResource.class);
+                    .register(DatasetsResource.class)
+                    .register(SearchResource.class);
             app.property(ServerProperties.TRACING, "ALL");
             return app;
         } catch(SQLException ex) {
@@ -98,6 +105,48 @@ public class DatasetClientsTest extends JerseyTest {
                 client.getPermissions(created.getPath(), new DcGroup("fake@")).getPermissions());
     }
         
+    @Test
+    public void testPagedSearch() throws URISyntaxException{
+        Client client = getDatacatClient();
+        String parent = "/testpath/pagedSearch";
+        if(!client.exists(parent)){
+            client.createContainer("/testpath", (DatasetContainer) provider.getContainerBuilder()
+                    .name("pagedSearch").type(RecordType.FOLDER).build());
+            for(int i = 0; i < 7; i++){
+                client.createDataset(parent, provider.getDatasetBuilder()
+                        .name(String.format("dataset%04d", i))
+                        .dataType(HSqlDbHarness.JUNIT_DATASET_DATATYPE)
+                        .fileFormat(HSqlDbHarness.JUNIT_DATASET_FILEFORMAT)
+                        .versionId(DatasetView.NEW_VER)
+                        .build());
+            }
+        }
+        SearchBuilder builder = new SearchBuilder(client);
+        builder.setTarget(parent);
+        List<String> expected = new ArrayList<>();
+        for(DatasetModel ds: builder.search()){
+            expected.add(ds.getName());
+        }
+        Assert.assertEquals(7, expected.size());
+
+        // Pages of 3 end with a short page, pages of 7 with an empty one
+        for(int pageSize: new int[]{3, 7, 100}){
+            List<String> actual = new ArrayList<>();
+            for(DatasetModel ds: builder.iterate(pageSize)){
+                actual.add(ds.getName());
+            }
+            Assert.assertEquals(expected, actual);
+        }
+
+        builder.setOffset(2);
+        builder.setMax(4);
+        List<String> actual = new ArrayList<>();
+        for(DatasetModel ds: builder.iterate(3)){
+            actual.add(ds.getName());
+        }
+        Assert.assertEquals(expected.subList(2, 6), actual);
+    }
+
     public DatasetModel createOne(Client client) throws JsonProcessingException, URISyntaxException{
         String parent = "/testpath/folder00000";
         String name = "dataset0001";
@@ -0,0 +1,79 @@
+package org.srs.datacat.client.auth;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.xml.bind.DatatypeConverter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author bvan
+ */
+public class HmacAuthFilterTest {
+    private static final String SECRET = DatatypeConverter.printBase64Binary("secret".getBytes());
+    private static final Date DATE = new Date(1400000000000L);
+
+    private static String sign(HmacAuthFilter filter, String path) throws Exception{
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle("date", DATE);
+        filter.doFilter("GET", new URI("http://localhost/api/rest/path.json" + path), headers);
+        return (String) headers.getFirst("Authorization");
+    }
+
+    private static String expected(String path) throws Exception{
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec("secret".getBytes(), "HmacSHA1"));
+        String fullHeader = "GET\n/path.json" + path + "\n\n\nTue, 13 May 2014 16:53:20 GMT\n";
+        return "SRS:key:" + DatatypeConverter.printBase64Binary(mac.doFinal(fullHeader.getBytes()));
+    }
+
+    @Test
+    public void testSignature() throws Exception{
+        HmacAuthFilter filter = new HmacAuthSRS("key", SECRET, new URI("http://localhost/api/rest"));
+        Assert.assertEquals(expected("/a"), sign(filter, "/a"));
+        // The Mac is reused, and must be reset between requests
+        Assert.assertEquals(expected("/b"), sign(filter, "/b"));
+        Assert.assertEquals(expected("/a"), sign(filter, "/a"));
+    }
+
+    @Test
+    public void testConcurrentSignatures() throws Exception{
+        // Each thread needs its own Mac and date format
+        final HmacAuthFilter filter = new HmacAuthSRS("key", SECRET, new URI("http://localhost/api/rest"));
+        final int threads = 4;
+        final int requests = 400;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final String expected = expected("/a");
+            List<Future<Object>> results = new ArrayList<>();
+            for(int i = 0; i < threads; i++){
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception{
+                        for(int j = 0; j < requests / threads; j++){
+                            Assert.assertEquals(expected, sign(filter, "/a"));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Object> result: results){
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
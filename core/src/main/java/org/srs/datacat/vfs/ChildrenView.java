@@ -2,6 +2,8 @@
 package org.srs.datacat.vfs;
 
 import com.google.common.base.Optional;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
@@ -11,6 +13,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.srs.datacat.model.DatasetView;
 
@@ -20,11 +23,27 @@ import org.srs.datacat.model.DatasetView;
  */
 public class ChildrenView implements FileAttributeView {
 
+    /**
+     * Most names a name filter is built for (about 1.2MB per container at the target rate).
+     */
+    public static final int MAX_FILTER_NAMES = 1 << 20;
+    private static final int MIN_FILTER_CAPACITY = 1024;
+    private static final double FILTER_FPP = 0.01;
+
     private boolean hasCache = false;
     protected TreeMap<String, Path> children;
     private final Path path;
     private final ReentrantLock lock = new ReentrantLock();
     private final DcFileSystemProvider provider;
+
+    // Bloom filter of all child names, if we've listed every child recently. Null otherwise.
+    // Guarded by filterLock, which is never held while reading from the database.
+    private final Object filterLock = new Object();
+    private BloomFilter<CharSequence> nameFilter;
+    private int nameFilterCapacity;
+    private int nameFilterSize;
+    private long nameFilterCreated;
+    private final AtomicLong modifications = new AtomicLong();
     
     public ChildrenView(Path path, DcFileSystemProvider provider){
         this.path = path;
@@ -57,6 +76,7 @@ public class ChildrenView implements FileAttributeView {
     public boolean link(Path child){
         lock.lock();
         try {  
+            addFilterName(child.getFileName().toString());
             if(children == null){
                 return false;
             }
@@ -111,6 +131,83 @@ public class ChildrenView implements FileAttributeView {
     public Path getPath(){
         return path;
     }
+
+    /**
+     * Start collecting a complete list of child names for the name filter.
+     * @return A token to pass to {@link #setNames}
+     */
+    long beginNames(){
+        return modifications.get();
+    }
+
+    /**
+     * Build the name filter from the names of every child. If children were added since 
+     * {@link #beginNames} was called, the names may be incomplete, so nothing is built.
+     * @param names Names of all children
+     * @param token Token from {@link #beginNames}
+     */
+    void setNames(Collection<String> names, long token){
+        if(names.size() > MAX_FILTER_NAMES){
+            return;
+        }
+        int capacity = Math.min(Math.max(names.size() * 2, MIN_FILTER_CAPACITY), MAX_FILTER_NAMES);
+        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(), capacity, FILTER_FPP);
+        for(String name: names){
+            filter.put(name);
+        }
+        synchronized(filterLock){
+            if(modifications.get() != token){
+                return;
+            }
+            nameFilter = filter;
+            nameFilterCapacity = capacity;
+            nameFilterSize = names.size();
+            nameFilterCreated = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Add a name to the name filter before a child is created with it.
+     */
+    public void reserveName(String name){
+        addFilterName(name);
+    }
+
+    private void addFilterName(String name){
+        synchronized(filterLock){
+            modifications.incrementAndGet();
+            if(nameFilter == null){
+                return;
+            }
+            if(++nameFilterSize > nameFilterCapacity){
+                // Too full to keep the false positive rate, wait for the next full listing
+                nameFilter = null;
+                return;
+            }
+            nameFilter.put(name);
+        }
+    }
+
+    /**
+     * Check if a child might exist. Children created outside of this process aren't in the
+     * filter, so it's only good for as long as a missing path is remembered, and only to skip a
+     * read.
+     * @param name Name of the child
+     * @return false if there is definitely no child with that name, null if we don't know because
+     * there is no name filter, or true if there might be.
+     */
+    public Boolean mightContain(String name){
+        return mightContain(name, System.currentTimeMillis());
+    }
+
+    Boolean mightContain(String name, long now){
+        synchronized(filterLock){
+            if(nameFilter != null && now - nameFilterCreated > DcFileSystemProvider.MISSING_PATH_CACHE_TIME){
+                nameFilter = null;
+            }
+            return nameFilter != null ? nameFilter.mightContain(name) : null;
+        }
+    }
     
     public Map<String, Path> getEntries() throws IOException{
         lock.lock();
@@ -1,6 +1,8 @@
 package org.srs.datacat.vfs;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import java.io.IOException;
 import java.net.URI;
@@ -19,10 +21,15 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.srs.datacat.metrics.Metrics;
 import org.srs.datacat.model.DatacatRecord;
 import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetModel;
@@ -49,6 +56,7 @@ import org.srs.datacat.dao.SearchDAO;
 
 import org.srs.datacat.vfs.DirectoryWalker.ContainerVisitor;
 import org.srs.datacat.vfs.attribute.ContainerViewProvider;
+import org.srs.datacat.vfs.attribute.DatasetViewCache;
 
 import org.srs.vfs.AbstractFsProvider.AfsException;
 import org.srs.vfs.FileAttributes;
@@ -71,10 +79,30 @@ public class DcFileSystemProvider {
     private static final long MAX_DATASET_CACHE_SIZE = 1 << 29; // Don't blow more than about 512MB
     private static final int NO_MAX = -1;
     private static final long MAX_CACHE_TIME = 60000L; // TODO: Get rid of this - 60 seconds
+    private static final long MAX_DATASET_VIEWS = 20000;
+    private static final long MAX_MISSING_PATHS = 10000;
+    static final long MISSING_PATH_CACHE_TIME = 5000L;
+    public static final String MISSING_PATH_HIT_METRIC = "vfs.missingPaths.hit";
+    public static final String NAME_FILTER_NEGATIVE_METRIC = "vfs.childNameFilter.negative";
+    public static final String NAME_FILTER_POSITIVE_METRIC = "vfs.childNameFilter.positive";
+    public static final String NAME_FILTER_FALSE_POSITIVE_METRIC = "vfs.childNameFilter.falsePositive";
 
     private final DAOFactory daoFactory;
     private final ModelProvider modelProvider;
     private final VfsCache<DcFile> cache = new VfsSoftCache<>();
+    private final DatasetViewCache datasetViewCache = new DatasetViewCache(MAX_DATASET_VIEWS, MAX_CACHE_TIME);
+    // Paths recently found not to exist, and why. Entries are dropped when the path is created.
+    // Guarded by itself when adding, along with the count of paths created.
+    private final Cache<String, String> missingPaths = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MISSING_PATHS)
+            .expireAfterWrite(MISSING_PATH_CACHE_TIME, TimeUnit.MILLISECONDS)
+            .build();
+    private final AtomicLong pathsCreated = new AtomicLong();
+    private final AtomicLong missingPathHits = Metrics.counter(MISSING_PATH_HIT_METRIC);
+    private final AtomicLong nameFilterNegatives = Metrics.counter(NAME_FILTER_NEGATIVE_METRIC);
+    private final AtomicLong nameFilterPositives = Metrics.counter(NAME_FILTER_POSITIVE_METRIC);
+    private final AtomicLong nameFilterFalsePositives = Metrics.counter(NAME_FILTER_FALSE_POSITIVE_METRIC);
+    private volatile SearchResultCache searchResultCache;
     
     public DcFileSystemProvider(DAOFactory daoFactory, ModelProvider modelProvider) throws IOException{
         this.daoFactory = daoFactory;
@@ -88,7 +116,26 @@ public class DcFileSystemProvider {
     public ModelProvider getModelProvider(){
         return modelProvider;
     }
+
+    /**
+     * Datasets built for a view, shared by all files. Anything which changes a dataset's versions
+     * or locations must invalidate the dataset here.
+     */
+    public DatasetViewCache getDatasetViewCache(){
+        return datasetViewCache;
+    }
     
+    /**
+     * Cache of search results, or null if search results aren't cached. This is off by default.
+     */
+    public SearchResultCache getSearchResultCache(){
+        return searchResultCache;
+    }
+
+    public void setSearchResultCache(SearchResultCache searchResultCache){
+        this.searchResultCache = searchResultCache;
+    }
+
     public static final DirectoryStream.Filter<Path> ACCEPT_ALL_FILTER
         = new DirectoryStream.Filter<Path>() {
             @Override
@@ -128,13 +175,53 @@ public class DcFileSystemProvider {
             if(!path.equals( path.getRoot())){
                 parent = resolveFile(path.getParent());
             }
-            file = retrieveFileAttributes(path, parent);
+            String missing = missingPaths.getIfPresent(path.toString());
+            if(missing != null){
+                missingPathHits.incrementAndGet();
+                throw new NoSuchFileException(missing);
+            }
+            // A path created while we look for it may be missed, then it mustn't be recorded missing
+            long createdToken = pathsCreated.get();
+            Boolean mightExist = mightContain(parent, path.getFileName().toString());
+            if(Boolean.FALSE.equals(mightExist)){
+                String msg = String.format("Unable to resolve %s in parent %s", path, parent.getPath());
+                throw new NoSuchFileException(msg);
+            }
+            try {
+                file = retrieveFileAttributes(path, parent);
+            } catch(NoSuchFileException ex) {
+                if(Boolean.TRUE.equals(mightExist)){
+                    nameFilterFalsePositives.incrementAndGet();
+                }
+                synchronized(missingPaths){
+                    if(pathsCreated.get() == createdToken){
+                        missingPaths.put(path.toString(), String.valueOf(ex.getMessage()));
+                    }
+                }
+                throw ex;
+            }
             getCache().putFile(file);
             return file;
         }
         return file;
     }
 
+    /**
+     * Check the parent's filter of child names, if it has one.
+     * @return false if the child definitely doesn't exist, true if it might, and null if the 
+     * parent has no filter.
+     */
+    private Boolean mightContain(DcFile parent, String name){
+        if(parent == null || !parent.isDirectory()){
+            return null;
+        }
+        Boolean mightExist = parent.getAttributeView(ChildrenView.class).mightContain(name);
+        if(mightExist != null){
+            (mightExist ? nameFilterPositives : nameFilterNegatives).incrementAndGet();
+        }
+        return mightExist;
+    }
+
     public DirectoryStream<Path> newOptimizedDirectoryStream(Path dir, CallContext context,
             final DirectoryStream.Filter<? super Path> filter, int max, 
             Optional<DatasetView> viewPrefetch) throws IOException{
@@ -159,18 +246,55 @@ public class DcFileSystemProvider {
         return stream;
     }
     
+    /**
+     * Get a page of children of a directory, ordered by name as the data store orders them.
+     * This never uses the cached children, so pages are consistent with one another.
+     *
+     * @param dir Directory to list
+     * @param context Call context.
+     * @param filter Filter for children
+     * @param after If present, start with the first child whose name sorts after this one.
+     * @param max Maximum number of children to read from the data store.
+     * @param viewPrefetch View of datasets to retrieve along with the children, if any.
+     * @return A stream of children paths. Make sure to close the stream when done.
+     */
+    public DirectoryStream<Path> newPagedDirectoryStream(Path dir, CallContext context,
+            final DirectoryStream.Filter<? super Path> filter, Optional<String> after, int max,
+            Optional<DatasetView> viewPrefetch) throws IOException{
+        DcFile dirFile = resolveFile(dir);
+        checkPermission(context, dirFile, DcPermissions.READ);
+        if(!dirFile.isDirectory()){
+            throw new NotDirectoryException(dirFile.toString());
+        }
+        return unCachedDirectoryStream(dir, filter, viewPrefetch, true, after, max);
+    }
+    
     protected DirectoryStream<Path> unCachedDirectoryStream(final Path dir,
             final DirectoryStream.Filter<? super Path> filter, final Optional<DatasetView> view,
             final boolean cacheDatasets) throws IOException{
+        return unCachedDirectoryStream(dir, filter, view, cacheDatasets, Optional.<String>absent(), NO_MAX);
+    }
+    
+    protected DirectoryStream<Path> unCachedDirectoryStream(final Path dir,
+            final DirectoryStream.Filter<? super Path> filter, final Optional<DatasetView> view,
+            final boolean cacheDatasets, Optional<String> after, int max) throws IOException{
         final DcFile dirFile = resolveFile(dir);
         if(!dirFile.isDirectory()){
             throw new NotDirectoryException(dirFile.toString());
         }
+        // Only a full listing tells us how many datasets of a view are cached
+        final boolean fullListing = !after.isPresent() && max == NO_MAX;
+        // ... and, if it includes datasets, the names of every child
+        final ChildrenView childrenView = dirFile.getAttributeView(ChildrenView.class);
+        final long namesToken = childrenView.beginNames();
+        final List<String> names = fullListing && view.isPresent() ? new ArrayList<String>() : null;
+        final AtomicBoolean exhausted = new AtomicBoolean();
 
         // !IMPORTANT!: This object is closed when the stream is closed
+        // Children are cached for every caller, so they're never read from a replica
         final ContainerDAO dao = daoFactory.newContainerDAO();
         DirectoryStream<DatacatNode> stream;
-        stream = dao.getChildrenStream(dirFile.getObject(), view);
+        stream = dao.getChildrenStream(dirFile.getObject(), view, after, max);
 
         final Iterator<DatacatNode> iter = stream.iterator();
         final AtomicInteger dsCount = new AtomicInteger();
@@ -181,6 +305,9 @@ public class DcFileSystemProvider {
                 public boolean acceptNext() throws IOException{
                     while(iter.hasNext()){
                         DatacatNode child = iter.next();
+                        if(names != null && names.size() <= ChildrenView.MAX_FILTER_NAMES){
+                            names.add(child.getName());
+                        }
                         Path maybeNext = dir.resolve(child.getName());
                         DcFile file = DcFileSystemProvider.this.
                                 buildChild(dirFile, maybeNext, child);
@@ -196,6 +323,7 @@ public class DcFileSystemProvider {
                             return true;
                         }
                     }
+                    exhausted.set(true);
                     throw new NoSuchElementException();
                 }
             };
@@ -206,10 +334,13 @@ public class DcFileSystemProvider {
                 @Override
                 public void close() throws IOException{
                     // TODO: This assumes datasets
-                    if(dsCount.get() > 0){
+                    if(fullListing && dsCount.get() > 0){
                         dirFile.getAttributeView(ContainerViewProvider.class)
                             .setViewStats(view.get(), dsCount.get());
                     }
+                    if(names != null && exhausted.get()){
+                        childrenView.setNames(names, namesToken);
+                    }
                     super.close();
                     dao.close();  // Make sure to close dao (and underlying connection)
                 }
@@ -294,7 +425,7 @@ public class DcFileSystemProvider {
          some sort of distributed consensus stuff potentially.
          */
         DcFile f = resolveFile(path);
-        if((System.currentTimeMillis() - f.lastModifiedTime().toMillis()) > MAX_CACHE_TIME){
+        if((System.currentTimeMillis() - f.creationTime().toMillis()) > MAX_CACHE_TIME){
             getCache().removeFile(path);
             f = resolveFile(path);
         }
@@ -354,7 +485,7 @@ public class DcFileSystemProvider {
     }
 
     private DcFile retrieveFileAttributes(Path path, DcFile parent) throws IOException{
-        // LOG: Checking database
+        // LOG: Checking database. Files are cached for every caller, so they're never read from a replica
         try(BaseDAO dao = daoFactory.newBaseDAO()) {
             DatacatRecord parentRecord = parent != null ? parent.getObject() : null;
             return buildChild(parent, path, dao.getObjectInParent(parentRecord, path.getFileName().
@@ -420,9 +551,20 @@ public class DcFileSystemProvider {
         }
         try(DatasetDAO dao = daoFactory.newDatasetDAO()) {
             dao.lock(path.getParent());
+            if(createNode && dsParent.isDirectory()){
+                // The name filter can't see creates made elsewhere, so the DAO still checks for
+                // the node. The name is added before inserting so lookups don't miss it.
+                dsParent.getAttributeView(ChildrenView.class).reserveName(dsName);
+            }
             DatasetModel ret = dao.
                     createDataset(dsParent.getObject(), dsName, requestDataset, requestView, dsOptions);
             dao.commit();
+            if(!createNode){
+                // Existing dataset had views added, drop it so it's versioned again
+                getCache().removeFile(path);
+            }
+            // A merged node or new version/location changes the views of an existing dataset
+            datasetViewCache.invalidate(ret.getPk());
             childAdded(dsParent, path, FileType.FILE);
             return ret;
         }
@@ -458,6 +600,7 @@ public class DcFileSystemProvider {
             dao.commit();
         }
         getCache().removeFile(path);
+        searchesChanged(null);
         return getFile(path, context);
     }
 
@@ -485,6 +628,7 @@ public class DcFileSystemProvider {
             dao.commit();
         }
         getCache().removeFile(path);
+        searchesChanged(null);
         return getFile(path, context);
     }
     
@@ -505,20 +649,84 @@ public class DcFileSystemProvider {
             DatasetView datasetView, String query,
             String containerQuery,
             String[] retrieveFields, String[] sortFields) throws IOException, ParseException{
-        
-        final DirectoryStream<DatacatNode> targetContainers;
-        if(containerQuery != null){
-            targetContainers = (DirectoryStream) 
-                    searchContainers(pathPatterns, context, containerQuery, null, null);
-        } else {
-            targetContainers = Utils.getStream(walk(pathPatterns, context));
+        final SearchResultCache resultCache = searchResultCache;
+        if(resultCache != null){
+            final List<Object> key = SearchResultCache.key(pathPatterns, context, datasetView, query,
+                    containerQuery, retrieveFields, sortFields);
+            List<DatasetModel> cached = resultCache.get(key);
+            if(cached != null){
+                return listStream(cached);
+            }
+            final long started = resultCache.sequence();
+            final Set<Long> containers = new HashSet<>();
+            // Results which are cached are read from the primary
+            final DirectoryStream<DatasetModel> search = search(pathPatterns, context, datasetView, query,
+                    containerQuery, retrieveFields, sortFields, containers);
+            return new DirectoryStream<DatasetModel>() {
+                private List<DatasetModel> results = new ArrayList<>();
+                private boolean exhausted;
+
+                @Override
+                public Iterator<DatasetModel> iterator(){
+                    final Iterator<DatasetModel> iter = search.iterator();
+                    return new Iterator<DatasetModel>() {
+                        @Override
+                        public boolean hasNext(){
+                            boolean hasNext = iter.hasNext();
+                            exhausted = !hasNext;
+                            return hasNext;
+                        }
+
+                        @Override
+                        public DatasetModel next(){
+                            DatasetModel next = iter.next();
+                            if(results != null){
+                                results.add(next);
+                                // Too many to cache, stop keeping them
+                                results = results.size() > SearchResultCache.MAX_RESULTS ? null : results;
+                            }
+                            return next;
+                        }
+
+                        @Override
+                        public void remove(){
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public void close() throws IOException{
+                    search.close();
+                    // Only complete results are cached
+                    if(exhausted && results != null){
+                        resultCache.put(key, results, containers, started);
+                    }
+                }
+            };
         }
+        return search(pathPatterns, context, datasetView, query, containerQuery, retrieveFields, sortFields,
+                null);
+    }
 
-        final SearchDAO dao = daoFactory.newSearchDAO();
+    /**
+     * Search, recording the containers searched if the results are to be cached.
+     * @param searchedContainers Pks of the containers which were searched, or null if the results
+     * aren't cached and may be read from a replica
+     */
+    private DirectoryStream<DatasetModel> search(List<String> pathPatterns, CallContext context,
+            DatasetView datasetView, String query, String containerQuery, String[] retrieveFields,
+            String[] sortFields, Set<Long> searchedContainers) throws IOException, ParseException{
+        boolean cached = searchedContainers != null;
+        DirectoryStream<DatacatNode> containers = getTargetContainers(pathPatterns, context, containerQuery, cached);
+        final DirectoryStream<DatacatNode> targetContainers = cached
+                ? recordContainers(containers, searchedContainers) : containers;
+
+        final SearchDAO dao = newSearchDAO(cached);
         final DirectoryStream<DatasetModel> search;
         // The retrieval of the DirectoryStream can fail, so we should clean up if that happens
         try {
-            search = dao.search(targetContainers, datasetView, query, retrieveFields, sortFields);
+            search = dao.search(targetContainers, datasetView, query, retrieveFields, sortFields, context);
         } catch(ParseException | IllegalArgumentException | IOException ex) {
             dao.close();
             throw ex;
@@ -548,6 +756,155 @@ public class DcFileSystemProvider {
         };
     }
 
+    /**
+     * Aggregate the datasets matching a search, returning only the aggregated rows.
+     * @param pathPatterns A glob or regex pattern
+     * @param context Call Context
+     * @param datasetView Apply this view to all datasets
+     * @param query A Query String
+     * @param containerQuery The container query string
+     * @param groupBy Fields of datasets to group by, or null
+     * @param aggregates Aggregates to compute, as in {@code count} or {@code sum(fileSizeBytes)}
+     * @return A row for each group, mapping group by fields and aggregates to their values
+     * @throws IOException
+     * @throws ParseException 
+     */
+    public List<Map<String, Object>> aggregate(List<String> pathPatterns, CallContext context,
+            DatasetView datasetView, String query, String containerQuery,
+            String[] groupBy, String[] aggregates) throws IOException, ParseException{
+        try(DirectoryStream<DatacatNode> targetContainers = 
+                getTargetContainers(pathPatterns, context, containerQuery, false);
+                SearchDAO dao = daoFactory.newReadOnlySearchDAO()) {
+            return dao.aggregate(targetContainers, datasetView, query, groupBy, aggregates, context);
+        }
+    }
+
+    /**
+     * Count the distinct values of fields over the datasets matching a search. Counts are cached
+     * with search results, when search results are cached.
+     * @param pathPatterns A glob or regex pattern
+     * @param context Call Context
+     * @param datasetView Apply this view to all datasets
+     * @param query A Query String
+     * @param containerQuery The container query string
+     * @param fields Fields and metadata fields of datasets to count the values of
+     * @param limit Maximum number of values to return for each field, or 0 for all of them
+     * @return For each field, its most common values first, each a map with a "value" and a "count"
+     * @throws IOException
+     * @throws ParseException 
+     */
+    public Map<String, List<Map<String, Object>>> facets(List<String> pathPatterns, CallContext context,
+            DatasetView datasetView, String query, String containerQuery,
+            String[] fields, int limit) throws IOException, ParseException{
+        SearchResultCache resultCache = searchResultCache;
+        List<Object> key = null;
+        long started = 0;
+        Set<Long> searchedContainers = null;
+        if(resultCache != null){
+            key = SearchResultCache.facetKey(pathPatterns, context, datasetView, query, containerQuery,
+                    fields, limit);
+            Map<String, List<Map<String, Object>>> cached = resultCache.getFacets(key);
+            if(cached != null){
+                return cached;
+            }
+            started = resultCache.sequence();
+            searchedContainers = new HashSet<>();
+        }
+        boolean cached = resultCache != null;
+        DirectoryStream<DatacatNode> containers = getTargetContainers(pathPatterns, context, containerQuery, cached);
+        try(DirectoryStream<DatacatNode> targetContainers = cached
+                ? recordContainers(containers, searchedContainers) : containers;
+                SearchDAO dao = newSearchDAO(cached)) {
+            Map<String, List<Map<String, Object>>> facets = 
+                    dao.facets(targetContainers, datasetView, query, fields, limit, context);
+            if(resultCache != null){
+                resultCache.putFacets(key, facets, searchedContainers, started);
+            }
+            return facets;
+        }
+    }
+
+    /**
+     * Get a search DAO.
+     *
+     * Results which will be cached come from the primary, even though that sends every miss of the
+     * cache to the primary. A write clears the results it affects when it commits, but a replica
+     * may not have the write yet. A miss read from the replica right after that would cache the
+     * results from before the write, and every caller, including the writer, would get them until
+     * they expire.
+     * @param cached true if the results are cached for every caller, so they must come from the
+     * primary
+     */
+    private SearchDAO newSearchDAO(boolean cached) throws IOException{
+        return cached ? daoFactory.newSearchDAO() : daoFactory.newReadOnlySearchDAO();
+    }
+
+    private DirectoryStream<DatacatNode> getTargetContainers(List<String> pathPatterns, CallContext context,
+            String containerQuery, boolean cached) throws IOException, ParseException{
+        if(containerQuery != null){
+            // The container search reads ContainerSearch, which the dataset search refills. They may
+            // share a connection, so the containers are read before the dataset search starts.
+            List<DatacatNode> found = new ArrayList<>();
+            try(DirectoryStream<DatasetContainer> stream = 
+                    searchContainers(pathPatterns, context, containerQuery, null, null, 0, cached)) {
+                for(DatasetContainer container: stream){
+                    found.add(container);
+                }
+            }
+            return listStream(found);
+        }
+        return Utils.getStream(walk(pathPatterns, context));
+    }
+
+    /**
+     * Record the pks of containers as they are read from a stream.
+     */
+    private static DirectoryStream<DatacatNode> recordContainers(final DirectoryStream<DatacatNode> containers,
+            final Set<Long> pks){
+        return new DirectoryStream<DatacatNode>() {
+            @Override
+            public Iterator<DatacatNode> iterator(){
+                final Iterator<DatacatNode> iter = containers.iterator();
+                return new Iterator<DatacatNode>() {
+                    @Override
+                    public boolean hasNext(){
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public DatacatNode next(){
+                        DatacatNode next = iter.next();
+                        pks.add(next.getPk());
+                        return next;
+                    }
+
+                    @Override
+                    public void remove(){
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException{
+                containers.close();
+            }
+        };
+    }
+
+    private static <T> DirectoryStream<T> listStream(final List<T> results){
+        return new DirectoryStream<T>() {
+            @Override
+            public Iterator<T> iterator(){
+                return results.iterator();
+            }
+
+            @Override
+            public void close() throws IOException{
+            }
+        };
+    }
+
     /**
      * Search using a path pattern and a query.
      *
@@ -561,16 +918,42 @@ public class DcFileSystemProvider {
     public DirectoryStream<DatasetContainer> searchContainers(List<String> pathPatterns,
             CallContext context,
             String query, String[] retrieveFields, String[] sortFields) throws IOException, ParseException{
+        return searchContainers(pathPatterns, context, query, retrieveFields, sortFields, 0);
+    }
+
+    /**
+     * Search using a path pattern and a query, returning at most maxResults containers. The sort
+     * and the limit are applied by the database.
+     *
+     * @param pathPatterns A glob or regex pattern
+     * @param context Call Context
+     * @param query A Query String
+     * @param retrieveFields Metadata fields to retrieve
+     * @param sortFields Fields to sort on.
+     * @param maxResults Maximum number of containers to return, or 0 for all of them
+     * @return Stream of containers. Make sure to close the stream when done.
+     */
+    public DirectoryStream<DatasetContainer> searchContainers(List<String> pathPatterns,
+            CallContext context, String query, String[] retrieveFields, String[] sortFields,
+            int maxResults) throws IOException, ParseException{
+        return searchContainers(pathPatterns, context, query, retrieveFields, sortFields, maxResults, false);
+    }
+
+    private DirectoryStream<DatasetContainer> searchContainers(List<String> pathPatterns,
+            CallContext context, String query, String[] retrieveFields, String[] sortFields,
+            int maxResults, boolean cached) throws IOException, ParseException{
         
-        LinkedList<DatacatNode> results = walk(pathPatterns, context);
+        // The walk checks permissions on each container, so it can't be done by the query. The
+        // containers it finds are drained into the search as they are inserted.
+        DirectoryStream<DatacatNode> containers = Utils.getStream(walk(pathPatterns, context));
         
-        final SearchDAO dao = daoFactory.newSearchDAO();
+        final SearchDAO dao = newSearchDAO(cached);
 
         final DirectoryStream<DatasetContainer> search;
 
         // The retrieval of the DirectoryStream can fail, so we should clean up if that happens
         try {
-            search = dao.searchContainers(Utils.getStream(results), query, retrieveFields, sortFields);
+            search = dao.searchContainers(containers, query, retrieveFields, sortFields, maxResults, context);
         } catch(ParseException | IllegalArgumentException | IOException ex) {
             dao.close();
             throw ex;
@@ -644,6 +1027,8 @@ public class DcFileSystemProvider {
             dao.commit();
         }
         getCache().removeFile(path);
+        datasetViewCache.invalidate(ds.getPk());
+        searchesChanged(ds.getParentPk());
         return getFile(path, context);
     }
 
@@ -683,15 +1068,21 @@ public class DcFileSystemProvider {
     }
 
     public void delete(Path path, CallContext context) throws IOException{
+        boolean isFile;
         try(BaseDAO dao = daoFactory.newBaseDAO()) {
             DcFile file = resolveFile(path);
             checkPermission(context, file, DcPermissions.DELETE);
             dao.delete(file.getObject());
             dao.commit();
+            isFile = file.isRegularFile();
+            if(isFile){
+                datasetViewCache.invalidate(file.getObject().getPk());
+            }
         }
         DcFile parentFile = resolveFile(path.getParent());
         getCache().removeFile(path);
         childRemoved(parentFile, path);
+        searchesChanged(isFile ? parentFile.getObject().getPk() : null);
     }
 
     private void checkPermission(CallContext context, DcFile file, DcPermissions permission) throws IOException{
@@ -722,12 +1113,33 @@ public class DcFileSystemProvider {
     }
 
     private void childAdded(DcFile parent, Path child, FileType fileType){
+        synchronized(missingPaths){
+            pathsCreated.incrementAndGet();
+            missingPaths.invalidate(child.toString());
+        }
         FileAttributes attributes = parent.getAttributes();
         attributes.getAttributeView(ChildrenView.class).link(child);
         if(fileType instanceof FileType.Directory){
             attributes.getAttributeView(SubdirectoryView.class).link(child);
         }
         attributes.getAttributeView(ContainerViewProvider.class).clearStats();
+        searchesChanged(fileType == FileType.FILE ? parent.getObject().getPk() : null);
+    }
+
+    /**
+     * Drop cached search results after a write.
+     * @param containerPk Pk of the container whose datasets changed, or null if containers changed
+     */
+    private void searchesChanged(Long containerPk){
+        SearchResultCache resultCache = searchResultCache;
+        if(resultCache == null){
+            return;
+        }
+        if(containerPk != null){
+            resultCache.invalidateContainer(containerPk);
+        } else {
+            resultCache.clear();
+        }
     }
 
     private void childModified(DcFile parent, Path child){
@@ -0,0 +1,318 @@
+package org.srs.datacat.vfs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.srs.datacat.metrics.Metrics;
+import org.srs.datacat.model.DatasetModel;
+import org.srs.datacat.model.DatasetView;
+import org.srs.datacat.model.HasMetadata;
+import org.srs.datacat.model.security.CallContext;
+
+/**
+ * A cache of complete search results, for clients which run the same search over and over.
+ * Counts of field values for hot fields are cached the same way.
+ * Results are cached by the search request and the caller's groups. The cache is bounded by
+ * an estimate of the size of the results, and results expire after a fixed time.
+ *
+ * Results are dropped when a dataset is written in one of the containers the search covered.
+ * Changes to containers themselves may change which containers a search covers, so they clear
+ * the whole cache. A search which was running when its results were dropped isn't cached.
+ *
+ * Only writes through this process drop results. Writes by another server or process aren't
+ * seen, so results may be out of date for as long as they're cached. The time results are cached
+ * for should be short, unless this process is the only writer.
+ *
+ * @author bvan
+ */
+public class SearchResultCache {
+
+    public static final String HIT_METRIC = "vfs.searchResults.hit";
+    public static final String MISS_METRIC = "vfs.searchResults.miss";
+    public static final String BYTES_METRIC = "vfs.searchResults.bytes";
+
+    /**
+     * Searches with more results than this aren't cached.
+     */
+    public static final int MAX_RESULTS = 10000;
+
+    // Rough sizes used to estimate the memory held by results
+    private static final int DATASET_BYTES = 1024;
+    private static final int METADATA_ENTRY_BYTES = 128;
+    // Invalidations are remembered for at least as long as a search may run
+    private static final long MIN_INVALIDATION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Cache<List<Object>, Entry> cache;
+    private final ConcurrentMap<Long, Set<List<Object>>> keysByContainer = new ConcurrentHashMap<>();
+    private final Cache<Long, Long> invalidations;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long cleared;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong hits = Metrics.counter(HIT_METRIC);
+    private final AtomicLong misses = Metrics.counter(MISS_METRIC);
+
+    /**
+     * Create a cache.
+     * @param maxBytes Maximum estimated size of all cached results
+     * @param maxAgeMillis Maximum time results are cached for
+     */
+    public SearchResultCache(long maxBytes, long maxAgeMillis){
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<List<Object>, Entry>() {
+                    @Override
+                    public int weigh(List<Object> key, Entry value){
+                        return value.bytes;
+                    }
+                })
+                .expireAfterWrite(maxAgeMillis, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<List<Object>, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<List<Object>, Entry> notification){
+                        Entry entry = notification.getValue();
+                        if(entry == null){
+                            return;
+                        }
+                        bytes.addAndGet(-entry.bytes);
+                        for(Long pk: entry.containers){
+                            Set<List<Object>> keys = keysByContainer.get(pk);
+                            if(keys != null){
+                                keys.remove(notification.getKey());
+                                if(keys.isEmpty()){
+                                    keysByContainer.remove(pk, keys);
+                                }
+                            }
+                        }
+                    }
+                })
+                .build();
+        this.invalidations = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(maxAgeMillis, MIN_INVALIDATION_MILLIS), TimeUnit.MILLISECONDS)
+                .build();
+        Metrics.gauge(BYTES_METRIC, new Metrics.Gauge() {
+            @Override
+            public long value(){
+                return bytes.get();
+            }
+        });
+    }
+
+    /**
+     * Build the key for a search. Anything which changes the results of a search is part of it.
+     * Paging is left out, searches are cached in full.
+     */
+    public static List<Object> key(List<String> pathPatterns, CallContext context, DatasetView view,
+            String query, String containerQuery, String[] retrieveFields, String[] sortFields){
+        return Arrays.<Object>asList(
+                new ArrayList<>(pathPatterns),
+                context != null ? new TreeSet<>(context.getGroups()) : null,
+                view.getVersionId(),
+                view.getSite(),
+                normalize(query),
+                normalize(containerQuery),
+                retrieveFields != null ? Arrays.asList(retrieveFields) : null,
+                sortFields != null ? Arrays.asList(sortFields) : null);
+    }
+
+    /**
+     * Build the key for counts of the values of fields.
+     */
+    public static List<Object> facetKey(List<String> pathPatterns, CallContext context, DatasetView view,
+            String query, String containerQuery, String[] fields, int limit){
+        List<Object> key = new ArrayList<>(key(pathPatterns, context, view, query, containerQuery, fields, null));
+        key.add("facets");
+        key.add(limit);
+        return key;
+    }
+
+    private static String normalize(String query){
+        return query == null || query.trim().isEmpty() ? null : query.trim();
+    }
+
+    /**
+     * Get the cached results of a search.
+     * @return The results, or null if they aren't cached
+     */
+    public List<DatasetModel> get(List<Object> key){
+        Entry entry = cache.getIfPresent(key);
+        if(entry == null){
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return (List<DatasetModel>) entry.value;
+    }
+
+    /**
+     * Get cached counts of the values of fields. They are shared, and can't be modified.
+     * @return The counts, or null if they aren't cached
+     */
+    public Map<String, List<Map<String, Object>>> getFacets(List<Object> key){
+        Entry entry = cache.getIfPresent(key);
+        if(entry == null){
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return (Map<String, List<Map<String, Object>>>) entry.value;
+    }
+
+    /**
+     * The current sequence number. Take it before a search, and pass it to {@link #put}.
+     */
+    public long sequence(){
+        return sequence.get();
+    }
+
+    /**
+     * Cache the results of a search, unless one of its containers changed since it started.
+     * @param key Key of the search
+     * @param results All the results of the search
+     * @param containers Pks of the containers which were searched
+     * @param started The sequence number taken before the search
+     */
+    public void put(List<Object> key, List<DatasetModel> results, Collection<Long> containers, long started){
+        if(results.size() > MAX_RESULTS){
+            return;
+        }
+        put(key, new Entry(Collections.unmodifiableList(new ArrayList<>(results)), estimateBytes(results),
+                containers), containers, started);
+    }
+
+    /**
+     * Cache counts of the values of fields, unless one of their containers changed since they
+     * were started. An unmodifiable copy is cached, so the caller may keep using the counts.
+     * @see #put(java.util.List, java.util.List, java.util.Collection, long) 
+     */
+    public void putFacets(List<Object> key, Map<String, List<Map<String, Object>>> facets,
+            Collection<Long> containers, long started){
+        long values = 0;
+        for(List<Map<String, Object>> counts: facets.values()){
+            values += counts.size();
+        }
+        int estimate = (int) Math.min(values * METADATA_ENTRY_BYTES, Integer.MAX_VALUE);
+        put(key, new Entry(copyFacets(facets), estimate, containers), containers, started);
+    }
+
+    private static Map<String, List<Map<String, Object>>> copyFacets(
+            Map<String, List<Map<String, Object>>> facets){
+        Map<String, List<Map<String, Object>>> copy = new LinkedHashMap<>();
+        for(Map.Entry<String, List<Map<String, Object>>> e: facets.entrySet()){
+            List<Map<String, Object>> counts = new ArrayList<>(e.getValue().size());
+            for(Map<String, Object> count: e.getValue()){
+                counts.add(Collections.unmodifiableMap(new LinkedHashMap<>(count)));
+            }
+            copy.put(e.getKey(), Collections.unmodifiableList(counts));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private void put(List<Object> key, Entry entry, Collection<Long> containers, long started){
+        if(isStale(containers, started)){
+            return;
+        }
+        // Index the key first, so an invalidation after this point finds it
+        for(Long pk: entry.containers){
+            keysFor(pk).add(key);
+        }
+        cache.put(key, entry);
+        bytes.addAndGet(entry.bytes);
+        if(isStale(containers, started)){
+            cache.invalidate(key);
+        }
+    }
+
+    private boolean isStale(Collection<Long> containers, long started){
+        if(cleared > started){
+            return true;
+        }
+        for(Long pk: containers){
+            Long invalidated = invalidations.getIfPresent(pk);
+            if(invalidated != null && invalidated > started){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<List<Object>> keysFor(Long pk){
+        Set<List<Object>> keys = keysByContainer.get(pk);
+        if(keys == null){
+            keys = Collections.newSetFromMap(new ConcurrentHashMap<List<Object>, Boolean>());
+            Set<List<Object>> existing = keysByContainer.putIfAbsent(pk, keys);
+            keys = existing != null ? existing : keys;
+        }
+        return keys;
+    }
+
+    /**
+     * Drop the results of all searches covering a container.
+     * @param pk Pk of the container
+     */
+    public void invalidateContainer(Long pk){
+        invalidations.put(pk, sequence.incrementAndGet());
+        Set<List<Object>> keys = keysByContainer.get(pk);
+        if(keys != null){
+            cache.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * Drop all results.
+     */
+    public void clear(){
+        cleared = sequence.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size(){
+        return cache.size();
+    }
+
+    /**
+     * Estimated size of all cached results, in bytes.
+     */
+    public long getBytes(){
+        return bytes.get();
+    }
+
+    private static int estimateBytes(List<DatasetModel> results){
+        long estimate = 0;
+        for(DatasetModel dataset: results){
+            estimate += DATASET_BYTES;
+            if(dataset instanceof HasMetadata){
+                Map<String, Object> metadata = ((HasMetadata) dataset).getMetadataMap();
+                estimate += metadata != null ? metadata.size() * METADATA_ENTRY_BYTES : 0;
+            }
+        }
+        return (int) Math.min(estimate, Integer.MAX_VALUE);
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final Set<Long> containers;
+        private final int bytes;
+
+        Entry(Object value, int bytes, Collection<Long> containers){
+            this.value = value;
+            this.containers = Collections.unmodifiableSet(new TreeSet<>(containers));
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package org.srs.datacat.vfs.attribute;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.srs.datacat.metrics.Metrics;
+import org.srs.datacat.model.DatasetModel;
+import org.srs.datacat.model.DatasetView;
+
+/**
+ * A bounded cache of datasets built for a specific view, shared by all files of a provider.
+ * Concurrent requests for the same view of a dataset wait for a single load.
+ *
+ * Entries are evicted by dataset when a dataset is changed. A load which was in progress when
+ * its dataset was invalidated is discarded rather than cached.
+ *
+ * @author bvan
+ */
+public class DatasetViewCache {
+
+    public static final String HIT_METRIC = "vfs.datasetViews.hit";
+    public static final String MISS_METRIC = "vfs.datasetViews.miss";
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentMap<Long, Set<Key>> keysByDataset = new ConcurrentHashMap<>();
+    // Sequence number of the last invalidation of a dataset, kept for as long as a load might take
+    private final Cache<Long, Long> invalidations;
+    private final AtomicLong hits = Metrics.counter(HIT_METRIC);
+    private final AtomicLong misses = Metrics.counter(MISS_METRIC);
+
+    /**
+     * Create a cache.
+     * @param maximumSize Maximum number of views to cache
+     * @param maxAgeMillis Maximum time a view is cached for, to pick up changes made elsewhere
+     */
+    public DatasetViewCache(long maximumSize, long maxAgeMillis){
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maxAgeMillis, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<Key, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, Entry> notification){
+                        Key key = notification.getKey();
+                        Set<Key> keys = key != null ? keysByDataset.get(key.pk) : null;
+                        if(keys != null){
+                            keys.remove(key);
+                            if(keys.isEmpty()){
+                                keysByDataset.remove(key.pk, keys);
+                            }
+                        }
+                    }
+                })
+                .build();
+        this.invalidations = CacheBuilder.newBuilder()
+                .expireAfterWrite(maxAgeMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Get a view of a dataset, loading it if necessary.
+     * @param pk Pk of the dataset
+     * @param view The view
+     * @param withMetadata Whether the view includes version metadata
+     * @param loader Builds the dataset for the view
+     * @return The dataset
+     * @throws IOException if the loader fails
+     */
+    public DatasetModel get(Long pk, DatasetView view, boolean withMetadata,
+            final Callable<DatasetModel> loader) throws IOException{
+        final Key key = new Key(pk, view, withMetadata);
+        final Set<Key> keys = keysFor(pk);
+        try {
+            final boolean[] loaded = {false};
+            Callable<Entry> entryLoader = new Callable<Entry>() {
+                @Override
+                public Entry call() throws Exception{
+                    loaded[0] = true;
+                    // Index the key before loading, so an invalidation during the load finds it
+                    keys.add(key);
+                    long sequence = SEQUENCE.incrementAndGet();
+                    return new Entry(loader.call(), sequence);
+                }
+            };
+            Entry entry = cache.get(key, entryLoader);
+            if(isStale(pk, entry)){
+                cache.invalidate(key);
+                misses.incrementAndGet();
+                return loader.call();
+            }
+            (loaded[0] ? misses : hits).incrementAndGet();
+            return entry.dataset;
+        } catch(ExecutionException | UncheckedExecutionException | ExecutionError ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } catch(IOException | RuntimeException ex) {
+            throw ex;
+        } catch(Exception ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private Set<Key> keysFor(Long pk){
+        Set<Key> keys = keysByDataset.get(pk);
+        if(keys == null){
+            keys = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+            Set<Key> existing = keysByDataset.putIfAbsent(pk, keys);
+            keys = existing != null ? existing : keys;
+        }
+        return keys;
+    }
+
+    private boolean isStale(Long pk, Entry entry){
+        return isInvalidatedSince(pk, entry.sequence);
+    }
+
+    /**
+     * The current sequence number, to check later with {@link #isInvalidatedSince}.
+     */
+    public long sequence(){
+        return SEQUENCE.get();
+    }
+
+    /**
+     * Check if a dataset has been invalidated since a sequence number was taken.
+     * @param pk Pk of the dataset
+     * @param sequence A sequence number from {@link #sequence()}
+     * @return true if the dataset has changed since
+     */
+    public boolean isInvalidatedSince(Long pk, long sequence){
+        Long invalidated = invalidations.getIfPresent(pk);
+        return invalidated != null && invalidated > sequence;
+    }
+
+    /**
+     * Evict all views of a dataset.
+     * @param pk Pk of the dataset
+     */
+    public void invalidate(Long pk){
+        invalidations.put(pk, SEQUENCE.incrementAndGet());
+        Set<Key> keys = keysByDataset.get(pk);
+        if(keys != null){
+            cache.invalidateAll(keys);
+        }
+    }
+
+    public void clear(){
+        cache.invalidateAll();
+    }
+
+    public long size(){
+        return cache.size();
+    }
+
+    private static final class Entry {
+        private final DatasetModel dataset;
+        private final long sequence;
+
+        Entry(DatasetModel dataset, long sequence){
+            this.dataset = dataset;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Key {
+        private final Long pk;
+        private final int versionId;
+        private final String site;
+        private final boolean withMetadata;
+
+        Key(Long pk, DatasetView view, boolean withMetadata){
+            this.pk = pk;
+            this.versionId = view.getVersionId();
+            this.site = view.getSite();
+            this.withMetadata = withMetadata;
+        }
+
+        @Override
+        public boolean equals(Object obj){
+            if(!(obj instanceof Key)){
+                return false;
+            }
+            Key other = (Key) obj;
+            return pk.equals(other.pk) && versionId == other.versionId && site.equals(other.site)
+                    && withMetadata == other.withMetadata;
+        }
+
+        @Override
+        public int hashCode(){
+            int result = pk.hashCode();
+            result = 31 * result + versionId;
+            result = 31 * result + site.hashCode();
+            return 31 * result + (withMetadata ? 1 : 0);
+        }
+    }
+
+}
@@ -3,9 +3,10 @@ package org.srs.datacat.vfs.attribute;
 
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.model.dataset.DatasetLocationModel;
@@ -15,6 +16,8 @@ import org.srs.datacat.model.dataset.DatasetWithViewModel;
 import org.srs.datacat.vfs.DcFileSystemProvider;
 
 /**
+ * Builds a dataset for a given view. Built datasets are kept in the provider's shared
+ * {@link DatasetViewCache}.
  *
  * @author bvan
  */
@@ -22,12 +25,14 @@ public class DatasetViewProvider implements DcViewProvider<DatasetView> {
 
     private final DatasetModel dataset;
     private final DcFileSystemProvider provider;
+    private final long created;
     
-    private final HashMap<Integer, DatasetViewInfoModel> versionCache = new HashMap<>(4);
+    private final ConcurrentHashMap<Integer, DatasetViewInfoModel> versionCache = new ConcurrentHashMap<>(4);
     
     public DatasetViewProvider(DcFileSystemProvider provider, DatasetModel dataset){
         this.dataset = dataset;
         this.provider = provider;
+        this.created = provider.getDatasetViewCache().sequence();
         if(dataset instanceof DatasetWithViewModel){
             DatasetWithViewModel objectWithView = ((DatasetWithViewModel) dataset);
             if(objectWithView.getViewInfo().locationsOpt().isPresent()){
@@ -41,10 +46,8 @@ public class DatasetViewProvider implements DcViewProvider<DatasetView> {
     }
     
     public void clear(){
-        synchronized(this){
-            versionCache.clear();
-            //locationCache.clear();
-        }
+        versionCache.clear();
+        provider.getDatasetViewCache().invalidate(dataset.getPk());
     }
 
     @Override
@@ -52,21 +55,37 @@ public class DatasetViewProvider implements DcViewProvider<DatasetView> {
         return withView(requestView, false);
     }
    
-    public DatasetModel withView(DatasetView view, boolean withMetadata) throws NoSuchFileException, IOException {
+    public DatasetModel withView(final DatasetView view, final boolean withMetadata) 
+            throws NoSuchFileException, IOException {
         if(view == DatasetView.EMPTY){
             return dataset;
         }
-        DatasetViewInfoModel dsv;
+        DatasetViewCache viewCache = provider.getDatasetViewCache();
+        if(viewCache.isInvalidatedSince(dataset.getPk(), created)){
+            // This file is older than the last change to the dataset. Don't share what's built from it.
+            versionCache.clear();
+            return buildView(view, withMetadata);
+        }
+        return viewCache.get(dataset.getPk(), view, withMetadata, 
+                new Callable<DatasetModel>() {
+                    @Override
+                    public DatasetModel call() throws IOException{
+                        return buildView(view, withMetadata);
+                    }
+                });
+    }
+
+    private DatasetModel buildView(DatasetView view, boolean withMetadata) throws NoSuchFileException, IOException {
+        DatasetViewInfoModel dsv = versionCache.get(view.getVersionId());
         DatasetVersionModel retDsv;
         Set<DatasetLocationModel> retLocations;
-        synchronized(this) {
-            if(!versionCache.containsKey(view.getVersionId())){
-                dsv = provider.getDatasetViewInfo(dataset, view);
-                if(dsv.getVersion().isLatest()){
-                    versionCache.put(DatasetView.CURRENT_VER, dsv);
-                }
-                versionCache.put(dsv.getVersion().getVersionId(), dsv);
+        if(dsv == null){
+            // Not locked; concurrent loads of the same view wait on the shared cache instead
+            dsv = provider.getDatasetViewInfo(dataset, view);
+            if(dsv.getVersion().isLatest()){
+                versionCache.put(DatasetView.CURRENT_VER, dsv);
             }
+            versionCache.put(dsv.getVersion().getVersionId(), dsv);
             dsv = versionCache.get(view.getVersionId());
         }
         if(dsv == null){
@@ -3,17 +3,26 @@ package org.srs.datacat.vfs;
 
 import com.google.common.base.Optional;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
 import junit.framework.TestCase;
 import org.junit.AfterClass;
 
@@ -22,7 +31,11 @@ import org.junit.Test;
 import org.srs.datacat.dao.BaseDAO;
 import org.srs.datacat.dao.ContainerDAO;
 import org.srs.datacat.dao.DAOFactory;
+import org.srs.datacat.dao.UnitOfWork;
+import org.srs.datacat.dao.sql.SqlDAOFactory;
+import org.srs.datacat.dao.sql.SqlUnitOfWork;
 import org.srs.datacat.dao.sql.mysql.DAOFactoryMySQL;
+import org.srs.datacat.metrics.Metrics;
 import org.srs.datacat.model.DatacatNode;
 
 import org.srs.datacat.model.DatasetModel;
@@ -33,13 +46,16 @@ import org.srs.datacat.model.ModelProvider;
 import org.srs.datacat.model.RecordType;
 
 import org.srs.datacat.test.DbHarness;
+import org.srs.datacat.test.HSqlDbHarness;
 
 import org.srs.datacat.model.dataset.DatasetOption;
+import org.srs.datacat.model.dataset.DatasetWithViewModel;
 import org.srs.datacat.model.security.DcAclEntry;
 import org.srs.datacat.model.security.DcAclEntryScope;
 import org.srs.datacat.model.security.DcGroup;
 import org.srs.datacat.model.security.DcPermissions;
 import org.srs.datacat.shared.Provider;
+import org.srs.datacat.vfs.attribute.DatasetViewProvider;
 
 import org.srs.vfs.PathUtils;
 
@@ -310,4 +326,425 @@ public class DcFileSystemProviderTest {
     }
 
     
+    @Test
+    public void testGroupListingQueryCount() throws IOException{
+        AtomicInteger statements = new AtomicInteger();
+        DataSource countingDs = countStatements(harness.getDataSource(), statements);
+        for(DAOFactory factory: new DAOFactory[]{new DAOFactoryMySQL(countingDs), new SqlDAOFactory(countingDs)}){
+            DcFileSystemProvider countingProvider = new DcFileSystemProvider(factory, new Provider());
+            String groupName = "groupListing" + factory.getClass().getSimpleName();
+            DatasetContainer request = (DatasetContainer) countingProvider.getModelProvider().getContainerBuilder()
+                    .name(groupName)
+                    .type(RecordType.GROUP)
+                    .build();
+            Path groupPath = countingProvider.getPath(DbHarness.TEST_BASE_PATH).resolve(groupName);
+            countingProvider.createDirectory(groupPath, TestUtils.DEFAULT_TEST_CONTEXT, request);
+
+            int count = 20;
+            HashSet<DatasetOption> options = new HashSet<>(Arrays.asList(DatasetOption.CREATE_NODE,
+                    DatasetOption.CREATE_VERSION, DatasetOption.CREATE_LOCATIONS));
+            for(int i = 0; i < count; i++){
+                String name = String.format("dataset%03d", i);
+                DatasetModel.Builder builder = countingProvider.getModelProvider().getDatasetBuilder();
+                builder.name(name);
+                builder.dataType(DbHarness.TEST_DATATYPE_01);
+                builder.fileFormat(DbHarness.TEST_FILEFORMAT_01);
+                builder.datasetSource(DbHarness.TEST_DATASET_SOURCE);
+                builder.versionId(DatasetView.NEW_VER);
+                builder.site("SLAC");
+                builder.resource("/nfs/junit/" + groupName + "/" + name);
+                countingProvider.createDataset(groupPath.resolve(name), TestUtils.DEFAULT_TEST_CONTEXT,
+                        builder.build(), options);
+            }
+            countingProvider.getFile(groupPath, TestUtils.DEFAULT_TEST_CONTEXT);
+
+            // The children, versions and locations are each read with a single statement, so the
+            // number of statements doesn't grow with the number of datasets
+            statements.set(0);
+            int found = 0;
+            try(DirectoryStream<Path> stream = countingProvider.newPagedDirectoryStream(groupPath,
+                    TestUtils.DEFAULT_TEST_CONTEXT, DcFileSystemProvider.ACCEPT_ALL_FILTER,
+                    Optional.<String>absent(), -1, Optional.of(DatasetView.CURRENT_ALL))){
+                for(Path p: stream){
+                    DatasetModel ds = countingProvider.getFile(p, TestUtils.DEFAULT_TEST_CONTEXT)
+                            .getAttributeView(DatasetViewProvider.class)
+                            .withView(DatasetView.CURRENT_ALL, true);
+                    TestCase.assertEquals(p.getFileName().toString(), ds.getName());
+                    found++;
+                }
+            }
+            TestCase.assertEquals(count, found);
+            TestCase.assertTrue("Listing a group shouldn't need a query per dataset: " + statements.get(),
+                    statements.get() <= 5);
+
+            for(int i = 0; i < count; i++){
+                countingProvider.delete(groupPath.resolve(String.format("dataset%03d", i)), 
+                        TestUtils.DEFAULT_TEST_CONTEXT);
+            }
+            countingProvider.delete(groupPath, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testDatasetViewCache() throws IOException{
+        AtomicInteger statements = new AtomicInteger();
+        DcFileSystemProvider countingProvider = new DcFileSystemProvider(
+                new DAOFactoryMySQL(countStatements(harness.getDataSource(), statements)), new Provider());
+        Path dsPath = countingProvider.getPath(DbHarness.TEST_BASE_PATH).resolve("viewCacheDataset");
+        HashMap<String, Object> metadata = new HashMap<>();
+        metadata.put(DbHarness.alphaName, DbHarness.alphaMdValues[0]);
+        DatasetModel.Builder builder = countingProvider.getModelProvider().getDatasetBuilder();
+        builder.name("viewCacheDataset");
+        builder.dataType(DbHarness.TEST_DATATYPE_01);
+        builder.fileFormat(DbHarness.TEST_FILEFORMAT_01);
+        builder.datasetSource(DbHarness.TEST_DATASET_SOURCE);
+        builder.versionId(DatasetView.NEW_VER);
+        builder.versionMetadata(metadata);
+        builder.site("SLAC");
+        builder.resource("/nfs/junit/viewCacheDataset");
+        HashSet<DatasetOption> options = new HashSet<>(Arrays.asList(DatasetOption.CREATE_NODE,
+                DatasetOption.CREATE_VERSION, DatasetOption.CREATE_LOCATIONS));
+        countingProvider.createDataset(dsPath, TestUtils.DEFAULT_TEST_CONTEXT, builder.build(), options);
+        try {
+            DatasetModel first = countingProvider.getFile(dsPath, TestUtils.DEFAULT_TEST_CONTEXT)
+                    .getAttributeView(DatasetViewProvider.class)
+                    .withView(DatasetView.CURRENT_ALL, true);
+            TestCase.assertEquals(DbHarness.alphaMdValues[0], versionMetadata(first).get(DbHarness.alphaName));
+
+            // Served from the cache, even for another file object of the same dataset
+            statements.set(0);
+            DcFile file = countingProvider.getFile(dsPath, TestUtils.DEFAULT_TEST_CONTEXT);
+            DatasetModel second = file.getAttributeView(DatasetViewProvider.class)
+                    .withView(DatasetView.CURRENT_ALL, true);
+            TestCase.assertSame(first, second);
+            TestCase.assertEquals(0, statements.get());
+
+            // Patching the dataset evicts its views
+            metadata.put(DbHarness.alphaName, DbHarness.alphaMdValues[1]);
+            DatasetModel patch = countingProvider.getModelProvider().getDatasetBuilder()
+                    .versionMetadata(metadata).build();
+            countingProvider.patchDataset(dsPath, TestUtils.DEFAULT_TEST_CONTEXT, DatasetView.CURRENT_ANY, patch);
+            DatasetModel patched = file.getAttributeView(DatasetViewProvider.class)
+                    .withView(DatasetView.CURRENT_ALL, true);
+            TestCase.assertEquals(DbHarness.alphaMdValues[1], versionMetadata(patched).get(DbHarness.alphaName));
+        } finally {
+            countingProvider.delete(dsPath, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testMissingPathCache() throws IOException{
+        AtomicInteger statements = new AtomicInteger();
+        DcFileSystemProvider countingProvider = new DcFileSystemProvider(
+                new DAOFactoryMySQL(countStatements(harness.getDataSource(), statements)), new Provider());
+        Path missing = countingProvider.getPath(DbHarness.TEST_BASE_PATH).resolve("missingFolder");
+        Path missingChild = missing.resolve("child");
+        assertMissing(countingProvider, missing);
+        // Repeated lookups, and lookups beneath the missing path, don't go to the database
+        statements.set(0);
+        assertMissing(countingProvider, missing);
+        assertMissing(countingProvider, missingChild);
+        TestCase.assertEquals(0, statements.get());
+
+        // Creating the path removes it from the cache
+        DatasetContainer request = (DatasetContainer) countingProvider.getModelProvider().getContainerBuilder()
+                .name("missingFolder")
+                .type(RecordType.FOLDER)
+                .build();
+        countingProvider.createDirectory(missing, TestUtils.DEFAULT_TEST_CONTEXT, request);
+        try {
+            TestCase.assertEquals("missingFolder",
+                    countingProvider.getFile(missing, TestUtils.DEFAULT_TEST_CONTEXT).getObject().getName());
+        } finally {
+            countingProvider.delete(missing, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testChildNameFilter() throws IOException{
+        AtomicInteger statements = new AtomicInteger();
+        DcFileSystemProvider countingProvider = new DcFileSystemProvider(
+                new DAOFactoryMySQL(countStatements(harness.getDataSource(), statements)), new Provider());
+        Path folder = countingProvider.getPath(DbHarness.TEST_BASE_PATH).resolve("nameFilterFolder");
+        DatasetContainer request = (DatasetContainer) countingProvider.getModelProvider().getContainerBuilder()
+                .name("nameFilterFolder")
+                .type(RecordType.FOLDER)
+                .build();
+        countingProvider.createDirectory(folder, TestUtils.DEFAULT_TEST_CONTEXT, request);
+        try {
+            createDatasets(countingProvider, folder, 0, 3);
+            int found = 0;
+            try(DirectoryStream<Path> stream = countingProvider.newPagedDirectoryStream(folder,
+                    TestUtils.DEFAULT_TEST_CONTEXT, DcFileSystemProvider.ACCEPT_ALL_FILTER,
+                    Optional.<String>absent(), -1, Optional.of(DatasetView.EMPTY))){
+                for(Path p: stream){
+                    found++;
+                }
+            }
+            TestCase.assertEquals(3, found);
+
+            // After a full listing, missing children are known without querying
+            long negatives = Metrics.counter(DcFileSystemProvider.NAME_FILTER_NEGATIVE_METRIC).get();
+            statements.set(0);
+            assertMissing(countingProvider, folder.resolve("dataset999"));
+            TestCase.assertEquals(0, statements.get());
+            TestCase.assertEquals(negatives + 1, 
+                    Metrics.counter(DcFileSystemProvider.NAME_FILTER_NEGATIVE_METRIC).get());
+
+            // New children are added to the filter
+            createDatasets(countingProvider, folder, 3, 4);
+            TestCase.assertEquals("dataset003", countingProvider.getFile(folder.resolve("dataset003"),
+                    TestUtils.DEFAULT_TEST_CONTEXT).getObject().getName());
+
+            // The filter can't see children created elsewhere, so it expires like a missing path
+            ChildrenView view = countingProvider.getFile(folder, TestUtils.DEFAULT_TEST_CONTEXT)
+                    .getAttributeView(ChildrenView.class);
+            long now = System.currentTimeMillis();
+            TestCase.assertEquals(Boolean.FALSE, view.mightContain("dataset999", now));
+            TestCase.assertNull(view.mightContain("dataset999",
+                    now + DcFileSystemProvider.MISSING_PATH_CACHE_TIME + 1));
+            TestCase.assertNull(view.mightContain("dataset999"));
+        } finally {
+            for(int i = 0; i < 4; i++){
+                countingProvider.delete(folder.resolve(String.format("dataset%03d", i)), 
+                        TestUtils.DEFAULT_TEST_CONTEXT);
+            }
+            countingProvider.delete(folder, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testSearchResultCache() throws IOException, ParseException{
+        AtomicInteger statements = new AtomicInteger();
+        DcFileSystemProvider countingProvider = new DcFileSystemProvider(
+                new DAOFactoryMySQL(countStatements(harness.getDataSource(), statements)), new Provider());
+        countingProvider.setSearchResultCache(new SearchResultCache(1024 * 1024, 60000));
+        Path folder = countingProvider.getPath(DbHarness.TEST_BASE_PATH).resolve("searchCacheFolder");
+        DatasetContainer request = (DatasetContainer) countingProvider.getModelProvider().getContainerBuilder()
+                .name("searchCacheFolder")
+                .type(RecordType.FOLDER)
+                .build();
+        countingProvider.createDirectory(folder, TestUtils.DEFAULT_TEST_CONTEXT, request);
+        try {
+            createDatasets(countingProvider, folder, 0, 3);
+            TestCase.assertEquals(3, countSearchResults(countingProvider, folder));
+
+            // The same search again is answered from the cache
+            long hits = Metrics.counter(SearchResultCache.HIT_METRIC).get();
+            statements.set(0);
+            TestCase.assertEquals(3, countSearchResults(countingProvider, folder));
+            TestCase.assertEquals(0, statements.get());
+            TestCase.assertEquals(hits + 1, Metrics.counter(SearchResultCache.HIT_METRIC).get());
+            TestCase.assertTrue(countingProvider.getSearchResultCache().getBytes() > 0);
+
+            // A new dataset in the folder drops the cached results
+            createDatasets(countingProvider, folder, 3, 4);
+            TestCase.assertEquals(0, countingProvider.getSearchResultCache().size());
+            statements.set(0);
+            TestCase.assertEquals(4, countSearchResults(countingProvider, folder));
+            TestCase.assertTrue(statements.get() > 0);
+        } finally {
+            for(int i = 0; i < 4; i++){
+                countingProvider.delete(folder.resolve(String.format("dataset%03d", i)), 
+                        TestUtils.DEFAULT_TEST_CONTEXT);
+            }
+            countingProvider.delete(folder, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testUnitOfWork() throws IOException, ParseException{
+        DAOFactory factory = new DAOFactoryMySQL(harness.getDataSource());
+        DcFileSystemProvider unitProvider = new DcFileSystemProvider(factory, new Provider());
+        Path folder = unitProvider.getPath(DbHarness.TEST_BASE_PATH).resolve("unitOfWorkFolder");
+        long checkouts = Metrics.counter(SqlUnitOfWork.CHECKOUT_METRIC).get();
+        try(SqlUnitOfWork unit = (SqlUnitOfWork) factory.beginUnitOfWork()) {
+            DatasetContainer request = (DatasetContainer) unitProvider.getModelProvider().getContainerBuilder()
+                    .name("unitOfWorkFolder")
+                    .type(RecordType.FOLDER)
+                    .build();
+            unitProvider.createDirectory(folder, TestUtils.DEFAULT_TEST_CONTEXT, request);
+            createDatasets(unitProvider, folder, 0, 3);
+            try(UnitOfWork nested = factory.beginUnitOfWork()) {
+                TestCase.assertEquals(3, countSearchResults(unitProvider, folder));
+            }
+            // Every DAO, including the nested unit's, used the same connection
+            TestCase.assertEquals(1, unit.getCheckouts());
+        }
+        TestCase.assertEquals(checkouts + 1, Metrics.counter(SqlUnitOfWork.CHECKOUT_METRIC).get());
+
+        // The writes were committed, they are seen on other connections
+        DcFileSystemProvider otherProvider = new DcFileSystemProvider(
+                new DAOFactoryMySQL(harness.getDataSource()), new Provider());
+        try {
+            TestCase.assertEquals(3, countSearchResults(otherProvider, folder));
+        } finally {
+            for(int i = 0; i < 3; i++){
+                otherProvider.delete(folder.resolve(String.format("dataset%03d", i)), 
+                        TestUtils.DEFAULT_TEST_CONTEXT);
+            }
+            otherProvider.delete(folder, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testContainerQueryInUnitOfWork() throws IOException, ParseException{
+        DAOFactory factory = new DAOFactoryMySQL(harness.getDataSource());
+        DcFileSystemProvider unitProvider = new DcFileSystemProvider(factory, new Provider());
+        Path folder = unitProvider.getPath(DbHarness.TEST_BASE_PATH).resolve("containerQueryFolder");
+        String containerQuery = "name == 'containerQueryFolder'";
+        try(UnitOfWork unit = factory.beginUnitOfWork()) {
+            DatasetContainer request = (DatasetContainer) unitProvider.getModelProvider().getContainerBuilder()
+                    .name("containerQueryFolder")
+                    .type(RecordType.FOLDER)
+                    .build();
+            unitProvider.createDirectory(folder, TestUtils.DEFAULT_TEST_CONTEXT, request);
+            createDatasets(unitProvider, folder, 0, 3);
+            // The container search and the dataset search fill ContainerSearch on one connection
+            TestCase.assertEquals(3, countSearchResults(unitProvider, folder, containerQuery));
+            TestCase.assertEquals(3, countSearchResults(unitProvider, folder, containerQuery));
+        }
+
+        // The searches didn't count as writes, so they didn't roll back the datasets
+        DcFileSystemProvider otherProvider = new DcFileSystemProvider(
+                new DAOFactoryMySQL(harness.getDataSource()), new Provider());
+        try {
+            TestCase.assertEquals(3, countSearchResults(otherProvider, folder, containerQuery));
+        } finally {
+            for(int i = 0; i < 3; i++){
+                otherProvider.delete(folder.resolve(String.format("dataset%03d", i)), 
+                        TestUtils.DEFAULT_TEST_CONTEXT);
+            }
+            otherProvider.delete(folder, TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+    }
+
+    @Test
+    public void testReplicaRouting() throws SQLException, IOException, ParseException{
+        // Two separate databases stand in for the primary and a replica which never catches up
+        DataSource primary = HSqlDbHarness.newDatabase("routingPrimary").getDataSource();
+        DataSource replica = HSqlDbHarness.newDatabase("routingReplica").getDataSource();
+        DAOFactory factory = new DAOFactoryMySQL(primary, replica);
+        Path folder = new DcFileSystemProvider(factory, new Provider()).getPath("/testpath/replicaFolder");
+        try(UnitOfWork unit = factory.beginUnitOfWork("writer")) {
+            DcFileSystemProvider writer = new DcFileSystemProvider(factory, new Provider());
+            DatasetContainer request = (DatasetContainer) writer.getModelProvider().getContainerBuilder()
+                    .name("replicaFolder")
+                    .type(RecordType.FOLDER)
+                    .build();
+            writer.createDirectory(folder, TestUtils.DEFAULT_TEST_CONTEXT, request);
+            createDatasets(writer, folder, 0, 3);
+            // Reads in the same unit follow the write
+            TestCase.assertEquals(3, countSearchResults(new DcFileSystemProvider(factory, new Provider()), folder));
+        }
+
+        // The caller who wrote still searches the primary
+        try(UnitOfWork unit = factory.beginUnitOfWork("writer")) {
+            TestCase.assertEquals(3, countSearchResults(new DcFileSystemProvider(factory, new Provider()), folder));
+        }
+
+        try(UnitOfWork unit = factory.beginUnitOfWork("reader")) {
+            // Everybody else searches the replica
+            DcFileSystemProvider reader = new DcFileSystemProvider(factory, new Provider());
+            TestCase.assertEquals(0, countSearchResults(reader, folder));
+            // Lookups, and searches whose results are cached, are shared by every caller, so they
+            // always read from the primary
+            TestCase.assertTrue(reader.getFile(folder, TestUtils.DEFAULT_TEST_CONTEXT).isDirectory());
+            TestCase.assertTrue(reader.getFile(folder.resolve("dataset000"), TestUtils.DEFAULT_TEST_CONTEXT)
+                    .isRegularFile());
+            reader.setSearchResultCache(new SearchResultCache(1024 * 1024, 60000));
+            TestCase.assertEquals(3, countSearchResults(reader, folder));
+        }
+
+        DcFileSystemProvider primaryProvider = new DcFileSystemProvider(new DAOFactoryMySQL(primary), new Provider());
+        for(int i = 0; i < 3; i++){
+            primaryProvider.delete(folder.resolve(String.format("dataset%03d", i)), TestUtils.DEFAULT_TEST_CONTEXT);
+        }
+        primaryProvider.delete(folder, TestUtils.DEFAULT_TEST_CONTEXT);
+    }
+
+    private static int countSearchResults(DcFileSystemProvider provider, Path folder) 
+            throws IOException, ParseException{
+        return countSearchResults(provider, folder, null);
+    }
+
+    private static int countSearchResults(DcFileSystemProvider provider, Path folder, String containerQuery) 
+            throws IOException, ParseException{
+        int found = 0;
+        try(DirectoryStream<DatasetModel> stream = provider.search(Arrays.asList(folder.toString()),
+                TestUtils.DEFAULT_TEST_CONTEXT, DatasetView.MASTER, null, containerQuery, null, null)){
+            for(DatasetModel ds: stream){
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static void createDatasets(DcFileSystemProvider provider, Path parent, int start, int end) 
+            throws IOException{
+        HashSet<DatasetOption> options = new HashSet<>(Arrays.asList(DatasetOption.CREATE_NODE,
+                DatasetOption.CREATE_VERSION, DatasetOption.CREATE_LOCATIONS));
+        for(int i = start; i < end; i++){
+            String name = String.format("dataset%03d", i);
+            DatasetModel.Builder builder = provider.getModelProvider().getDatasetBuilder();
+            builder.name(name);
+            builder.dataType(DbHarness.TEST_DATATYPE_01);
+            builder.fileFormat(DbHarness.TEST_FILEFORMAT_01);
+            builder.datasetSource(DbHarness.TEST_DATASET_SOURCE);
+            builder.versionId(DatasetView.NEW_VER);
+            builder.site("SLAC");
+            builder.resource("/nfs/junit/" + parent.getFileName() + "/" + name);
+            provider.createDataset(parent.resolve(name), TestUtils.DEFAULT_TEST_CONTEXT, builder.build(), options);
+        }
+    }
+
+    private static void assertMissing(DcFileSystemProvider provider, Path path) throws IOException{
+        try {
+            provider.getFile(path, TestUtils.DEFAULT_TEST_CONTEXT);
+            TestCase.fail("Path shouldn't exist: " + path);
+        } catch(NoSuchFileException ex) { }
+    }
+
+    private static Map<String, Object> versionMetadata(DatasetModel ds){
+        return ((DatasetWithViewModel) ds).getViewInfo().getVersion().getMetadataMap();
+    }
+
+    /**
+     * Wrap a DataSource so that every statement created on its connections is counted.
+     */
+    private static DataSource countStatements(final DataSource ds, final AtomicInteger statements){
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+                        Object ret = invokeTarget(ds, method, args);
+                        if(ret instanceof java.sql.Connection){
+                            final java.sql.Connection conn = (java.sql.Connection) ret;
+                            return Proxy.newProxyInstance(java.sql.Connection.class.getClassLoader(),
+                                    new Class<?>[]{java.sql.Connection.class}, new InvocationHandler() {
+                                        @Override
+                                        public Object invoke(Object proxy, Method method, Object[] args) 
+                                                throws Throwable{
+                                            String name = method.getName();
+                                            if(name.equals("prepareStatement") || name.equals("prepareCall")
+                                                    || name.equals("createStatement")){
+                                                statements.incrementAndGet();
+                                            }
+                                            return invokeTarget(conn, method, args);
+                                        }
+                                    });
+                        }
+                        return ret;
+                    }
+                });
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable{
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
 }
@@ -0,0 +1,183 @@
+package org.srs.datacat.dao.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.srs.datacat.dao.UnitOfWork;
+import org.srs.datacat.metrics.Metrics;
+
+/**
+ * Routes reads to a replica of the database and writes to the primary.
+ *
+ * A replica lags behind the primary, so a caller who just wrote may not see their writes on it.
+ * Reads stay on the primary for the rest of a unit of work which wrote, and for
+ * {@link #getMaxLagMillis()} after a caller's last write. Other callers may briefly see stale
+ * data, which is the price of reading from a replica.
+ *
+ * A caller is named when their unit of work begins. Writes outside a unit of work, or by
+ * unnamed callers, only keep the rest of their unit on the primary.
+ *
+ * @author bvan
+ */
+public class ReplicaRouter {
+
+    /**
+     * How long a caller's reads go to the primary after they write, unless set otherwise.
+     */
+    public static final long DEFAULT_MAX_LAG_MILLIS = 10000L;
+    public static final String REPLICA_METRIC = "dao.reads.replica";
+    public static final String PRIMARY_METRIC = "dao.reads.primary";
+
+    private static final ThreadLocal<Work> CURRENT = new ThreadLocal<>();
+    private static final AtomicLong REPLICA_READS = Metrics.counter(REPLICA_METRIC);
+    private static final AtomicLong PRIMARY_READS = Metrics.counter(PRIMARY_METRIC);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long maxLagMillis;
+    private final Cache<String, Long> recentWriters;
+
+    /**
+     * Create a router.
+     * @param primary Data source for writes
+     * @param replica Data source for reads, or null to read from the primary
+     * @param maxLagMillis How long a caller reads from the primary after they write
+     */
+    public ReplicaRouter(DataSource primary, DataSource replica, long maxLagMillis){
+        this.primary = primary;
+        this.replica = replica != null ? replica : primary;
+        this.maxLagMillis = maxLagMillis;
+        this.recentWriters = CacheBuilder.newBuilder()
+                .expireAfterWrite(maxLagMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public DataSource getPrimary(){
+        return primary;
+    }
+
+    public DataSource getReplica(){
+        return replica;
+    }
+
+    public long getMaxLagMillis(){
+        return maxLagMillis;
+    }
+
+    public boolean hasReplica(){
+        return replica != primary;
+    }
+
+    /**
+     * Get the data source for reads by the current caller.
+     */
+    public DataSource forReads(){
+        if(!hasReplica()){
+            return primary;
+        }
+        Work work = CURRENT.get();
+        if(work != null && work.router == this
+                && (work.wrote || (work.caller != null && recentWriters.getIfPresent(work.caller) != null))){
+            PRIMARY_READS.incrementAndGet();
+            return primary;
+        }
+        REPLICA_READS.incrementAndGet();
+        return replica;
+    }
+
+    /**
+     * Track commits on a connection to the primary, so the caller's reads follow their writes.
+     */
+    public Connection forWrites(final Connection conn){
+        if(!hasReplica()){
+            return conn;
+        }
+        final Work work = CURRENT.get();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+                        Object ret;
+                        try {
+                            ret = method.invoke(conn, args);
+                        } catch(InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                        if("commit".equals(method.getName())){
+                            written(work);
+                        }
+                        return ret;
+                    }
+                });
+    }
+
+    private void written(Work work){
+        if(work == null || work.router != this){
+            return;
+        }
+        work.wrote = true;
+        if(work.caller != null){
+            recentWriters.put(work.caller, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Begin a unit of work for a caller on the calling thread, around units of work for the
+     * data sources. Nested units keep the caller of the outermost one.
+     * @param caller Name of the caller, or null
+     * @param units Units of work for the data sources, closed with this one
+     */
+    public UnitOfWork begin(String caller, final UnitOfWork... units){
+        final Work previous = CURRENT.get();
+        if(previous == null || previous.router != this){
+            CURRENT.set(new Work(this, caller));
+        }
+        return new UnitOfWork() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException{
+                if(closed){
+                    return;
+                }
+                closed = true;
+                if(previous == null){
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+                IOException error = null;
+                for(int i = units.length - 1; i >= 0; i--){
+                    try {
+                        units[i].close();
+                    } catch(IOException ex) {
+                        error = error == null ? ex : error;
+                    }
+                }
+                if(error != null){
+                    throw error;
+                }
+            }
+        };
+    }
+
+    private static final class Work {
+        private final ReplicaRouter router;
+        private final String caller;
+        private volatile boolean wrote;
+
+        Work(ReplicaRouter router, String caller){
+            this.router = router;
+            this.caller = caller;
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.shared.DatasetContainerBuilder;
 import org.srs.datacat.model.dataset.DatasetLocationModel;
 import org.srs.datacat.model.DatasetView;
+import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.shared.DatacatObject;
 import org.srs.datacat.shared.Dataset;
 import org.srs.datacat.shared.DatasetGroup;
@@ -45,15 +46,25 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
     private final Connection conn;
     private ReentrantLock lock;
     private final SqlDAOFactory.Locker locker;
+    private final SqlDialect dialect;
 
     public SqlBaseDAO(Connection conn, SqlDAOFactory.Locker locker){
+        this(conn, locker, SqlDialect.STANDARD);
+    }
+
+    public SqlBaseDAO(Connection conn, SqlDAOFactory.Locker locker, SqlDialect dialect){
         this.conn = conn;
         this.locker = locker;
+        this.dialect = dialect;
     }
 
     public SqlDAOFactory.Locker getLocker(){
         return locker;
     }
+
+    public SqlDialect getDialect(){
+        return dialect;
+    }
     
     @Override
     public void lock(Path lockPath) throws IOException{
@@ -227,8 +238,7 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
     
     protected Map<String, Object> getMetadata(long pk, String tablePrefix, String column) throws SQLException{
         HashMap<String, Object> metadata = new HashMap<>();
-        String mdBase = "select Metaname, Metavalue from %sMeta%s where %s = ?";
-        String sql = String.format(mdBase, tablePrefix, "String", column);
+        String sql = SqlStatements.selectMetadata(tablePrefix, "String", column);
         try(PreparedStatement stmt = getConnection().prepareStatement(sql)) {
             stmt.setLong(1, pk);
             ResultSet rs = stmt.executeQuery();
@@ -237,7 +247,7 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
             }
         }
 
-        sql = String.format(mdBase, tablePrefix, "Number", column);
+        sql = SqlStatements.selectMetadata(tablePrefix, "Number", column);
         try(PreparedStatement stmt = getConnection().prepareStatement(sql)) {
             stmt.setLong(1, pk);
             ResultSet rs = stmt.executeQuery();
@@ -247,7 +257,7 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
                 metadata.put(rs.getString("metaname"),  n);
             }
         }
-        sql = String.format(mdBase, tablePrefix, "Timestamp", column);
+        sql = SqlStatements.selectMetadata(tablePrefix, "Timestamp", column);
         try(PreparedStatement stmt = getConnection().prepareStatement(sql)) {
             stmt.setLong(1, pk);
             ResultSet rs = stmt.executeQuery();
@@ -273,7 +283,7 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
             String msg = "Unable to delete object: Not a Group or Folder" + record.getType();
             throw new IOException(msg);
         }
-        SqlContainerDAO dao = new SqlContainerDAO(getConnection(), locker);
+        SqlContainerDAO dao = new SqlContainerDAO(getConnection(), locker, dialect);
         // Verify directory is empty
         try(DirectoryStream ds = dao.getChildrenStream(record, Optional.of(DatasetView.EMPTY))) {
             if(ds.iterator().hasNext()){
@@ -287,7 +297,7 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
         if(!(record.getType() == RecordType.DATASET)){
             throw new IOException("Can only delete Datacat objects");
         }
-        SqlDatasetDAO dao = new SqlDatasetDAO(getConnection(), locker);
+        SqlDatasetDAO dao = new SqlDatasetDAO(getConnection(), locker, dialect);
         dao.deleteDataset(record);
     }
     
@@ -357,10 +367,9 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
         if(!(metaData instanceof HashMap)){
             metaData = new HashMap(metaData);
         }
-        final String metaSql = "insert into %sMeta%s (%s,MetaName,MetaValue) values (?,?,?)";
-        String metaStringSql = String.format(metaSql, tablePrefix, "String", column);
-        String metaNumberSql = String.format(metaSql, tablePrefix, "Number", column);
-        String metaTimestampSql = String.format(metaSql, tablePrefix, "Timestamp", column);
+        String metaStringSql = SqlStatements.insertMetadata(tablePrefix, "String", column);
+        String metaNumberSql = SqlStatements.insertMetadata(tablePrefix, "Number", column);
+        String metaTimestampSql = SqlStatements.insertMetadata(tablePrefix, "Timestamp", column);
         PreparedStatement stmtMetaString = null;
         PreparedStatement stmtMetaNumber = null;
         PreparedStatement stmtMetaTimestamp = null;
@@ -415,10 +424,9 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
         if(!(metaData instanceof HashMap)){
             metaData = new HashMap(metaData);
         }
-        final String metaSql = "UPDATE %sMeta%s SET MetaValue = ? WHERE MetaName= ? and %s = ?";
-        String metaStringSql = String.format(metaSql, tablePrefix, "String", column);
-        String metaNumberSql = String.format(metaSql, tablePrefix, "Number", column);
-        String metaTimestampSql = String.format(metaSql, tablePrefix, "Timestamp", column);
+        String metaStringSql = SqlStatements.updateMetadata(tablePrefix, "String", column);
+        String metaNumberSql = SqlStatements.updateMetadata(tablePrefix, "Number", column);
+        String metaTimestampSql = SqlStatements.updateMetadata(tablePrefix, "Timestamp", column);
         PreparedStatement stmtMetaString = null;
         PreparedStatement stmtMetaNumber = null;
         PreparedStatement stmtMetaTimestamp = null;
@@ -477,10 +485,9 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
         if(metaDataKeys == null){
             return;
         }
-        final String metaSql = "DELETE FROM %sMeta%s WHERE MetaName= ? and %s = ?";
-        String metaStringSql = String.format(metaSql, tablePrefix, "String", column);
-        String metaNumberSql = String.format(metaSql, tablePrefix, "Number", column);
-        String metaTimestampSql = String.format(metaSql, tablePrefix, "Timestamp", column);
+        String metaStringSql = SqlStatements.deleteMetadata(tablePrefix, "String", column);
+        String metaNumberSql = SqlStatements.deleteMetadata(tablePrefix, "Number", column);
+        String metaTimestampSql = SqlStatements.deleteMetadata(tablePrefix, "Timestamp", column);
         PreparedStatement stmtMetaString = null;
         PreparedStatement stmtMetaNumber = null;
         PreparedStatement stmtMetaTimestamp = null;
@@ -612,13 +619,13 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
     @Override
     public <T extends DatacatNode> T createNode(DatacatRecord parent, String path,
             T request) throws IOException, FileSystemException{
-        if(request instanceof Dataset){
-            SqlDatasetDAO dao = new SqlDatasetDAO(getConnection(), locker);
-            return (T) dao.createDatasetNode(parent, path, (Dataset) request);
+        if(request instanceof DatasetModel){
+            SqlDatasetDAO dao = new SqlDatasetDAO(getConnection(), locker, dialect);
+            return (T) dao.createDatasetNode(parent, path, (DatasetModel) request);
         }
         if(request instanceof DatasetContainer){
             // It should be a container
-            SqlContainerDAO dao = new SqlContainerDAO(getConnection(), locker);
+            SqlContainerDAO dao = new SqlContainerDAO(getConnection(), locker, dialect);
             return (T) dao.createContainer(parent, path, (DatasetContainer) request);            
         }
         throw new IOException(new IllegalArgumentException("Unable to process request object"));
@@ -634,12 +641,11 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
     }
     
     private void setAclInternal(DatacatRecord record, String acl) throws SQLException {
-        String sql = "UPDATE %s SET ACL = ? WHERE %s = ?";
         String tableType = "DatasetLogicalFolder";
         if(record instanceof DatasetGroup.Builder){
             tableType = "DatasetGroup";
         }
-        sql = String.format(sql, tableType, tableType);
+        String sql = SqlStatements.updateAcl(tableType);
         try(PreparedStatement stmt = getConnection().prepareStatement(sql)) {
             stmt.setString(1, acl);
             stmt.setLong(2, record.getPk());
@@ -647,9 +653,12 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
         }
     }
 
+    /**
+     * What versions and locations are read for. Children of containers are prefetched with
+     * {@link #getContainerVersionsSql} and {@link #getContainerLocationsSql}.
+     */
     protected enum VersionParent {
-        DATASET,
-        CONTAINER;
+        DATASET;
     }
 
     protected String getVersionsSql(VersionParent condition, DatasetView view){
@@ -658,33 +667,26 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
             case DATASET:
                 queryCondition = "vd.dataset = ? ";
                 break;
-            case CONTAINER:
-                queryCondition = "vd.parent = ? ";
-                break;
             default:
                 break;
         }
 
         String datasetSqlWithMetadata = 
-            "WITH Dataset (dataset, parent, name, latestversion) as ("
-            + "  SELECT ds.dataset, CASE WHEN ds.datasetlogicalfolder is not null "
-            + "      THEN ds.datasetlogicalfolder else ds.datasetgroup END parent, "
-            + "      ds.datasetname name, ds.latestversion "
-            + "  FROM VerDataset ds"
-            + "), "
-            + "DatasetVersions (dataset, datasetversion, versionid, datasetsource, islatest) AS ( "
-            + "  select vd.dataset, dsv.datasetversion, dsv.versionid, dsv.datasetsource, "
-            + "        CASE WHEN vd.latestversion = dsv.datasetversion THEN 1 ELSE 0 END isLatest "
-            + "        FROM Dataset vd "
-            + "        JOIN DatasetVersion dsv on (vd.latestversion = dsv.datasetversion) "
-            + "        WHERE " + queryCondition
-            + "            and " + versionString(view)
-            + "       ORDER BY vd.name, dsv.versionid desc "
-            + ") "
-            + "SELECT dsv.dataset, dsv.datasetversion, dsv.versionid, dsv.datasetsource, dsv.islatest,  "
+            "SELECT dsv.dataset, dsv.datasetversion, dsv.versionid, dsv.datasetsource, dsv.islatest,  "
             + "     md.mdtype, md.metaname, md.metastring, md.metanumber, md.metatimestamp "
-            + "FROM DatasetVersions dsv "
-            + " JOIN "
+            + "FROM ( "
+            + "      select vd.dataset, dsv.datasetversion, dsv.versionid, dsv.datasetsource, "
+            + "            CASE WHEN vd.latestversion = dsv.datasetversion THEN 1 ELSE 0 END isLatest "
+            + "            FROM ("
+            + "              SELECT ds.dataset, CASE WHEN ds.datasetlogicalfolder is not null "
+            + "                  THEN ds.datasetlogicalfolder else ds.datasetgroup END parent, "
+            + "                  ds.datasetname name, ds.latestversion "
+            + "              FROM VerDataset ds) vd "
+            + "            JOIN DatasetVersion dsv on (vd.latestversion = dsv.datasetversion) "
+            + "            WHERE " + queryCondition
+            + "                and " + versionString(view)
+            + "           ORDER BY vd.name, dsv.versionid desc ) dsv "
+            + " LEFT OUTER JOIN "
             + " ( SELECT mn.datasetversion, 'N' mdtype, mn.metaname, "
             + "         null metastring, mn.metavalue metanumber, null metatimestamp   "
             + "     FROM VerDatasetMetaNumber mn "
@@ -696,35 +698,158 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
             + "   SELECT mt.datasetversion, 'T' mdtype, mt.metaname, "
             + "         null metastring, null metanumber, mt.metavalue metatimestamp   "
             + "     FROM VerDatasetMetaTimestamp mt "
-            + "  ) md on (md.datasetversion = dsv.datasetversion)";
+            + "  ) md on (md.datasetversion = dsv.datasetversion) ";
         return datasetSqlWithMetadata;
     }
 
+    /**
+     * Condition on VerDataset (vd) and DatasetVersion (dsv) which selects the versions of the
+     * datasets in a container, whether the container is a folder or a group.
+     * Bind parameters with {@link #bindContainerDatasetCondition}.
+     * 
+     * @param after true if only datasets with names after a given name are needed
+     * @param until true if only datasets with names up to a given name are needed, as when
+     * prefetching a page of children
+     */
+    protected String getContainerDatasetCondition(boolean after, boolean until, DatasetView view){
+        return "(vd.datasetlogicalfolder = ? or (vd.datasetlogicalfolder is null and vd.datasetgroup = ?)) "
+            + (after ? " and vd.datasetname > ? " : "")
+            + (until ? " and vd.datasetname <= ? " : "")
+            + " and " + versionString(view);
+    }
+
+    /**
+     * Bind the parameters of {@link #getContainerDatasetCondition}.
+     * @return The index of the next parameter
+     */
+    protected int bindContainerDatasetCondition(PreparedStatement stmt, int param, long parentPk, 
+            String after, String until, DatasetView view) throws SQLException{
+        stmt.setLong(param++, parentPk);
+        stmt.setLong(param++, parentPk);
+        if(after != null){
+            stmt.setString(param++, after);
+        }
+        if(until != null){
+            stmt.setString(param++, until);
+        }
+        if(!view.isCurrent()){
+            stmt.setInt(param++, view.getVersionId());
+        }
+        return param;
+    }
+
+    /**
+     * Versions and metadata of the datasets in a container, for prefetching with the children.
+     * The container condition, and the name cursor if any, is applied to each metadata table 
+     * before the union so only the metadata for the container's datasets is read.
+     * Bind parameters with {@link #bindContainerVersions}.
+     * 
+     * @param after true if only datasets with names after a given name are needed
+     * @param until true if only datasets with names up to a given name are needed
+     * @param view The view of the datasets
+     * @param metanames Only prefetch metadata with these names. If null, all metadata is fetched.
+     * @return The SQL
+     */
+    protected String getContainerVersionsSql(boolean after, boolean until, DatasetView view, 
+            List<String> metanames){
+        String datasetCondition = getContainerDatasetCondition(after, until, view);
+        String versions = "  FROM VerDataset vd "
+            + "  JOIN DatasetVersion dsv on (dsv.dataset = vd.dataset) ";
+        String nameCondition = "";
+        if(metanames != null){
+            StringBuilder names = new StringBuilder(" and %s.metaname in (");
+            for(int i = 0; i < metanames.size(); i++){
+                names.append(i > 0 ? ",?" : "?");
+            }
+            // No names means no metadata
+            nameCondition = metanames.isEmpty() ? " and 1 = 0 " : names.append(") ").toString();
+        }
+        String[][] metaTables = {
+            {"VerDatasetMetaNumber", "mn", "'N' mdtype, mn.metaname, null metastring, mn.metavalue metanumber, null metatimestamp"},
+            {"VerDatasetMetaString", "ms", "'S' mdtype, ms.metaname, ms.metavalue metastring, null metanumber, null metatimestamp"},
+            {"VerDatasetMetaTimestamp", "mt", "'T' mdtype, mt.metaname, null metastring, null metanumber, mt.metavalue metatimestamp"}
+        };
+        StringBuilder metadata = new StringBuilder();
+        for(String[] table: metaTables){
+            if(metadata.length() > 0){
+                metadata.append("   UNION ALL ");
+            }
+            metadata.append("   SELECT ").append(table[1]).append(".datasetversion, ").append(table[2])
+                .append(versions)
+                .append("  JOIN ").append(table[0]).append(" ").append(table[1])
+                .append(" on (").append(table[1]).append(".datasetversion = dsv.datasetversion) ")
+                .append("  WHERE ").append(datasetCondition)
+                .append(String.format(nameCondition, table[1]));
+        }
+        return "SELECT dsv.dataset, dsv.datasetversion, dsv.versionid, dsv.datasetsource, dsv.islatest, "
+            + "     md.mdtype, md.metaname, md.metastring, md.metanumber, md.metatimestamp "
+            + "FROM ( "
+            + "  SELECT vd.dataset, vd.datasetname name, dsv.datasetversion, dsv.versionid, dsv.datasetsource, "
+            + "      CASE WHEN vd.latestversion = dsv.datasetversion THEN 1 ELSE 0 END isLatest "
+            + versions
+            + "  WHERE " + datasetCondition
+            + ") dsv "
+            + "LEFT OUTER JOIN ( " + metadata + " ) md on (md.datasetversion = dsv.datasetversion) "
+            + "ORDER BY dsv.name, dsv.versionid desc";
+    }
+
+    /**
+     * Bind the parameters of {@link #getContainerVersionsSql}.
+     * @return The index of the next parameter
+     */
+    protected int bindContainerVersions(PreparedStatement stmt, long parentPk, String after, String until,
+            DatasetView view, List<String> metanames) throws SQLException{
+        int param = 1;
+        // Once for the versions, and once for each of the metadata tables
+        for(int i = 0; i < 4; i++){
+            param = bindContainerDatasetCondition(stmt, param, parentPk, after, until, view);
+            if(i > 0 && metanames != null){
+                for(String name: metanames){
+                    stmt.setString(param++, name);
+                }
+            }
+        }
+        return param;
+    }
+
+    /**
+     * Locations of the datasets in a container, for prefetching with the children, in the same 
+     * order as {@link #getContainerVersionsSql}.
+     * Bind parameters with {@link #bindContainerDatasetCondition}.
+     */
+    protected String getContainerLocationsSql(boolean after, boolean until, DatasetView view){
+        return "SELECT vd.dataset, dsv.datasetversion,  "
+            + "    vdl.datasetlocation, vdl.datasetsite, vdl.path, vdl.runmin, vdl.runmax,   "
+            + "    vdl.numberevents, vdl.filesizebytes, vdl.checksum, vdl.lastmodified,   "
+            + "    vdl.lastscanned, vdl.scanstatus, vdl.registered,   "
+            + "    CASE WHEN dsv.masterlocation = vdl.datasetlocation THEN 1 ELSE 0 END isMaster   "
+            + "  FROM VerDataset vd "
+            + "  JOIN DatasetVersion dsv on (dsv.dataset = vd.dataset) "
+            + "  JOIN VerDatasetLocation vdl on (vdl.datasetversion = dsv.datasetversion) "
+            + "  WHERE " + getContainerDatasetCondition(after, until, view)
+            + "  ORDER BY vd.datasetname, dsv.versionid desc, vdl.registered";
+    }
+
     protected String getLocationsSql(VersionParent condition, DatasetView view){
         String queryCondition = "";
         switch(condition){
             case DATASET:
                 queryCondition = "vd.dataset = ? ";
                 break;
-            case CONTAINER:
-                queryCondition = "vd.datasetLogicalFolder = ? ";
-                break;
             default:
                 break;
         }
         String datasetSqlLocations
-            = "WITH Dataset (dataset, parent, name, latestversion) as ("
-            + "  SELECT ds.dataset, CASE WHEN ds.datasetlogicalfolder is not null "
-            + "      THEN ds.datasetlogicalfolder else ds.datasetgroup END parent, "
-            + "      ds.datasetname name, ds.latestversion "
-            + "  FROM VerDataset ds "
-            + ")"
-            + "select vd.dataset, dsv.datasetversion,  "
+            = "select vd.dataset, dsv.datasetversion,  "
             + "    vdl.datasetlocation, vdl.datasetsite, vdl.path, vdl.runmin, vdl.runmax,   "
             + "    vdl.numberevents, vdl.filesizebytes, vdl.checksum, vdl.lastmodified,   "
             + "    vdl.lastscanned, vdl.scanstatus, vdl.registered,   "
             + "    CASE WHEN dsv.masterlocation = vdl.datasetlocation THEN 1 ELSE 0 END isMaster   "
-            + "  FROM Dataset vd   "
+            + "  FROM ("
+            + "      SELECT ds.dataset, CASE WHEN ds.datasetlogicalfolder is not null "
+            + "          THEN ds.datasetlogicalfolder else ds.datasetgroup END parent, "
+            + "          ds.datasetname name, ds.latestversion "
+            + "      FROM VerDataset ds ) vd   "
             + "  JOIN DatasetVersion dsv on (vd.latestversion = dsv.datasetversion)   "
             + "  JOIN VerDatasetLocation vdl on (dsv.datasetversion = vdl.datasetversion)  "
             + "  WHERE " + queryCondition
@@ -734,21 +859,21 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
     }
     
     protected String getChildSql(String parentClause){
-        String sql = String.format("WITH OBJECTS (type, pk, name, parent, acl) AS ( "
-                + "    SELECT 'F', datasetlogicalfolder, name, parent, acl "
-                + "      FROM DatasetLogicalFolder "
-                + "  UNION ALL "
-                + "    SELECT 'G', datasetGroup, name, datasetLogicalFolder, acl "
-                + "      FROM DatasetGroup "
-                + "  UNION ALL "
-                + "    SELECT 'D', dataset, datasetName, "
-                + "      CASE WHEN datasetlogicalfolder is not null "
-                + "         THEN datasetlogicalfolder else datasetgroup END, acl "
-                + "      FROM VerDataset "
-                + ") "
-                + "SELECT type, pk, name, parent, acl FROM OBJECTS "
-                + "  WHERE parent %s "
-                + "  ORDER BY name", parentClause);
+        String sql = String.format(
+            "SELECT objects.type, objects.pk, objects.name, objects.parent, objects.acl FROM ( "
+            + "  SELECT 'F' type, datasetlogicalfolder pk, name, parent, acl "
+            + "        FROM DatasetLogicalFolder "
+            + "    UNION ALL "
+            + "      SELECT 'G' type, datasetGroup pk, name, datasetLogicalFolder parent, acl "
+            + "        FROM DatasetGroup "
+            + "    UNION ALL "
+            + "      SELECT 'D' type, dataset pk, datasetName name, "
+            + "        CASE WHEN datasetlogicalfolder is not null "
+            + "           THEN datasetlogicalfolder else datasetgroup END parent, acl "
+            + "        FROM VerDataset "
+            + "    ) objects "
+            + "  WHERE objects.parent %s "
+            + "  ORDER BY objects.name", parentClause);
         return sql;
     }
 
@@ -758,19 +883,21 @@ public class SqlBaseDAO implements org.srs.datacat.dao.BaseDAO {
     
     protected String getVersionMetadataSql(){
         String sql= 
-                "WITH DSV (dsv) AS ( "
-                + "  SELECT ? FROM DUAL "
-                + ") "
-                + "SELECT type, metaname, metastring, metanumber, metatimestamp FROM  "
-                + " ( SELECT 'N' mdtype, mn.metaname, null metastring, mn.metavalue metanumber, null metatimestamp "
-                + "     FROM VerDatasetMetaNumber mn where mn.DatasetVersion = (SELECT dsv FROM DSV) "
-                + "   UNION ALL "
-                + "   SELECT 'S' mdtype, ms.metaname, ms.metavalue metastring, null metanumber, null metatimestamp "
-                + "     FROM VerDatasetMetaString ms where ms.DatasetVersion = (SELECT dsv FROM DSV) "
-                + "   UNION ALL "
-                + "   SELECT 'T' mdtype, mt.metaname, null metastring, null metanumber, mt.metavalue metatimestamp "
-                + "     FROM VerDatasetMetaTimestamp mt where mt.DatasetVersion = (SELECT dsv FROM DSV) "
-                + "  )";
+            "SELECT md.datasetversion, md.mdtype, md.metaname, "
+            + " md.metastring, md.metanumber, md.metatimestamp FROM  "
+            + " ( SELECT mn.datasetversion, 'N' mdtype, mn.metaname, "
+            + "         null metastring, mn.metavalue metanumber, null metatimestamp   "
+            + "     FROM VerDatasetMetaNumber mn "
+            + "   UNION ALL  "
+            + "   SELECT ms.datasetversion, 'S' mdtype, ms.metaname, "
+            + "         ms.metavalue metastring, null metanumber, null metatimestamp   "
+            + "     FROM VerDatasetMetaString ms "
+            + "   UNION ALL  "
+            + "   SELECT mt.datasetversion, 'T' mdtype, mt.metaname, "
+            + "         null metastring, null metanumber, mt.metavalue metatimestamp   "
+            + "     FROM VerDatasetMetaTimestamp mt "
+            + "  ) md "
+            + "  WHERE md.datasetversion = ?";
         return sql;
     }
 
@@ -10,6 +10,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -47,6 +48,10 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
         super(conn, locker);
     }
 
+    public SqlContainerDAO(Connection conn, SqlDAOFactory.Locker locker, SqlDialect dialect){
+        super(conn, locker, dialect);
+    }
+
     public DatasetContainer createContainer(DatacatRecord parent, String name, 
             DatasetContainer request) throws IOException{
         try {
@@ -78,8 +83,7 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
             default:
                 throw new SQLException("Unknown parent table: " + newType.toString());
         }
-        String insertSqlTemplate = "INSERT INTO %s (NAME, %s, DESCRIPTION) VALUES (?,?,?)";
-        String sql = String.format(insertSqlTemplate, tableName, parentColumn);
+        String sql = SqlStatements.insertContainer(tableName, parentColumn);
 
         String description = request.getDescription();
 
@@ -224,8 +228,23 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
     @Override
     public DirectoryStream<DatacatNode> getChildrenStream(DatacatRecord parent,
             Optional<DatasetView> viewPrefetch) throws IOException{
+        return getChildrenStream(parent, viewPrefetch, Optional.<String>absent(), -1);
+    }
+
+    @Override
+    public DirectoryStream<DatacatNode> getChildrenStream(DatacatRecord parent,
+            Optional<DatasetView> viewPrefetch, Optional<String> after, int max) throws IOException{
+        return getChildrenStream(parent, viewPrefetch, after, max, Optional.<List<String>>absent());
+    }
+
+    @Override
+    public DirectoryStream<DatacatNode> getChildrenStream(DatacatRecord parent,
+            Optional<DatasetView> viewPrefetch, Optional<String> after, int max,
+            Optional<? extends Collection<String>> metanames) throws IOException{
         try {
-            return getChildrenStreamInternal(parent.getPk(), parent.getPath(), viewPrefetch.orNull());
+            List<String> names = metanames.isPresent() ? new ArrayList<>(metanames.get()) : null;
+            return getChildrenStreamInternal(parent.getPk(), parent.getPath(), viewPrefetch.orNull(), 
+                    after.orNull(), max, names);
         } catch(SQLException ex) {
             throw new IOException(ex);
         }
@@ -264,9 +283,8 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
                 }
                 
                 
-                String baseSql = "UPDATE %s SET %s=? WHERE %s = ?";
                 Patchable p = method.getAnnotation(Patchable.class);
-                String sql = String.format(baseSql, table, p.column(), table);
+                String sql = SqlStatements.updateColumn(table, p.column(), table);
 
                 try(PreparedStatement stmt = getConnection().prepareStatement(sql)) {
                     stmt.setObject(1, patchedValue);
@@ -279,28 +297,50 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
 
     protected DirectoryStream<DatacatNode> getChildrenStreamInternal(Long parentPk,
             final String parentPath,
-            DatasetView viewPrefetch) throws SQLException, IOException{
-        String sql = getChildrenSql(viewPrefetch);
+            DatasetView viewPrefetch, String after, int max, 
+            List<String> metanames) throws SQLException, IOException{
+        String sql = getChildrenSql(viewPrefetch, after != null);
         
         final PreparedStatement stmt = getConnection().prepareStatement(sql);
         final PreparedStatement prefetchVer;
         final PreparedStatement prefetchLoc;
         stmt.setLong(1, parentPk);
+        if(after != null){
+            stmt.setString(2, after);
+        }
+        if(max > 0){
+            stmt.setMaxRows(max);
+        }
+        final ResultSet rs = stmt.executeQuery();
+        rs.setFetchSize(FETCH_SIZE_CHILDREN);
+
+        // A page is read up front, so the prefetch can stop at its last child rather than
+        // reading to the end of the container
+        final List<DatacatObject.Builder> page;
+        String until = null;
+        if(max > 0 && viewPrefetch != null){
+            page = new ArrayList<>();
+            while(rs.next()){
+                page.add(getBuilder(rs, parentPath));
+            }
+            if(page.isEmpty()){
+                viewPrefetch = null;
+            } else {
+                until = page.get(page.size() - 1).name;
+            }
+        } else {
+            page = null;
+        }
 
+        // The prefetch cursors must start at the same place as the children cursor
         if(viewPrefetch != null){
             prefetchVer = getConnection()
-                    .prepareStatement(getVersionsSql(VersionParent.CONTAINER, viewPrefetch));
-            prefetchVer.setLong(1, parentPk);
-            if(!viewPrefetch.isCurrent()){
-                prefetchVer.setInt(2, viewPrefetch.getVersionId());
-            }
+                    .prepareStatement(getContainerVersionsSql(after != null, until != null, viewPrefetch, metanames));
+            bindContainerVersions(prefetchVer, parentPk, after, until, viewPrefetch, metanames);
             if(!viewPrefetch.zeroSites()){
                 prefetchLoc = getConnection()
-                        .prepareStatement(getLocationsSql(VersionParent.CONTAINER, viewPrefetch));
-                prefetchLoc.setLong(1, parentPk);
-                if(!viewPrefetch.isCurrent()){
-                    prefetchLoc.setInt(2, viewPrefetch.getVersionId());
-                }
+                        .prepareStatement(getContainerLocationsSql(after != null, until != null, viewPrefetch));
+                bindContainerDatasetCondition(prefetchLoc, 1, parentPk, after, until, viewPrefetch);
             } else {
                 prefetchLoc = null;
             }
@@ -309,8 +349,6 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
             prefetchLoc = null;
         }
 
-        final ResultSet rs = stmt.executeQuery();
-        rs.setFetchSize(FETCH_SIZE_CHILDREN);
         final ResultSet rsVer = prefetchVer != null ? prefetchVer.executeQuery() : null;
         final ResultSet rsLoc = prefetchLoc != null ? prefetchLoc.executeQuery() : null;
         DirectoryStream<DatacatNode> stream = new DirectoryStream<DatacatNode>() {
@@ -324,6 +362,7 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
                         boolean beforeStart = true;
                         boolean wasOkay = false;
                         boolean consumed = false;
+                        int position = -1;
 
                         @Override
                         public boolean hasNext(){
@@ -338,7 +377,7 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
                             if(beforeStart || (wasOkay && consumed)){
                                 consumed = false;
                                 beforeStart = false;
-                                wasOkay = rs.next();
+                                wasOkay = page != null ? ++position < page.size() : rs.next();
                             }
                             return wasOkay;
                         }
@@ -349,7 +388,8 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
                                 throw new NoSuchElementException();
                             }
                             try {
-                                DatacatObject.Builder builder = getBuilder(rs, parentPath);
+                                DatacatObject.Builder builder = page != null ? page.get(position)
+                                        : getBuilder(rs, parentPath);
                                 if(builder instanceof Dataset.Builder){
                                     checkResultSet((Dataset.Builder) builder, rsVer, rsLoc);
                                 }
@@ -450,7 +490,7 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
         // TODO: Support multiple versions?
     }
     
-    protected String getChildrenSql(DatasetView viewPrefetch){
+    protected String getChildrenSql(DatasetView viewPrefetch, boolean after){
         String sql 
             = "SELECT objects.type, objects.pk, objects.name, objects.parent, objects.acl FROM ( "
             + "    SELECT 'F' type, datasetlogicalfolder pk, name, parent, acl "
@@ -465,6 +505,7 @@ public class SqlContainerDAO extends SqlBaseDAO implements org.srs.datacat.dao.C
             + "      FROM VerDataset " : " ")
             + ") objects "
             + "  WHERE objects.parent = ? "
+            + (after ? "    AND objects.name > ? " : "")
             + "  ORDER BY objects.name";
         return sql;
     }
@@ -3,20 +3,34 @@ package org.srs.datacat.dao.sql;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.sql.DataSource;
 import org.srs.datacat.dao.SearchDAO;
+import org.srs.datacat.dao.UnitOfWork;
+import org.srs.datacat.dao.sql.search.MetadataStatistics;
 
 /**
+ * Creates the DAOs, each with a connection borrowed from the data source. The DAOs are the same
+ * for every database, what differs between databases is in the {@link SqlDialect}, which is
+ * detected from the first connection unless it's given.
+ *
+ * A DAO prepares its statements on a connection it only keeps for a short while, so the data
+ * source should be a pool which caches prepared statements for each of its connections, as
+ * DBCP does with {@code poolPreparedStatements}. That is configured with the pool, where the
+ * data source is defined, nothing here sets it.
  *
  * @author bvan
  */
 public class SqlDAOFactory implements org.srs.datacat.dao.DAOFactory {
     protected final DataSource dataSource;
+    private final ReplicaRouter router;
     private final Locker locker = new Locker();
+    private final MetadataStatistics.Loader statistics;
+    private volatile SqlDialect dialect;
     
     /**
      * Helper class for locking some records.
@@ -87,22 +101,50 @@ public class SqlDAOFactory implements org.srs.datacat.dao.DAOFactory {
     }
           
     public SqlDAOFactory(DataSource ds){
+        this(ds, null);
+    }
+
+    /**
+     * Create a factory which reads from a replica. Read only search DAOs use the replica, unless
+     * the caller just wrote. See {@link ReplicaRouter}. Other DAOs read from the primary, since
+     * what they read may be cached for every caller.
+     * @param ds Data source of the primary database, for writes
+     * @param readDs Data source of a replica, or null to read from the primary
+     */
+    public SqlDAOFactory(DataSource ds, DataSource readDs){
+        this(ds, readDs, null);
+    }
+
+    /**
+     * Create a factory for a known database.
+     * @param ds Data source of the primary database, for writes
+     * @param readDs Data source of a replica, or null to read from the primary
+     * @param dialect Dialect of the database, or null to detect it
+     */
+    public SqlDAOFactory(DataSource ds, DataSource readDs, SqlDialect dialect){
         this.dataSource = ds;
+        this.router = new ReplicaRouter(ds, readDs, ReplicaRouter.DEFAULT_MAX_LAG_MILLIS);
+        this.dialect = dialect;
+        // Statistics only need to be roughly right, so they're counted on the replica if there is one
+        this.statistics = new MetadataStatistics.Loader(readDs != null ? readDs : ds);
     }
     
     @Override
     public SqlBaseDAO newBaseDAO() throws IOException{
         try {
-            return new SqlBaseDAO(dataSource.getConnection(), locker);
+            Connection conn = writeConnection();
+            return new SqlBaseDAO(conn, locker, getDialect(conn));
         } catch(SQLException ex) {
             throw new IOException("Error connecting to data source", ex);
         }
     }
-        
+
+
     @Override
     public SqlContainerDAO newContainerDAO() throws IOException{
         try {
-            return new SqlContainerDAO(dataSource.getConnection(), locker);
+            Connection conn = writeConnection();
+            return new SqlContainerDAO(conn, locker, getDialect(conn));
         } catch(SQLException ex) {
             throw new IOException("Error connecting to data source", ex);
         }
@@ -111,7 +153,8 @@ public class SqlDAOFactory implements org.srs.datacat.dao.DAOFactory {
     @Override
     public SqlDatasetDAO newDatasetDAO() throws IOException{
         try {
-            return new SqlDatasetDAO(dataSource.getConnection(), locker);
+            Connection conn = writeConnection();
+            return new SqlDatasetDAO(conn, locker, getDialect(conn));
         } catch(SQLException ex) {
             throw new IOException("Error connecting to data source", ex);
         }
@@ -121,11 +164,67 @@ public class SqlDAOFactory implements org.srs.datacat.dao.DAOFactory {
     @Override
     public SearchDAO newSearchDAO(Object... plugins) throws IOException{
         try {
-            return new SqlSearchDAO(dataSource.getConnection(), locker, plugins);
+            Connection conn = writeConnection();
+            return new SqlSearchDAO(conn, locker, getDialect(conn), statistics, plugins);
+        } catch(SQLException ex) {
+            throw new IOException("Error connecting to data source", ex);
+        }
+    }
+
+    @Override
+    public SearchDAO newReadOnlySearchDAO(Object... plugins) throws IOException{
+        try {
+            Connection conn = readConnection();
+            return new SqlSearchDAO(conn, locker, getDialect(conn), statistics, plugins);
         } catch(SQLException ex) {
             throw new IOException("Error connecting to data source", ex);
         }
     }
 
+    @Override
+    public UnitOfWork beginUnitOfWork(){
+        return beginUnitOfWork(null);
+    }
+
+    @Override
+    public UnitOfWork beginUnitOfWork(String caller){
+        if(router.hasReplica()){
+            return router.begin(caller, SqlUnitOfWork.begin(dataSource), SqlUnitOfWork.begin(router.getReplica()));
+        }
+        return router.begin(caller, SqlUnitOfWork.begin(dataSource));
+    }
+
+    /**
+     * Get the dialect of the database, detecting it from a connection the first time.
+     * @param conn A connection for a new DAO, closed if the dialect can't be detected
+     */
+    private SqlDialect getDialect(Connection conn) throws SQLException{
+        SqlDialect current = dialect;
+        if(current == null){
+            try {
+                current = SqlDialect.detect(conn);
+            } catch(SQLException ex) {
+                conn.close();
+                throw ex;
+            }
+            dialect = current;
+        }
+        return current;
+    }
+
+    /**
+     * Connection to the primary, for DAOs which may write.
+     */
+    private Connection writeConnection() throws SQLException{
+        return router.forWrites(SqlUnitOfWork.getConnection(dataSource));
+    }
+
+    /**
+     * Connection for DAOs which only read, to the replica if there is one.
+     */
+    private Connection readConnection() throws SQLException{
+        return SqlUnitOfWork.getConnection(router.forReads());
+    }
+
 
 }
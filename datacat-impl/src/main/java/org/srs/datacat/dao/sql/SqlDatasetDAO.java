@@ -6,13 +6,13 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.nio.file.FileSystemException;
 import java.nio.file.NoSuchFileException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -47,6 +47,10 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
         super(conn, locker);
         
     }
+
+    public SqlDatasetDAO(Connection conn, SqlDAOFactory.Locker locker, SqlDialect dialect){
+        super(conn, locker, dialect);
+    }
     
     public Dataset createDatasetNode(DatacatRecord parent, String name, 
             DatasetModel request) throws IOException, FileSystemException{
@@ -340,7 +344,7 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
         String insertSql = "insert into VerDataset (DatasetName, DataSetFileFormat, DataSetDataType, "
                 + "DatasetLogicalFolder, DatasetGroup) values (?, ?, ?, ?, ?)";
         try(PreparedStatement stmt = getConnection().prepareStatement(insertSql, 
-                new String[]{"DATASET", "REGISTERED"})) {
+                getDialect().generatedKeys("DATASET"))) {
             stmt.setString(1, name);
             stmt.setString(2, request.getFileFormat() );
             stmt.setString(3, request.getDataType().toUpperCase());
@@ -362,12 +366,23 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
                 builder.pk(rs.getLong(1));
                 builder.parentPk(parentPk);
                 builder.path(PathUtils.resolve(parent.getPath(), name));
-                builder.created(rs.getTimestamp(2));
+                builder.created(getCreated(rs));
             }
             return builder.build();
         }
     }
     
+    /**
+     * When a record was created, from the generated keys of its insert. If the driver doesn't
+     * return the default of REGISTERED, it's close enough to now.
+     */
+    private Timestamp getCreated(ResultSet rs) throws SQLException{
+        if(getDialect().returnsGeneratedDefaults()){
+            return rs.getTimestamp(2);
+        }
+        return new Timestamp(System.currentTimeMillis());
+    }
+    
     protected String insertDatasetSource(String source) throws SQLException{
         String sql = "INSERT INTO DatasetSource (DatasetSource) VALUES (?)";
         try(PreparedStatement stmt = getConnection().prepareStatement( sql )){
@@ -443,7 +458,7 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
         String datasetSource = request.getDatasetSource() != null ? request.getDatasetSource() : DEFAULT_DATA_SOURCE;
         DatasetVersion retVersion = null;
         try(PreparedStatement stmt = getConnection().prepareStatement(sql, 
-                new String[]{"DATASETVERSION", "REGISTERED"})) {
+                getDialect().generatedKeys("DATASETVERSION"))) {
             stmt.setLong(1, dsRecord.getPk());
             stmt.setInt(2, newVersionId );
             stmt.setString(3, datasetSource);
@@ -467,7 +482,7 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
                 rs.next();
                 builder.pk(rs.getLong(1));
                 builder.parentPk(dsRecord.getPk());
-                builder.created(rs.getTimestamp(2));
+                builder.created(getCreated(rs));
                 builder.metadata(request.getMetadataMap());
             }
             retVersion = builder.build();
@@ -518,13 +533,13 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
             DatasetLocationModel request) throws SQLException{
         String insertSql = 
               "insert into VerDatasetLocation (DatasetVersion, DatasetSite, Path, RunMin, RunMax, "
-              + " NumberEvents, FileSizeBytes) values (?, ?, ?, ?, ?, ?, ?)";
+              + " NumberEvents, FileSizeBytes, CheckSum) values (?, ?, ?, ?, ?, ?, ?, ?)";
         
         int i = 0;
         DatasetLocation retLoc;
         boolean isFirstLocation = getDatasetLocations(datasetVersionPk).isEmpty();
         try(PreparedStatement stmt = getConnection().prepareStatement(insertSql, 
-                new String[]{"DATASETLOCATION", "REGISTERED"})) {
+                getDialect().generatedKeys("DATASETLOCATION"))) {
             stmt.setLong(++i, datasetVersionPk );
             stmt.setString(++i, request.getSite() );
             stmt.setString(++i, request.getResource() );
@@ -532,6 +547,8 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
             stmt.setObject(++i, ((DatasetLocation) request).getRunMax() );
             stmt.setObject(++i, ((DatasetLocation) request).getEventCount() );
             stmt.setObject(++i, request.getSize() );
+            String checksum = ((DatasetLocation) request).getChecksum();
+            stmt.setObject(++i, checksum != null ? getDialect().checksumValue(checksum) : null);
             stmt.executeUpdate();   // will throw exception if required parameter is empty...
             DatasetLocation.Builder builder = new DatasetLocation.Builder((DatasetLocation) request);
             // now retrieve the primary key:
@@ -540,7 +557,7 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
                 rs.next();
                 builder.pk(rs.getLong(1));
                 builder.parentPk(datasetVersionPk);
-                builder.created(rs.getTimestamp(2));
+                builder.created(getCreated(rs));
                 builder.master(isFirstLocation || (request.isMaster() != null && request.isMaster()));
             }
             retLoc = builder.build();
@@ -719,9 +736,8 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
                         continue;
                     }
 
-                    String baseSql = "UPDATE DatasetVersion SET %s=? WHERE DatasetVersion = ?";
                     Patchable p = method.getAnnotation(Patchable.class);
-                    String sql = String.format(baseSql, p.column());
+                    String sql = SqlStatements.updateColumn("DatasetVersion", p.column(), "DatasetVersion");
 
                     try(PreparedStatement stmt = getConnection().prepareStatement(sql)) {
                         stmt.setObject(1, patchedValue);
@@ -754,11 +770,10 @@ public class SqlDatasetDAO extends SqlBaseDAO implements org.srs.datacat.dao.Dat
                     if("getMetadataMap".equals(methodName)){
                         throw new IOException("Metadata on DatasetLocation not patchable");
                     }
-                    String baseSql = "UPDATE VerDatasetLocation SET %s=? WHERE DatasetLocation = ?";
                     Patchable p = method.getAnnotation(Patchable.class);
-                    String sql = String.format(baseSql, p.column());
+                    String sql = SqlStatements.updateColumn("VerDatasetLocation", p.column(), "DatasetLocation");
                     if("checksum".equalsIgnoreCase(p.column())){
-                        patchedValue = new BigInteger(patchedValue.toString(), 16);
+                        patchedValue = getDialect().checksumValue(patchedValue.toString());
                     }
                     if("masterlocation".equalsIgnoreCase(p.column())){
                         if(patch.isMaster()){
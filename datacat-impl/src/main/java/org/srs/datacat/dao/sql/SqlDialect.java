@@ -0,0 +1,107 @@
+package org.srs.datacat.dao.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * What the SQL DAOs need to know about the database they run on. The statements of the DAOs are
+ * the same for every database, only what's here differs.
+ *
+ * The dialect is detected from the name of the database product, once per factory. Paging is
+ * done with {@link java.sql.Statement#setMaxRows(int)} and a name cursor rather than with
+ * LIMIT and OFFSET, so it isn't part of the dialect.
+ *
+ * @author bvan
+ */
+public enum SqlDialect {
+
+    /**
+     * Databases which follow the standard, such as HSQLDB and Oracle.
+     */
+    STANDARD {
+        @Override
+        public boolean returnsGeneratedDefaults(){
+            return true;
+        }
+
+        @Override
+        public Object checksumValue(String checksum) throws SQLException{
+            return new BigDecimal(new BigInteger(checksum, 16));
+        }
+
+        @Override
+        public String[] getParentTempTableSql(){
+            // ContainerSearch is a global temporary table, created with the schema
+            return new String[0];
+        }
+    },
+
+    /**
+     * MySQL through Connector/J. Driver settings, such as {@code rewriteBatchedStatements} to send
+     * a batch of inserts as one statement, belong in the URL or the connection properties of the
+     * data source, they aren't set here.
+     */
+    MYSQL {
+        @Override
+        public boolean returnsGeneratedDefaults(){
+            // Connector/J only returns the auto increment column
+            return false;
+        }
+
+        @Override
+        public Object checksumValue(String checksum) throws SQLException{
+            try {
+                return new BigInteger(checksum, 16).longValueExact();
+            } catch(ArithmeticException ex) {
+                throw new SQLException("Checksum value will be truncated in database: " + checksum);
+            }
+        }
+
+        @Override
+        public String[] getParentTempTableSql(){
+            return new String[]{
+                "drop temporary table if exists ContainerSearch",
+                "create temporary table ContainerSearch ( "
+                    + "    DatasetLogicalFolder bigint, "
+                    + "    DatasetGroup         bigint, "
+                    + "    ContainerPath varchar(500) "
+                    + ")"};
+        }
+    };
+
+    /**
+     * Whether the driver returns columns filled in by defaults, like REGISTERED, as generated keys.
+     */
+    public abstract boolean returnsGeneratedDefaults();
+
+    /**
+     * Convert a checksum, in hex, to the value stored in the CheckSum column.
+     * @throws SQLException If the database can't store the checksum
+     */
+    public abstract Object checksumValue(String checksum) throws SQLException;
+
+    /**
+     * Statements which create the ContainerSearch table for a search, if it only lives as long
+     * as a session.
+     */
+    public abstract String[] getParentTempTableSql();
+
+    /**
+     * The generated keys to return when inserting a record.
+     * @param keyColumn The primary key of the table
+     */
+    public String[] generatedKeys(String keyColumn){
+        return returnsGeneratedDefaults() ? new String[]{keyColumn, "REGISTERED"} : new String[]{keyColumn};
+    }
+
+    public static SqlDialect forProductName(String productName){
+        return productName != null && productName.contains("MySQL") ? MYSQL : STANDARD;
+    }
+
+    public static SqlDialect detect(Connection conn) throws SQLException{
+        return forProductName(conn.getMetaData().getDatabaseProductName());
+    }
+
+}
@@ -5,16 +5,20 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.sql.Connection;
 import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.dao.sql.search.ContainerSearch;
 import org.srs.datacat.dao.sql.search.DatasetSearch;
+import org.srs.datacat.dao.sql.search.MetadataStatistics;
 import org.srs.datacat.dao.sql.search.plugins.EXODatacatSearchPlugin;
 import org.srs.datacat.dao.sql.search.plugins.LsstFilesSearchPlugin;
 import org.srs.datacat.dao.sql.search.plugins.LsstKVSearchPlugin;
 import org.srs.datacat.dao.sql.search.plugins.LsstPositionsSearchPlugin;
 import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetModel;
+import org.srs.datacat.model.security.CallContext;
 import org.srs.datacat.shared.Provider;
 
 /**
@@ -22,31 +26,88 @@ import org.srs.datacat.shared.Provider;
  * @author bvan
  */
 public class SqlSearchDAO extends SqlBaseDAO implements org.srs.datacat.dao.SearchDAO {
+    private final MetadataStatistics.Loader statistics;
     
-    public SqlSearchDAO(Connection conn, SqlDAOFactory.Locker locker, Object... plugins) throws IOException{
-        super(conn, locker);
+    public SqlSearchDAO(Connection conn, SqlDAOFactory.Locker locker, SqlDialect dialect,
+            Object... plugins) throws IOException{
+        this(conn, locker, dialect, null, plugins);
     }
 
-    @Override
-    public DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers,
-            DatasetView datasetView, String query, String[] retrieveFields,
-            
-            String[] sortFields) throws ParseException, IOException{
-        DatasetSearch search = new DatasetSearch(super.getConnection(),
+    /**
+     * Create a DAO whose searches are planned with the metadata statistics of the database.
+     * @param statistics Statistics of the database, or null to plan without them
+     */
+    public SqlSearchDAO(Connection conn, SqlDAOFactory.Locker locker, SqlDialect dialect,
+            MetadataStatistics.Loader statistics, Object... plugins) throws IOException{
+        super(conn, locker, dialect);
+        this.statistics = statistics;
+    }
+
+    private DatasetSearch newDatasetSearch() throws IOException{
+        DatasetSearch search = new DatasetSearch(super.getConnection(), getDialect(),
                 new Provider(),
                 EXODatacatSearchPlugin.class,
                 LsstFilesSearchPlugin.class,
                 LsstKVSearchPlugin.class,
                 LsstPositionsSearchPlugin.class);
-        return search.search(containers, datasetView, query, retrieveFields, sortFields);
+        if(statistics != null){
+            search.setMetadataStatistics(statistics.get());
+        }
+        return search;
+    }
+
+    @Override
+    public DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers,
+            DatasetView datasetView, String query, String[] retrieveFields,
+            
+            String[] sortFields) throws ParseException, IOException{
+        return search(containers, datasetView, query, retrieveFields, sortFields, null);
+    }
+
+    @Override
+    public DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers,
+            DatasetView datasetView, String query, String[] retrieveFields,
+            String[] sortFields, CallContext context) throws ParseException, IOException{
+        DatasetSearch search = newDatasetSearch();
+        return search.search(containers, datasetView, query, retrieveFields, sortFields, context);
+    }
+    
+    @Override
+    public List<Map<String, Object>> aggregate(DirectoryStream<DatacatNode> containers,
+            DatasetView datasetView, String query, String[] groupBy, String[] aggregates,
+            CallContext context) throws ParseException, IOException{
+        DatasetSearch search = newDatasetSearch();
+        return search.aggregate(containers, datasetView, query, groupBy, aggregates, context);
+    }
+    
+    @Override
+    public Map<String, List<Map<String, Object>>> facets(DirectoryStream<DatacatNode> containers,
+            DatasetView datasetView, String query, String[] fields, int limit,
+            CallContext context) throws ParseException, IOException{
+        DatasetSearch search = newDatasetSearch();
+        return search.facets(containers, datasetView, query, fields, limit, context);
     }
     
     @Override
     public DirectoryStream<DatasetContainer> searchContainers(DirectoryStream<DatacatNode> containers,
             String query, String[] retrieveFields,
             String[] sortFields) throws ParseException, IOException{
-        ContainerSearch search = new ContainerSearch(super.getConnection(), new Provider());
-        return search.search(containers, query, retrieveFields, sortFields);
+        return searchContainers(containers, query, retrieveFields, sortFields, null);
+    }
+
+    @Override
+    public DirectoryStream<DatasetContainer> searchContainers(DirectoryStream<DatacatNode> containers,
+            String query, String[] retrieveFields,
+            String[] sortFields, CallContext context) throws ParseException, IOException{
+        return searchContainers(containers, query, retrieveFields, sortFields, 0, context);
+    }
+
+    @Override
+    public DirectoryStream<DatasetContainer> searchContainers(DirectoryStream<DatacatNode> containers,
+            String query, String[] retrieveFields, String[] sortFields, int maxResults,
+            CallContext context) throws ParseException, IOException{
+        ContainerSearch search = new ContainerSearch(super.getConnection(), getDialect(), new Provider());
+        return search.search(containers, query, retrieveFields, sortFields, maxResults, context);
     }
 
 }
\ No newline at end of file
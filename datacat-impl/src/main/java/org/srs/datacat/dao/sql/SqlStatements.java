@@ -0,0 +1,119 @@
+package org.srs.datacat.dao.sql;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A catalog of the SQL text of statements which are built from a template and table or column
+ * names, such as the statements for the metadata tables.
+ *
+ * The templates and the names they're formatted with are kept here rather than in the DAOs, and
+ * the text of each statement is only formatted once. The statements are the same for every
+ * database we support.
+ *
+ * @author bvan
+ */
+public final class SqlStatements {
+
+    /**
+     * The metadata tables of each kind of record, by table prefix and the column of the record.
+     */
+    private static final String[][] METADATA_OWNERS = {
+        {"VerDataset", "DatasetVersion"},
+        {"DatasetGroup", "DatasetGroup"},
+        {"LogicalFolder", "LogicalFolder"}};
+    private static final String[] METADATA_TYPES = {"String", "Number", "Timestamp"};
+    private static final String[] CONTAINER_TABLES = {"DatasetLogicalFolder", "DatasetGroup"};
+
+    static final String SELECT_METADATA = "select Metaname, Metavalue from %sMeta%s where %s = ?";
+    static final String INSERT_METADATA = "insert into %sMeta%s (%s,MetaName,MetaValue) values (?,?,?)";
+    static final String UPDATE_METADATA = "UPDATE %sMeta%s SET MetaValue = ? WHERE MetaName= ? and %s = ?";
+    static final String DELETE_METADATA = "DELETE FROM %sMeta%s WHERE MetaName= ? and %s = ?";
+    static final String UPDATE_ACL = "UPDATE %s SET ACL = ? WHERE %s = ?";
+    static final String UPDATE_COLUMN = "UPDATE %s SET %s=? WHERE %s = ?";
+    static final String INSERT_CONTAINER = "INSERT INTO %s (NAME, %s, DESCRIPTION) VALUES (?,?,?)";
+
+    private static final ConcurrentMap<List<String>, String> CATALOG = new ConcurrentHashMap<>();
+
+    static {
+        for(String[] owner: METADATA_OWNERS){
+            for(String type: METADATA_TYPES){
+                for(String template: new String[]{SELECT_METADATA, INSERT_METADATA, UPDATE_METADATA,
+                    DELETE_METADATA}){
+                    format(template, owner[0], type, owner[1]);
+                }
+            }
+        }
+        for(String table: CONTAINER_TABLES){
+            format(UPDATE_ACL, table, table);
+        }
+        format(INSERT_CONTAINER, "DatasetLogicalFolder", "PARENT");
+        format(INSERT_CONTAINER, "DatasetGroup", "DATASETLOGICALFOLDER");
+    }
+
+    private SqlStatements(){ }
+
+    /**
+     * Get the text of a statement.
+     * @param template A template from this class
+     * @param args The names of the tables and columns of the statement
+     * @return The formatted statement, shared by everything using the same template and names
+     */
+    static String format(String template, String... args){
+        String[] parts = Arrays.copyOf(args, args.length + 1);
+        parts[args.length] = template;
+        List<String> key = Arrays.asList(parts);
+        String sql = CATALOG.get(key);
+        if(sql == null){
+            // Only the templates and the names used by the DAOs end up here, the catalog stays small
+            sql = String.format(template, (Object[]) args);
+            String existing = CATALOG.putIfAbsent(key, sql);
+            sql = existing != null ? existing : sql;
+        }
+        return sql;
+    }
+
+    /**
+     * Select the metadata of one type for a record.
+     */
+    public static String selectMetadata(String tablePrefix, String type, String column){
+        return format(SELECT_METADATA, tablePrefix, type, column);
+    }
+
+    public static String insertMetadata(String tablePrefix, String type, String column){
+        return format(INSERT_METADATA, tablePrefix, type, column);
+    }
+
+    public static String updateMetadata(String tablePrefix, String type, String column){
+        return format(UPDATE_METADATA, tablePrefix, type, column);
+    }
+
+    public static String deleteMetadata(String tablePrefix, String type, String column){
+        return format(DELETE_METADATA, tablePrefix, type, column);
+    }
+
+    /**
+     * Update the ACL of a container.
+     * @param table Table of the container, also the name of its primary key
+     */
+    public static String updateAcl(String table){
+        return format(UPDATE_ACL, table, table);
+    }
+
+    /**
+     * Update one column of a record, as when patching it.
+     * @param table Table of the record
+     * @param column The column to update
+     * @param keyColumn The primary key of the table
+     */
+    public static String updateColumn(String table, String column, String keyColumn){
+        return format(UPDATE_COLUMN, table, column, keyColumn);
+    }
+
+    public static String insertContainer(String table, String parentColumn){
+        return format(INSERT_CONTAINER, table, parentColumn);
+    }
+
+}
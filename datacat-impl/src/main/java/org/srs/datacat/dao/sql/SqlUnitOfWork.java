@@ -0,0 +1,320 @@
+package org.srs.datacat.dao.sql;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import org.srs.datacat.dao.UnitOfWork;
+import org.srs.datacat.metrics.Metrics;
+
+/**
+ * A unit of work for the SQL DAOs. While a unit is open on a thread, each DAO created on the
+ * thread gets a handle to one connection, which is borrowed from the data source when the first
+ * DAO needs it. Closing a handle doesn't close the connection, it's returned to the pool once
+ * the outermost unit and every handle are closed. Reads share the transaction of the connection.
+ *
+ * Writes nest. A DAO which writes and commits while another DAO has uncommitted writes leaves
+ * the commit to the other DAO. A DAO which writes and is closed or rolled back without
+ * committing rolls back the transaction, and if another DAO has uncommitted writes, its commit
+ * fails rather than committing what's left of its changes. Statements on the ContainerSearch
+ * scratch table of searches aren't writes.
+ *
+ * The number of connections borrowed from each data source is kept as metrics, so connections
+ * per request are {@value #UNIT_CHECKOUT_METRIC} over {@value #UNIT_METRIC}.
+ *
+ * @author bvan
+ */
+public final class SqlUnitOfWork implements UnitOfWork {
+
+    public static final String CHECKOUT_METRIC = "dao.connection.checkout";
+    public static final String SHARED_METRIC = "dao.connection.shared";
+    public static final String UNIT_METRIC = "dao.unitOfWork";
+    public static final String UNIT_CHECKOUT_METRIC = "dao.unitOfWork.checkout";
+
+    private static final ThreadLocal<Map<DataSource, Shared>> CURRENT
+            = new ThreadLocal<Map<DataSource, Shared>>() {
+        @Override
+        protected Map<DataSource, Shared> initialValue(){
+            return new HashMap<>();
+        }
+    };
+    private static final AtomicLong CHECKOUTS = Metrics.counter(CHECKOUT_METRIC);
+    private static final AtomicLong SHARED = Metrics.counter(SHARED_METRIC);
+    private static final AtomicLong UNITS = Metrics.counter(UNIT_METRIC);
+    private static final AtomicLong UNIT_CHECKOUTS = Metrics.counter(UNIT_CHECKOUT_METRIC);
+    private static final Pattern SCRATCH_TABLE = Pattern.compile("\\bContainerSearch\\b", Pattern.CASE_INSENSITIVE);
+
+    private final Shared shared;
+    private boolean closed;
+
+    private SqlUnitOfWork(Shared shared){
+        this.shared = shared;
+    }
+
+    /**
+     * Begin a unit of work for a data source on the calling thread. If a unit is already open
+     * for it, the new unit is nested in it.
+     */
+    public static SqlUnitOfWork begin(DataSource dataSource){
+        Map<DataSource, Shared> current = CURRENT.get();
+        Shared shared = current.get(dataSource);
+        if(shared == null){
+            shared = new Shared(dataSource);
+            current.put(dataSource, shared);
+            UNITS.incrementAndGet();
+        }
+        shared.begin();
+        return new SqlUnitOfWork(shared);
+    }
+
+    /**
+     * Get a connection for a new DAO. Inside a unit of work this is a handle to the unit's
+     * connection, otherwise it's borrowed from the data source.
+     */
+    public static Connection getConnection(DataSource dataSource) throws SQLException{
+        Shared shared = CURRENT.get().get(dataSource);
+        if(shared == null){
+            CHECKOUTS.incrementAndGet();
+            return dataSource.getConnection();
+        }
+        return shared.newHandle();
+    }
+
+    /**
+     * Number of connections borrowed by the unit so far, at most one.
+     */
+    public int getCheckouts(){
+        return shared.checkouts;
+    }
+
+    @Override
+    public void close() throws IOException{
+        if(closed){
+            return;
+        }
+        closed = true;
+        if(shared.end()){
+            Map<DataSource, Shared> current = CURRENT.get();
+            if(current.get(shared.dataSource) == shared){
+                current.remove(shared.dataSource);
+            }
+        }
+        try {
+            shared.releaseIfUnused();
+        } catch(SQLException ex) {
+            throw new IOException("Error closing connection", ex);
+        }
+    }
+
+    /**
+     * The connection of the outermost unit of work for a data source on a thread. Handles may be
+     * closed on other threads, when results are streamed after the request finished.
+     */
+    private static final class Shared {
+        private final DataSource dataSource;
+        private Connection connection;
+        private int depth;
+        private int handles;
+        private int checkouts;
+        private final Set<Handle> writers = new HashSet<>();
+        private boolean rollbackOnly;
+
+        Shared(DataSource dataSource){
+            this.dataSource = dataSource;
+        }
+
+        synchronized void begin(){
+            depth++;
+        }
+
+        /**
+         * End a unit.
+         * @return true if it was the outermost unit
+         */
+        synchronized boolean end(){
+            depth--;
+            return depth == 0;
+        }
+
+        synchronized Connection newHandle() throws SQLException{
+            if(connection == null){
+                connection = dataSource.getConnection();
+                checkouts++;
+                CHECKOUTS.incrementAndGet();
+                UNIT_CHECKOUTS.incrementAndGet();
+            } else {
+                SHARED.incrementAndGet();
+            }
+            handles++;
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+
+        synchronized void written(Handle handle){
+            writers.add(handle);
+        }
+
+        synchronized void commit(Handle handle) throws SQLException{
+            writers.remove(handle);
+            if(!writers.isEmpty()){
+                // Another DAO has uncommitted writes, it commits for both
+                return;
+            }
+            if(rollbackOnly){
+                rollbackOnly = false;
+                connection.rollback();
+                throw new SQLException("Transaction was rolled back by a nested DAO");
+            }
+            connection.commit();
+        }
+
+        synchronized void rollback(Handle handle) throws SQLException{
+            boolean wrote = writers.remove(handle);
+            if(!writers.isEmpty()){
+                // Another DAO has uncommitted writes. Only lose them if there's something to undo.
+                if(wrote){
+                    rollbackOnly = true;
+                    connection.rollback();
+                }
+                return;
+            }
+            rollbackOnly = false;
+            connection.rollback();
+        }
+
+        synchronized void close(Handle handle) throws SQLException{
+            try {
+                if(writers.contains(handle)){
+                    rollback(handle);
+                }
+            } finally {
+                handles--;
+                releaseIfUnused();
+            }
+        }
+
+        synchronized void releaseIfUnused() throws SQLException{
+            if(depth > 0 || handles > 0 || connection == null){
+                return;
+            }
+            Connection conn = connection;
+            connection = null;
+            writers.clear();
+            rollbackOnly = false;
+            conn.close();
+        }
+
+        synchronized Connection getConnection(){
+            return connection;
+        }
+    }
+
+    /**
+     * A DAO's handle to the shared connection.
+     */
+    private static final class Handle implements InvocationHandler {
+        private final Shared shared;
+        private volatile boolean closed;
+
+        Handle(Shared shared){
+            this.shared = shared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+            switch(method.getName()){
+                case "close":
+                    if(!closed){
+                        closed = true;
+                        shared.close(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "commit":
+                    checkOpen();
+                    shared.commit(this);
+                    return null;
+                case "rollback":
+                    if(args == null){
+                        checkOpen();
+                        shared.rollback(this);
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            checkOpen();
+            Object ret = delegate(shared.getConnection(), method, args);
+            if(ret instanceof Statement && method.getReturnType().isInterface()){
+                // Prepared statements have their SQL now, plain statements when they're executed
+                boolean scratch = args != null && args[0] instanceof String && isScratch((String) args[0]);
+                return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new StatementHandler(this, (Statement) ret, scratch));
+            }
+            return ret;
+        }
+
+        private void checkOpen() throws SQLException{
+            if(closed){
+                throw new SQLException("Connection is closed");
+            }
+        }
+    }
+
+    /**
+     * Notes which DAOs write, so their writes can be nested.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Handle handle;
+        private final Statement statement;
+        private final boolean scratch;
+
+        StatementHandler(Handle handle, Statement statement, boolean scratch){
+            this.handle = handle;
+            this.statement = statement;
+            this.scratch = scratch;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+            String name = method.getName();
+            if(name.equals("executeUpdate") || name.equals("executeBatch") || name.equals("execute")){
+                boolean scratchSql = args != null && args[0] instanceof String && isScratch((String) args[0]);
+                if(!scratch && !scratchSql){
+                    handle.shared.written(handle);
+                }
+            }
+            return delegate(statement, method, args);
+        }
+    }
+
+    private static boolean isScratch(String sql){
+        return SCRATCH_TABLE.matcher(sql).find();
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable{
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+}
@@ -1,65 +1,31 @@
-
 package org.srs.datacat.dao.sql.mysql;
 
-import java.io.IOException;
-import java.sql.SQLException;
 import javax.sql.DataSource;
-import org.srs.datacat.dao.SearchDAO;
-import org.srs.datacat.dao.sql.SqlDAOFactory.Locker;
-import org.srs.datacat.dao.sql.SqlSearchDAO;
+import org.srs.datacat.dao.sql.SqlDAOFactory;
+import org.srs.datacat.dao.sql.SqlDialect;
 
 /**
+ * The factory configured for MySQL deployments. It creates the same DAOs as
+ * {@link SqlDAOFactory}, the MySQL specific parts are in {@link SqlDialect#MYSQL}, which is
+ * detected from the database.
+ *
+ * The data source should cache prepared statements, as described in {@link SqlDAOFactory}.
  *
  * @author bvan
  */
-public class DAOFactoryMySQL implements org.srs.datacat.dao.DAOFactory {
-    protected final DataSource dataSource;
-    private final Locker locker = new Locker();
-          
+public class DAOFactoryMySQL extends SqlDAOFactory {
+
     public DAOFactoryMySQL(DataSource ds){
-        this.dataSource = ds;
-    }
-    
-    @Override
-    public BaseDAOMySQL newBaseDAO() throws IOException{
-        try {
-            return new BaseDAOMySQL(dataSource.getConnection(), locker);
-        } catch(SQLException ex) {
-            throw new IOException("Error connecting to data source", ex);
-        }
-    }
-    
-    @Override
-    public ContainerDAOMySQL newContainerDAO() throws IOException{
-        try {
-            return new ContainerDAOMySQL(dataSource.getConnection(), locker);
-        } catch(SQLException ex) {
-            throw new IOException("Error connecting to data source", ex);
-        }
+        super(ds);
     }
 
     /**
-     * Get a new DatasetDAO.
-     * 
-     * @return
-     * @throws IOException 
+     * Create a factory which reads from a replica.
+     * @param ds Data source of the primary database, for writes
+     * @param readDs Data source of a replica, or null to read from the primary
      */
-    @Override
-    public DatasetDAOMySQL newDatasetDAO() throws IOException{
-        try {
-            return new DatasetDAOMySQL(dataSource.getConnection(), locker);
-        } catch(SQLException ex) {
-            throw new IOException("Error connecting to data source", ex);
-        }
-    }
-    
-    @Override
-    public SearchDAO newSearchDAO(Object... plugins) throws IOException{
-        try {
-            return new SqlSearchDAO(dataSource.getConnection(), null);
-        } catch(SQLException ex) {
-            throw new IOException("Error connecting to data source", ex);
-        }
+    public DAOFactoryMySQL(DataSource ds, DataSource readDs){
+        super(ds, readDs);
     }
 
 }
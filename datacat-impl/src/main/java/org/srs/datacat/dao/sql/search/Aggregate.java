@@ -0,0 +1,96 @@
+package org.srs.datacat.dao.sql.search;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An aggregate function over a field of the datasets matching a search, parsed from a string
+ * such as {@code count}, {@code sum(fileSizeBytes)} or {@code max(runMax)}.
+ *
+ * @author bvan
+ */
+public class Aggregate {
+
+    /**
+     * Supported aggregate functions.
+     */
+    public enum Function {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private static final Pattern SPEC = Pattern.compile("\\s*(\\w+)\\s*(?:\\(\\s*([^()\\s]*)\\s*\\))?\\s*");
+
+    private final String spec;
+    private final Function function;
+    private final String field;
+
+    Aggregate(String spec, Function function, String field){
+        this.spec = spec;
+        this.function = function;
+        this.field = field;
+    }
+
+    /**
+     * Parse an aggregate. {@code count} and {@code count(*)} count rows, every other function
+     * needs a field.
+     * @param spec The aggregate, as in {@code sum(fileSizeBytes)}
+     * @return The aggregate
+     * @throws IllegalArgumentException if the aggregate can't be parsed
+     */
+    public static Aggregate parse(String spec){
+        Matcher m = spec != null ? SPEC.matcher(spec) : null;
+        if(m == null || !m.matches()){
+            throw new IllegalArgumentException("Unable to parse aggregate: " + spec);
+        }
+        Function function;
+        try {
+            function = Function.valueOf(m.group(1).toUpperCase(Locale.ENGLISH));
+        } catch(IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown aggregate function: " + m.group(1));
+        }
+        String field = m.group(2);
+        if(field == null || field.isEmpty() || field.equals("*")){
+            if(function != Function.COUNT){
+                throw new IllegalArgumentException("A field is required for aggregate: " + spec);
+            }
+            field = null;
+        }
+        return new Aggregate(spec.trim(), function, field);
+    }
+
+    /**
+     * The aggregate as it was requested, used to name its value in results.
+     */
+    public String getSpec(){
+        return spec;
+    }
+
+    public Function getFunction(){
+        return function;
+    }
+
+    /**
+     * The field to aggregate, or null to count rows.
+     */
+    public String getField(){
+        return field;
+    }
+
+    /**
+     * Format the aggregate as SQL.
+     * @param column The column holding the field, ignored when counting rows
+     */
+    String toSql(String column){
+        if(field == null){
+            return "count(*)";
+        }
+        return function.name().toLowerCase(Locale.ENGLISH) + "(" + column + ")";
+    }
+
+    @Override
+    public String toString(){
+        return spec;
+    }
+
+}
@@ -10,7 +10,6 @@ import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -21,17 +20,18 @@ import org.freehep.commons.lang.bool.Lexer;
 import org.freehep.commons.lang.bool.Parser;
 import org.freehep.commons.lang.bool.sym;
 import static org.srs.datacat.dao.sql.search.DatasetSearch.sqlEscape;
+import org.srs.datacat.dao.sql.SqlDialect;
 import org.srs.datacat.dao.sql.search.plugins.DatacatPlugin;
 import org.srs.datacat.dao.sql.search.tables.DatasetContainers;
 import org.srs.datacat.dao.sql.search.tables.MetajoinedStatement;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.ModelProvider;
+import org.srs.datacat.model.security.CallContext;
 import org.zerorm.core.Column;
 import static org.zerorm.core.Op.$;
 import org.zerorm.core.Select;
 import org.zerorm.core.Table;
-import org.zerorm.core.interfaces.MaybeHasAlias;
 
 /**
  *
@@ -43,19 +43,49 @@ public class ContainerSearch {
     protected MetanameContext dmc;
     private ArrayList<String> metadataFields = new ArrayList<>();
     private Connection conn;
+    private SqlDialect dialect;
     private Select selectStatement;
     private ModelProvider modelProvider;
+    private CallContext callContext;
+    private int maxResults;
 
     public ContainerSearch(Connection conn, ModelProvider modelProvider,
             Class<? extends DatacatPlugin>... plugins) throws IOException{
+        this(conn, null, modelProvider, plugins);
+    }
+
+    /**
+     * Create a search.
+     * @param dialect Dialect of the database, or null to detect it when searching
+     */
+    public ContainerSearch(Connection conn, SqlDialect dialect, ModelProvider modelProvider,
+            Class<? extends DatacatPlugin>... plugins) throws IOException{
         this.plugins = plugins;
         this.dmc = SearchUtils.buildContainerMetaInfoGlobalContext(conn);
         this.conn = conn;
+        this.dialect = dialect;
         this.modelProvider = modelProvider;
     }
 
     public DirectoryStream<DatasetContainer> search(DirectoryStream<DatacatNode> containers, String query,
             String[] metaFieldsToRetrieve, String[] sortFields) throws ParseException, IOException{
+        return search(containers, query, metaFieldsToRetrieve, sortFields, null);
+    }
+
+    public DirectoryStream<DatasetContainer> search(DirectoryStream<DatacatNode> containers, String query,
+            String[] metaFieldsToRetrieve, String[] sortFields, CallContext context) throws ParseException, IOException{
+        return search(containers, query, metaFieldsToRetrieve, sortFields, 0, context);
+    }
+
+    /**
+     * Search containers, returning at most maxResults of them. The limit is applied by the
+     * database, after sorting.
+     */
+    public DirectoryStream<DatasetContainer> search(DirectoryStream<DatacatNode> containers, String query,
+            String[] metaFieldsToRetrieve, String[] sortFields, int maxResults, 
+            CallContext context) throws ParseException, IOException{
+        this.callContext = context;
+        this.maxResults = maxResults;
         try {
             compileStatement(containers,
                     Optional.fromNullable(query),
@@ -69,7 +99,8 @@ public class ContainerSearch {
 
     protected DirectoryStream<DatasetContainer> retrieveContainers() throws IOException{
         try {
-            return SearchUtils.getContainers(conn, modelProvider, selectStatement, metadataFields);
+            return SearchUtils.getContainers(conn, modelProvider, selectStatement, metadataFields, maxResults,
+                    callContext);
         } catch(SQLException ex) {
             throw new IOException("Error retrieving results", ex);
         }
@@ -94,12 +125,7 @@ public class ContainerSearch {
             dsc.where(sd.getEvaluatedExpr());
         }
 
-        SearchUtils.populateParentTempTable(conn, containers);
-
-        HashMap<String, MaybeHasAlias> availableSelections = new HashMap<>();
-        for(MaybeHasAlias a: dsc.getAvailableSelections()){
-            availableSelections.put(a.canonical(), a);
-        }
+        SearchUtils.populateParentTempTable(conn, dialect, containers);
 
         Table containerSearch = new Table("ContainerSearch", "cp");
 
@@ -108,7 +134,7 @@ public class ContainerSearch {
                 .join(dsc, $("dsc.pk").eq(containerSearch.$("DatasetLogicalFolder"))) // TODO: fix bug in zerorm
                 .selection(dsc.getColumns());
 
-        //handleSortFields(sd, dsc, sortFields);
+        handleSortFields(sd, dsc, sortFields);
         handleRetrieveFields(sd, dsc, retrieveFields);
 
         return selectStatement;
@@ -194,6 +220,64 @@ public class ContainerSearch {
         }
     }
 
+    private String getSortIdent(String s){
+        if(s.endsWith("-") || s.endsWith("+")){
+            s = s.substring(0, s.length() - 1);
+        }
+        if(s.startsWith("-") || s.startsWith("+")){
+            s = s.substring(1);
+        }
+        return doRewriteIdent(s);
+    }
+
+    private void handleSortFields(DatacatSearchContext sd, MetajoinedStatement dsc, Optional<String[]> sortFields){
+
+        if(sortFields.isPresent()){
+            for(String s: sortFields.get()){
+                boolean desc = s.startsWith("-") || s.endsWith("-");
+                s = getSortIdent(s);
+
+                Column orderBy = null;
+                if(sd.inSelectionScope(s)){
+                    orderBy = getColumnFromAllScope(dsc, s);
+                } else if(sd.inPluginScope(s)){
+                    DatacatPlugin plugin = sd.pluginScope.getPlugin(s);
+                    String fIdent = s.split("\\.")[1];
+                    for(Object o: plugin.joinToStatement(fIdent, dsc).getColumns()){
+                        if(o instanceof Column){
+                            Column cc = (Column) o;
+                            if(cc.canonical().equals(fIdent)){
+                                orderBy = cc;
+                                break;
+                            }
+                        }
+                    }
+                } else if(sd.inMetanameScope(s)){
+                    if(dmc.getTypes(s).size() > 1){
+                        throw new IllegalArgumentException("Unable to sort on fields with multiple types");
+                    }
+                    String aliased = "\"" + s + "\"";
+                    orderBy = getColumnFromAllScope(dsc, aliased);
+                    if(orderBy == null){
+                        Iterator<Class> typeIter = dmc.getTypes(s).iterator();
+                        Class type = typeIter.hasNext() ? typeIter.next() : null;
+                        dsc.setupMetadataJoin(s, type);
+                        orderBy = getColumnFromAllScope(dsc, aliased);
+                    }
+                    metadataFields.add(s);
+                } else {
+                    orderBy = getColumnFromSelectionScope(dsc, s);
+                    metadataFields.add(s);
+                }
+                if(orderBy == null){
+                    throw new IllegalArgumentException("Unable to find sort field: " + s);
+                }
+                selectStatement.selection(orderBy);
+                selectStatement.orderBy(orderBy, desc ? "DESC" : "ASC");
+            }
+        }
+    }
+
     private void handleRetrieveFields(DatacatSearchContext sd, MetajoinedStatement dsv,
             Optional<String[]> retrieveFields){
 
@@ -243,22 +327,15 @@ public class ContainerSearch {
     }
     
     private Column getColumnFromSelectionScope(MetajoinedStatement dsv, String ident){
-        for(MaybeHasAlias selection: dsv.getAvailableSelections()){
-            if(selection.canonical().equals( ident ) && selection instanceof Column){
-                dsv.selection( selection );
-                return (Column) selection;
-            }
+        Column column = dsv.getSelectionIndex().getAvailableColumn(ident);
+        if(column != null){
+            dsv.selection(column);
         }
-        return null;
+        return column;
     }
     
     private Column getColumnFromAllScope(MetajoinedStatement dsv, String ident){
-        for(MaybeHasAlias selection: dsv.getColumns()){
-            if(selection.canonical().equals( ident ) && selection instanceof Column){
-                return (Column) selection;
-            }
-        }
-        return null;
+        return dsv.getSelectionIndex().getSelectedColumn(ident);
     }
 
 }
@@ -2,6 +2,8 @@ package org.srs.datacat.dao.sql.search;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.freehep.commons.lang.AST;
 import org.freehep.commons.lang.bool.sym;
 import org.zerorm.core.Column;
@@ -24,20 +26,33 @@ public class DatacatSearchContext implements SearchContext {
 
     /**
      * Class representing the keyword scope of all the plugins.
+     * Plugins are stateless, so one instance of each is shared by all searches.
      */
     public static class PluginScope implements DatacatPluginProvider {
+        private static final ConcurrentMap<Class<? extends DatacatPlugin>, DatacatPlugin> INSTANCES
+                = new ConcurrentHashMap<>();
         HashMap<String, DatacatPlugin> pluginMap;
 
         public PluginScope(Class<? extends DatacatPlugin>[] plugins){
             this.pluginMap = new HashMap<>();
             for(Class<? extends DatacatPlugin> p: plugins){
+                DatacatPlugin plugin = getInstance(p);
+                this.pluginMap.put(plugin.getNamespace(), plugin);
+            }
+        }
+
+        static DatacatPlugin getInstance(Class<? extends DatacatPlugin> pluginClass){
+            DatacatPlugin plugin = INSTANCES.get(pluginClass);
+            if(plugin == null){
                 try {
-                    DatacatPlugin plugin = p.newInstance();
-                    this.pluginMap.put(plugin.getNamespace(), plugin);
+                    plugin = pluginClass.newInstance();
                 } catch(InstantiationException | IllegalAccessException ex) {
                     throw new RuntimeException(ex);
                 }
+                DatacatPlugin existing = INSTANCES.putIfAbsent(pluginClass, plugin);
+                plugin = existing != null ? existing : plugin;
             }
+            return plugin;
         }
 
         @Override
@@ -77,12 +92,7 @@ public class DatacatSearchContext implements SearchContext {
 
     @Override
     public boolean inSelectionScope(String ident){
-        for(MaybeHasAlias selection: getStatement().getAvailableSelections()){
-            if(selection.canonical().equals(ident)){
-                return true;
-            }
-        }
-        return false;
+        return dsv.getSelectionIndex().getAvailable(ident) != null;
     }
 
     @Override
@@ -235,13 +245,11 @@ public class DatacatSearchContext implements SearchContext {
     }
 
     private Column getColumnFromSelectionScope(String ident){
-        for(MaybeHasAlias selection: getStatement().getAvailableSelections()){
-            if(selection.canonical().equals(ident) && selection instanceof Column){
-                getStatement().selection(selection);
-                return (Column) selection;
-            }
+        Column column = dsv.getSelectionIndex().getAvailableColumn(ident);
+        if(column != null){
+            getStatement().selection(column);
         }
-        return null;
+        return column;
     }
 
 }
@@ -12,11 +12,15 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -28,15 +32,17 @@ import org.freehep.commons.lang.bool.sym;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.model.ModelProvider;
+import org.srs.datacat.model.security.CallContext;
+import org.srs.datacat.dao.sql.SqlDialect;
 import org.srs.datacat.dao.sql.search.plugins.DatacatPlugin;
 import org.srs.datacat.dao.sql.search.tables.DatasetVersions;
+import org.srs.datacat.dao.sql.search.tables.MetajoinPlan;
 import org.srs.datacat.model.DatasetModel;
 import org.zerorm.core.Column;
 import org.zerorm.core.Op;
 import org.zerorm.core.Select;
 import org.zerorm.core.Table;
 import org.zerorm.core.Val;
-import org.zerorm.core.interfaces.MaybeHasAlias;
 import org.zerorm.core.primaries.Case;
 
 /**
@@ -45,12 +51,18 @@ import org.zerorm.core.primaries.Case;
  */
 public class DatasetSearch {
     
+    private static final Logger LOG = Logger.getLogger(DatasetSearch.class.getName());
+
     private Class<? extends DatacatPlugin>[] plugins;
     protected MetanameContext dmc;
     private ArrayList<String> metadataFields = new ArrayList<>();
+    private HashMap<String, Column> retrievedColumns = new HashMap<>();
     private Connection conn;
+    private SqlDialect dialect;
     private Select selectStatement;
     private ModelProvider modelProvider;
+    private CallContext callContext;
+    private MetadataStatistics statistics;
     private static final MetainfoSupplier METANAME_DELEGATE = new MetainfoSupplier() {
         @Override
         public MetanameContext get(){
@@ -66,17 +78,34 @@ public class DatasetSearch {
     
     public DatasetSearch(Connection conn, ModelProvider modelProvider, 
             Class<? extends DatacatPlugin>... plugins) throws IOException {
+        this(conn, null, modelProvider, plugins);
+    }
+
+    /**
+     * Create a search.
+     * @param dialect Dialect of the database, or null to detect it when searching
+     */
+    public DatasetSearch(Connection conn, SqlDialect dialect, ModelProvider modelProvider, 
+            Class<? extends DatacatPlugin>... plugins) throws IOException {
         this.plugins = plugins;
         synchronized(METANAME_DELEGATE){
             METANAME_DELEGATE.setCurrentConnection(conn);
             this.dmc = METANAME_SUPPLIER.get();
         }
         this.conn = conn;
+        this.dialect = dialect;
         this.modelProvider = modelProvider;
     }
     
     public DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers, DatasetView datasetView, 
             String query, String[] metaFieldsToRetrieve, String[] sortFields) throws ParseException, IOException {
+        return search(containers, datasetView, query, metaFieldsToRetrieve, sortFields, null);
+    }
+    
+    public DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers, DatasetView datasetView, 
+            String query, String[] metaFieldsToRetrieve, String[] sortFields, 
+            CallContext context) throws ParseException, IOException {
+        this.callContext = context;
         try {
             compileStatement(containers, datasetView, 
                     Optional.fromNullable(query), 
@@ -88,9 +117,127 @@ public class DatasetSearch {
         }
     }
     
+    /**
+     * Aggregate the datasets matching a search. The search is compiled as usual, but only the
+     * aggregates are returned, one row for each distinct combination of the group by fields.
+     * Aggregates are computed over the rows of the search, which is one row per dataset location
+     * in the view, or one per dataset for the canonical site.
+     * @param containers Containers to search for datasets in
+     * @param datasetView View of the datasets
+     * @param query The query, or null
+     * @param groupBy Fields to group by, or null
+     * @param aggregates Aggregates, as parsed by {@link Aggregate#parse(java.lang.String)}
+     * @param context Context of the call, or null
+     * @return The rows, mapping each group by field and aggregate to its value
+     */
+    public List<Map<String, Object>> aggregate(DirectoryStream<DatacatNode> containers, DatasetView datasetView,
+            String query, String[] groupBy, String[] aggregates, 
+            CallContext context) throws ParseException, IOException {
+        this.callContext = context;
+        List<String> groupFields = Arrays.asList(groupBy != null ? groupBy : new String[0]);
+        List<Aggregate> aggs = new ArrayList<>();
+        for(String spec: aggregates != null ? aggregates : new String[0]){
+            aggs.add(Aggregate.parse(spec));
+        }
+        if(aggs.isEmpty()){
+            throw new IllegalArgumentException("At least one aggregate is required");
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        for(String field: groupFields){
+            fields.add(doRewriteIdent(field));
+        }
+        for(Aggregate agg: aggs){
+            if(agg.getField() != null){
+                fields.add(doRewriteIdent(agg.getField()));
+            }
+        }
+        try {
+            compileStatement(containers, datasetView, Optional.fromNullable(query),
+                    Optional.of(fields.toArray(new String[0])), Optional.<String[]>absent(), false);
+
+            StringBuilder selectList = new StringBuilder();
+            StringBuilder groupList = new StringBuilder();
+            for(String field: groupFields){
+                String column = retrievedColumns.get(doRewriteIdent(field)).canonical();
+                selectList.append(column).append(", ");
+                groupList.append(groupList.length() > 0 ? ", " : "").append(column);
+            }
+            for(int i = 0; i < aggs.size(); i++){
+                Aggregate agg = aggs.get(i);
+                Column column = agg.getField() != null ? retrievedColumns.get(doRewriteIdent(agg.getField())) : null;
+                selectList.append(i > 0 ? ", " : "").append(agg.toSql(column != null ? column.canonical() : null));
+            }
+            String tail = groupList.length() > 0 ? "GROUP BY " + groupList + " ORDER BY " + groupList : "";
+            LOG.log(Level.FINE, "Aggregating {0} by {1}", new Object[]{aggs, groupFields});
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            for(Object[] row: SearchUtils.getAggregates(conn, selectStatement, selectList.toString(), tail, 0,
+                    context)){
+                Map<String, Object> result = new LinkedHashMap<>();
+                int i = 0;
+                for(String field: groupFields){
+                    result.put(field, row[i++]);
+                }
+                for(Aggregate agg: aggs){
+                    result.put(agg.getSpec(), row[i++]);
+                }
+                results.add(result);
+            }
+            return results;
+        } catch (SQLException ex) {
+            throw new IOException("Error aggregating results", ex);
+        }
+    }
+    
+    /**
+     * Count the distinct values of fields over the datasets matching a search. The search is
+     * compiled once, and each field is then grouped separately. Rows without a value for a field
+     * aren't counted for it.
+     * @param containers Containers to search for datasets in
+     * @param datasetView View of the datasets
+     * @param query The query, or null
+     * @param fields Fields to count the values of
+     * @param limit Maximum number of values to return for each field, or 0 for all of them
+     * @param context Context of the call, or null
+     * @return For each field, its most common values first, each a map of the value and count
+     */
+    public Map<String, List<Map<String, Object>>> facets(DirectoryStream<DatacatNode> containers,
+            DatasetView datasetView, String query, String[] fields, int limit,
+            CallContext context) throws ParseException, IOException {
+        this.callContext = context;
+        if(fields == null || fields.length == 0){
+            throw new IllegalArgumentException("At least one field is required");
+        }
+        Set<String> retrieveFields = new LinkedHashSet<>();
+        for(String field: fields){
+            retrieveFields.add(doRewriteIdent(field));
+        }
+        try {
+            compileStatement(containers, datasetView, Optional.fromNullable(query),
+                    Optional.of(retrieveFields.toArray(new String[0])), Optional.<String[]>absent(), false);
+            Map<String, List<Map<String, Object>>> facets = new LinkedHashMap<>();
+            for(String field: fields){
+                String column = retrievedColumns.get(doRewriteIdent(field)).canonical();
+                String tail = "WHERE " + column + " IS NOT NULL GROUP BY " + column + " ORDER BY 2 DESC, 1";
+                List<Map<String, Object>> values = new ArrayList<>();
+                for(Object[] row: SearchUtils.getAggregates(conn, selectStatement, column + ", count(*)", tail,
+                        limit, context)){
+                    Map<String, Object> value = new LinkedHashMap<>();
+                    value.put("value", row[0]);
+                    value.put("count", row[1]);
+                    values.add(value);
+                }
+                facets.put(field, values);
+            }
+            return facets;
+        } catch (SQLException ex) {
+            throw new IOException("Error counting values", ex);
+        }
+    }
+    
     protected DirectoryStream<DatasetModel> retrieveDatasets() throws IOException {
         try {
-            return SearchUtils.getResults(conn, modelProvider, selectStatement, metadataFields);
+            return SearchUtils.getResults(conn, modelProvider, selectStatement, metadataFields, callContext);
         } catch (SQLException ex) {
             throw new IOException("Error retrieving results", ex);
         }
@@ -100,6 +247,18 @@ public class DatasetSearch {
             Optional<String> query, 
             Optional<String[]> retrieveFields, 
             Optional<String[]> sortFields) throws ParseException, SQLException, IOException {
+        return compileStatement(containers, datasetView, query, retrieveFields, sortFields, true);
+    }
+
+    /**
+     * Compile the statement.
+     * @param selectDatasets Whether to select everything needed to build datasets. If not, only
+     * the container path and the retrieved fields are selected.
+     */
+    private Select compileStatement(DirectoryStream<DatacatNode> containers, DatasetView datasetView, 
+            Optional<String> query, 
+            Optional<String[]> retrieveFields, 
+            Optional<String[]> sortFields, boolean selectDatasets) throws ParseException, SQLException, IOException {
         
         // Prepare DatasetVersions Selection 
         DatasetVersions dsv = prepareDatasetVersion(datasetView);
@@ -113,18 +272,14 @@ public class DatasetSearch {
             // Allows us to do any last minute translation
             doRewrite(ast);
             sd.assertIdentsValid(ast);
+            dsv.setJoinPlan(planMetadataJoins(sd, ast, retrieveFields, sortFields));
             sd.evaluate(ast.getRoot());
             // In case we want to do something else, go ahead here
             dsv.where(sd.getEvaluatedExpr());
         }
         
-        SearchUtils.populateParentTempTable(conn, containers);
+        SearchUtils.populateParentTempTable(conn, dialect, containers);
 
-        HashMap<String, MaybeHasAlias> availableSelections = new HashMap<>();
-        for(MaybeHasAlias a: dsv.getAvailableSelections()){
-            availableSelections.put( a.canonical(), a);
-        }
-        
         Table containerSearch = new Table("ContainerSearch", "cp");
         
         this.selectStatement = containerSearch
@@ -134,28 +289,74 @@ public class DatasetSearch {
                         dsv.getSelection(dsv.ds.datasetlogicalfolder).eq(containerSearch.$("DatasetLogicalFolder")), 
                         dsv.getSelection(dsv.ds.datasetGroup).eq(containerSearch.$("DatasetGroup"))
                 )
-            ).selection(dsv.getColumns());
+            );
+        if(selectDatasets){
+            selectStatement.selection(dsv.getColumns());
+        }
         
         handleSortFields(sd, dsv, sortFields);
         handleRetrieveFields(sd, dsv, retrieveFields);
         
         return selectStatement;
-    }            
+    }
+
+    /**
+     * Plan how the metadata fields in the query are joined.
+     */
+    private MetajoinPlan planMetadataJoins(DatacatSearchContext sd, AST ast,
+            Optional<String[]> retrieveFields, Optional<String[]> sortFields) throws IOException{
+        Set<String> filterFields = new HashSet<>();
+        for(String ident: (Collection<String>) ast.getRoot().getMetadata("idents")){
+            if(isMetadataField(sd, ident)){
+                filterFields.add(ident);
+            }
+        }
+        Set<String> selectedFields = new HashSet<>();
+        for(String s: retrieveFields.or(new String[0])){
+            if(isMetadataField(sd, s)){
+                selectedFields.add(s);
+            }
+        }
+        for(String s: sortFields.or(new String[0])){
+            s = getSortIdent(s);
+            if(isMetadataField(sd, s)){
+                selectedFields.add(s);
+            }
+        }
+        MetajoinPlan plan = MetajoinPlan.plan(filterFields, selectedFields, statistics);
+        LOG.log(Level.FINE, "Planned metadata joins: {0}", plan);
+        return plan;
+    }
+
+    private static boolean isMetadataField(DatacatSearchContext sd, String ident){
+        return !sd.inSelectionScope(ident) && !sd.inPluginScope(ident) && sd.inMetanameScope(ident);
+    }
+
+    /**
+     * Use these statistics to plan metadata joins.
+     * @param statistics The statistics, or null to plan without them
+     */
+    public void setMetadataStatistics(MetadataStatistics statistics){
+        this.statistics = statistics;
+    }
+
+    private String getSortIdent(String s){
+        if(s.endsWith("-") || s.endsWith("+")){
+            s = s.substring( 0, s.length() - 1);
+        }
+        if(s.startsWith("-") || s.startsWith("+")){
+            s = s.substring(1);
+        }
+        // size and resource are reserved words in many DBMSs. Rewrite them.
+        return doRewriteIdent(s);
+    }
         
     private void handleSortFields(DatacatSearchContext sd, DatasetVersions dsv, Optional<String[]> sortFields){
         
         if(sortFields.isPresent()){
             for(String s: sortFields.get()){
                 boolean desc = s.startsWith("-") || s.endsWith("-");
-                if(s.endsWith("-") || s.endsWith("+")){
-                    s = s.substring( 0, s.length() - 1);
-                }
-                if(s.startsWith("-") || s.startsWith("+")){
-                    s = s.substring(1);
-                }
-
-                // size and resource are reserved words in many DBMSs. Rewrite them.
-                s = doRewriteIdent(s);
+                s = getSortIdent(s);
                 
                 Column orderBy = null;
                 if(sd.inSelectionScope( s )){
@@ -242,6 +443,7 @@ public class DatasetSearch {
                 if(retrieve == null){
                     throw new IllegalArgumentException("Unable to find retrieval field: " + s);
                 }
+                retrievedColumns.put(s, retrieve);
                 selectStatement.selection(retrieve);
             }
         }
@@ -369,22 +571,15 @@ public class DatasetSearch {
     }
         
     private Column getColumnFromSelectionScope(DatasetVersions dsv, String ident){
-        for(MaybeHasAlias selection: dsv.getAvailableSelections()){
-            if(selection.canonical().equals( ident ) && selection instanceof Column){
-                dsv.selection( selection );
-                return (Column) selection;
-            }
+        Column column = dsv.getSelectionIndex().getAvailableColumn(ident);
+        if(column != null){
+            dsv.selection(column);
         }
-        return null;
+        return column;
     }
     
     private Column getColumnFromAllScope(DatasetVersions dsv, String ident){
-        for(MaybeHasAlias selection: dsv.getColumns()){
-            if(selection.canonical().equals( ident ) && selection instanceof Column){
-                return (Column) selection;
-            }
-        }
-        return null;
+        return dsv.getSelectionIndex().getSelectedColumn(ident);
     }
 
 }
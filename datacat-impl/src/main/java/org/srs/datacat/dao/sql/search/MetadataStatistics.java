@@ -0,0 +1,144 @@
+package org.srs.datacat.dao.sql.search;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Row counts of the dataset metadata tables, used to plan how metadata is joined in a search.
+ * The counts of a database are kept by its {@link Loader}, and refreshed every few minutes in
+ * the background. They only need to be roughly right.
+ *
+ * @author bvan
+ */
+public class MetadataStatistics {
+
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final String[] METADATA_TABLES = {
+        "VerDatasetMetaNumber", "VerDatasetMetaString", "VerDatasetMetaTimestamp"};
+    private static final Logger LOG = Logger.getLogger(MetadataStatistics.class.getName());
+    private static final ExecutorService LOAD_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("metadata-statistics-%d")
+                .build());
+
+    private final long versions;
+    private final Map<String, Long> rowCounts;
+    private final long loaded = System.currentTimeMillis();
+
+    /**
+     * Create statistics.
+     * @param versions Number of dataset versions
+     * @param rowCounts Number of versions with a value, by metadata name
+     */
+    public MetadataStatistics(long versions, Map<String, Long> rowCounts){
+        this.versions = versions;
+        this.rowCounts = Collections.unmodifiableMap(new HashMap<>(rowCounts));
+    }
+
+    /**
+     * Keeps the statistics of one database. Searches never wait for them: they get the last
+     * statistics loaded, and if those are missing or too old, one load is started in the
+     * background with its own connection.
+     */
+    public static class Loader {
+        private final DataSource dataSource;
+        private final AtomicBoolean loading = new AtomicBoolean();
+        private volatile MetadataStatistics current;
+        private volatile long lastAttempt;
+
+        public Loader(DataSource dataSource){
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Get the last statistics loaded, or null if there are none yet.
+         */
+        public MetadataStatistics get(){
+            MetadataStatistics stats = current;
+            long now = System.currentTimeMillis();
+            boolean stale = stats == null || now - stats.loaded > MAX_AGE_MILLIS;
+            if(stale && now - lastAttempt > RETRY_MILLIS && loading.compareAndSet(false, true)){
+                lastAttempt = now;
+                LOAD_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run(){
+                        try(Connection conn = dataSource.getConnection()) {
+                            current = load(conn);
+                        } catch(SQLException | IOException ex) {
+                            LOG.log(Level.WARNING, "Unable to load metadata statistics", ex);
+                        } finally {
+                            loading.set(false);
+                        }
+                    }
+                });
+            }
+            return stats;
+        }
+    }
+
+    static MetadataStatistics load(Connection conn) throws IOException{
+        try {
+            long versions = 0;
+            try(PreparedStatement stmt = conn.prepareStatement("select count(*) from DatasetVersion")) {
+                ResultSet rs = stmt.executeQuery();
+                if(rs.next()){
+                    versions = rs.getLong(1);
+                }
+            }
+            HashMap<String, Long> rowCounts = new HashMap<>();
+            for(String table: METADATA_TABLES){
+                String sql = "select MetaName, count(*) from " + table + " group by MetaName";
+                try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    ResultSet rs = stmt.executeQuery();
+                    while(rs.next()){
+                        String metaName = rs.getString(1);
+                        Long rows = rowCounts.get(metaName);
+                        rowCounts.put(metaName, (rows != null ? rows : 0) + rs.getLong(2));
+                    }
+                }
+            }
+            return new MetadataStatistics(versions, rowCounts);
+        } catch(SQLException ex) {
+            throw new IOException("Error retrieving metadata statistics", ex);
+        }
+    }
+
+    public long getVersions(){
+        return versions;
+    }
+
+    /**
+     * Number of versions with a value for the metadata name.
+     */
+    public long getRowCount(String metaName){
+        Long rows = rowCounts.get(metaName);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Fraction of all versions with a value for the metadata name.
+     */
+    public double getFraction(String metaName){
+        if(versions <= 0){
+            return 1.0;
+        }
+        return Math.min(1.0, (double) getRowCount(metaName) / versions);
+    }
+
+}
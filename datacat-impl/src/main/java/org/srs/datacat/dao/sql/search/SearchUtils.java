@@ -1,12 +1,18 @@
 package org.srs.datacat.dao.sql.search;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.nio.file.DirectoryStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -15,8 +21,13 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.freehep.commons.lang.AST;
+import org.srs.datacat.dao.sql.SqlDialect;
+import org.srs.datacat.metrics.Metrics;
 import org.srs.datacat.model.DatacatNode;
 import org.zerorm.core.Select;
 
@@ -26,6 +37,7 @@ import org.srs.datacat.model.dataset.DatasetLocationModel;
 import org.srs.datacat.model.ModelProvider;
 import org.srs.datacat.model.RecordType;
 import org.srs.datacat.model.container.DatasetContainerBuilder;
+import org.srs.datacat.model.security.CallContext;
 import org.srs.datacat.shared.DatasetLocation;
 
 import org.srs.vfs.PathUtils;
@@ -36,6 +48,13 @@ import org.srs.vfs.PathUtils;
  */
 public final class SearchUtils {
 
+    /**
+     * Counter of searches stopped because the call was cancelled or passed its deadline.
+     */
+    public static final String ABORTED_METRIC = "search.aborted";
+    private static final Logger LOG = Logger.getLogger(SearchUtils.class.getName());
+    private static final int PARENT_BATCH_SIZE = 500;
+
     private SearchUtils(){
     }
 
@@ -269,33 +288,43 @@ public final class SearchUtils {
         }
     }
 
-    public static void populateParentTempTable(Connection conn,
+    /**
+     * Fill the ContainerSearch table with the containers to search.
+     * @param dialect Dialect of the database, or null to detect it from the connection
+     */
+    public static void populateParentTempTable(Connection conn, SqlDialect dialect,
             DirectoryStream<DatacatNode> containers) throws SQLException{
-
-        if(conn.getMetaData().getDatabaseProductName().contains("MySQL")){
-            String dropSql = "drop temporary table if exists ContainerSearch";
-            String tableSql 
-                = "create temporary table ContainerSearch ( "
-                    + "    DatasetLogicalFolder bigint, "
-                    + "    DatasetGroup         bigint, "
-                    + "    ContainerPath varchar(500) "
-                    + ")";
-            try(PreparedStatement stmt = conn.prepareStatement(dropSql)) {
-                stmt.execute();
-            }
+        if(dialect == null){
+            dialect = SqlDialect.detect(conn);
+        }
+        for(String tableSql: dialect.getParentTempTableSql()){
             try(PreparedStatement stmt = conn.prepareStatement(tableSql)) {
                 stmt.execute();
             }
         }
+        // The connection may be shared with an earlier search, like the container search of a
+        // dataset search, which left its containers in the table
+        try(PreparedStatement stmt = conn.prepareStatement("DELETE FROM ContainerSearch")) {
+            stmt.executeUpdate();
+        }
 
         String sql = "INSERT INTO ContainerSearch (DatasetLogicalFolder, DatasetGroup, ContainerPath) VALUES (?,?,?)";
         try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+            // Containers are inserted in batches as they are read, rather than one round trip each
+            int batched = 0;
             for(DatacatNode file: containers){
                 boolean isGroup = file.getType() == RecordType.GROUP;
                 stmt.setNull(isGroup ? 1 : 2, Types.VARCHAR);
                 stmt.setLong(isGroup ? 2 : 1, file.getPk());
                 stmt.setString(3, file.getPath());
-                stmt.executeUpdate();
+                stmt.addBatch();
+                if(++batched == PARENT_BATCH_SIZE){
+                    stmt.executeBatch();
+                    batched = 0;
+                }
+            }
+            if(batched > 0){
+                stmt.executeBatch();
             }
         }
     }
@@ -322,10 +351,27 @@ public final class SearchUtils {
     public static DirectoryStream<DatasetModel> getResults(final Connection conn,
             final ModelProvider modelProvider,
             final Select sel, final List<String> metadataNames) throws SQLException{
+        return getResults(conn, modelProvider, sel, metadataNames, null);
+    }
+
+    public static DirectoryStream<DatasetModel> getResults(final Connection conn,
+            final ModelProvider modelProvider,
+            final Select sel, final List<String> metadataNames, 
+            final CallContext context) throws SQLException{
         final PreparedStatement stmt = sel.prepareAndBind(conn);
-        final ResultSet rs = stmt.executeQuery();
-        if(!rs.next()){
-            rs.close();
+        final CallContext.Cancellable cancellable = applyCallContext(stmt, context);
+        final ResultSet rs;
+        try {
+            rs = stmt.executeQuery();
+            if(!rs.next()){
+                rs.close();
+            }
+        } catch(SQLException ex) {
+            releaseStatement(stmt, context, cancellable);
+            if(ex instanceof SQLTimeoutException || (context != null && context.isAborted())){
+                Metrics.counter(ABORTED_METRIC).incrementAndGet();
+            }
+            throw ex;
         }
         DirectoryStream<DatasetModel> stream = new DirectoryStream<DatasetModel>() {
             Iterator<DatasetModel> iter = null;
@@ -343,6 +389,7 @@ public final class SearchUtils {
                                     if(rs.isClosed()){
                                         return false;
                                     }
+                                    checkAborted(context);
                                     ds = SearchUtils.datasetFactory(rs, modelProvider, metadataNames);
                                     return true;
                                 }
@@ -350,6 +397,7 @@ public final class SearchUtils {
                             } catch(NoSuchElementException ex) {
                                 return false;
                             } catch(SQLException ex) {
+                                checkAborted(context);
                                 throw new RuntimeException("Error processing search results", ex);
                             }
                         }
@@ -377,7 +425,7 @@ public final class SearchUtils {
             @Override
             public void close() throws IOException{
                 try {
-                    stmt.close();
+                    releaseStatement(stmt, context, cancellable);
                 } catch(SQLException ex) {
                     throw new IOException("Error closing statement", ex);
                 }
@@ -390,11 +438,42 @@ public final class SearchUtils {
     public static DirectoryStream<DatasetContainer> getContainers(final Connection conn,
             final ModelProvider modelProvider,
             final Select sel, final List<String> metadataNames) throws SQLException{
-        System.out.println(sel.formatted());
+        return getContainers(conn, modelProvider, sel, metadataNames, null);
+    }
+
+    public static DirectoryStream<DatasetContainer> getContainers(final Connection conn,
+            final ModelProvider modelProvider,
+            final Select sel, final List<String> metadataNames, 
+            final CallContext context) throws SQLException{
+        return getContainers(conn, modelProvider, sel, metadataNames, 0, context);
+    }
+
+    /**
+     * Stream the containers found by a statement.
+     * @param maxRows Maximum number of containers to read, or 0 for all of them
+     */
+    public static DirectoryStream<DatasetContainer> getContainers(final Connection conn,
+            final ModelProvider modelProvider,
+            final Select sel, final List<String> metadataNames, int maxRows,
+            final CallContext context) throws SQLException{
+        if(LOG.isLoggable(Level.FINEST)){
+            LOG.finest(sel.formatted());
+        }
         final PreparedStatement stmt = sel.prepareAndBind(conn);
-        final ResultSet rs = stmt.executeQuery();
-        if(!rs.next()){
-            rs.close();
+        final CallContext.Cancellable cancellable = applyCallContext(stmt, context);
+        final ResultSet rs;
+        try {
+            stmt.setMaxRows(maxRows);
+            rs = stmt.executeQuery();
+            if(!rs.next()){
+                rs.close();
+            }
+        } catch(SQLException ex) {
+            releaseStatement(stmt, context, cancellable);
+            if(ex instanceof SQLTimeoutException || (context != null && context.isAborted())){
+                Metrics.counter(ABORTED_METRIC).incrementAndGet();
+            }
+            throw ex;
         }
         DirectoryStream<DatasetContainer> stream = new DirectoryStream<DatasetContainer>() {
             Iterator<DatasetContainer> iter = null;
@@ -412,6 +491,7 @@ public final class SearchUtils {
                                     if(rs.isClosed()){
                                         return false;
                                     }
+                                    checkAborted(context);
                                     container = SearchUtils.containerFactory(rs, modelProvider, metadataNames);
                                     return true;
                                 }
@@ -419,6 +499,7 @@ public final class SearchUtils {
                             } catch(NoSuchElementException ex) {
                                 return false;
                             } catch(SQLException ex) {
+                                checkAborted(context);
                                 throw new RuntimeException("Error processing search results", ex);
                             }
                         }
@@ -446,7 +527,7 @@ public final class SearchUtils {
             @Override
             public void close() throws IOException{
                 try {
-                    stmt.close();
+                    releaseStatement(stmt, context, cancellable);
                 } catch(SQLException ex) {
                     throw new IOException("Error closing statement", ex);
                 }
@@ -455,6 +536,116 @@ public final class SearchUtils {
         return stream;
     }
 
+    /**
+     * Run a statement which aggregates the rows of a search statement. The search statement is
+     * prepared and bound as usual, but its SQL is placed in the FROM clause of the aggregating
+     * statement, which adds no parameters of its own.
+     * @param conn Connection to use
+     * @param sel The search statement
+     * @param selectList Select list of the aggregating statement, over the columns of the search
+     * @param tail GROUP BY, ORDER BY and any other clauses following the FROM clause, or an empty string
+     * @param maxRows Maximum number of rows to read, or 0 for all of them
+     * @param context Context of the call, or null
+     * @return The aggregated rows
+     */
+    public static List<Object[]> getAggregates(final Connection conn, Select sel, final String selectList,
+            final String tail, int maxRows, CallContext context) throws SQLException{
+        Connection wrapping = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+                        if(method.getName().equals("prepareStatement") && args[0] instanceof String){
+                            args[0] = "SELECT " + selectList + " FROM ( " + args[0] + " ) agg " + tail;
+                        }
+                        try {
+                            return method.invoke(conn, args);
+                        } catch(InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                });
+        final PreparedStatement stmt = sel.prepareAndBind(wrapping);
+        final CallContext.Cancellable cancellable = applyCallContext(stmt, context);
+        try {
+            stmt.setMaxRows(maxRows);
+            try(ResultSet rs = stmt.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                List<Object[]> rows = new ArrayList<>();
+                while(rs.next()){
+                    checkAborted(context);
+                    Object[] row = new Object[columns];
+                    for(int i = 0; i < columns; i++){
+                        Object o = rs.getObject(i + 1);
+                        if(o instanceof Number){
+                            BigDecimal v = rs.getBigDecimal(i + 1);
+                            o = v.scale() == 0 ? v.toBigIntegerExact() : v;
+                        }
+                        row[i] = o;
+                    }
+                    rows.add(row);
+                }
+                return rows;
+            }
+        } catch(SQLException ex) {
+            if(ex instanceof SQLTimeoutException || (context != null && context.isAborted())){
+                Metrics.counter(ABORTED_METRIC).incrementAndGet();
+            }
+            throw ex;
+        } finally {
+            releaseStatement(stmt, context, cancellable);
+        }
+    }
+
+    /**
+     * Apply the remaining time of the call to a statement as its query timeout, and register the
+     * statement to be cancelled with the call.
+     * @return The registered cancellable, or null if there is no context
+     */
+    static CallContext.Cancellable applyCallContext(final Statement stmt, CallContext context) throws SQLException{
+        if(context == null){
+            return null;
+        }
+        if(context.isAborted()){
+            stmt.close();
+            Metrics.counter(ABORTED_METRIC).incrementAndGet();
+            throw new SQLTimeoutException("The search was aborted before it started");
+        }
+        if(context.hasDeadline()){
+            long remaining = TimeUnit.MILLISECONDS.toSeconds(context.getRemainingMillis() + 999);
+            stmt.setQueryTimeout((int) Math.min(Math.max(remaining, 1), Integer.MAX_VALUE));
+        }
+        CallContext.Cancellable cancellable = new CallContext.Cancellable() {
+            @Override
+            public void cancel(){
+                try {
+                    stmt.cancel();
+                } catch(SQLException ex) {
+                    LOG.log(Level.FINE, "Unable to cancel statement", ex);
+                }
+            }
+        };
+        context.addCancellable(cancellable);
+        return cancellable;
+    }
+
+    static void releaseStatement(Statement stmt, CallContext context, 
+            CallContext.Cancellable cancellable) throws SQLException{
+        if(context != null){
+            context.removeCancellable(cancellable);
+        }
+        stmt.close();
+    }
+
+    /**
+     * Stop processing results if the call was aborted while they were being read.
+     */
+    static void checkAborted(CallContext context){
+        if(context != null && context.isAborted()){
+            Metrics.counter(ABORTED_METRIC).incrementAndGet();
+            throw new IllegalStateException("The search was aborted", new SQLTimeoutException());
+        }
+    }
+
     public static Class<?> getParamType(Object tRight){
         if(tRight instanceof List){
             List r = ((List) tRight);
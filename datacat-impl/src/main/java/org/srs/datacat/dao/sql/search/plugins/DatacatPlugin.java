@@ -4,12 +4,22 @@ import org.srs.datacat.dao.sql.search.tables.MetajoinedStatement;
 import org.zerorm.core.interfaces.SimpleTable;
 
 /**
+ * A plugin providing fields from other tables to searches, under a namespace.
+ *
+ * One instance of a plugin is shared by all searches, so plugins must be stateless and
+ * thread-safe. Anything specific to one search, like the tables already joined, is kept
+ * on the statement.
  *
  * @author bvan
  */
 public interface DatacatPlugin {
 
     String getNamespace();
+
+    /**
+     * Join the plugin's table to a statement, if it isn't already joined to it.
+     * @return The table joined to the statement
+     */
     SimpleTable joinToStatement(String key, MetajoinedStatement statement);
     boolean containsKey(String key);
     
@@ -27,10 +27,7 @@ public class EXODatacatSearchPlugin implements DatacatPlugin {
     };
 
     private static final String NAMESPACE = "exo";
-    EXORunIndex eri = new EXORunIndex();
-    private boolean joined;
-
-    private HashMap<String, Column> mappings = new HashMap<>();
+    private final HashMap<String, Column> mappings = new HashMap<>();
 
     public EXODatacatSearchPlugin(){
 
@@ -51,14 +48,16 @@ public class EXODatacatSearchPlugin implements DatacatPlugin {
 
     @Override
     public SimpleTable joinToStatement(String key, MetajoinedStatement statement){
-        if(joined){
-            return eri;
+        SimpleTable joined = statement.getPluginJoin(NAMESPACE);
+        if(joined != null){
+            return joined;
         }
+        EXORunIndex eri = new EXORunIndex();
         String metadataPivot = "nRun";
         Column vecColumn = statement.setupMetadataOuterJoin(metadataPivot, Number.class);
 
         statement.selection(eri.getColumns()).leftOuterJoin(eri, vecColumn.eq(eri.runId));
-        joined = true;
+        statement.addPluginJoin(NAMESPACE, eri);
         return eri;
     }
 
@@ -28,10 +28,8 @@ public class LsstFilesSearchPlugin implements DatacatPlugin {
     };
     
     private static final String NAMESPACE = "files";
-    FitsFiles lsstff = new FitsFiles();
-    private boolean joined;
     
-    private HashMap<String, Column> mappings = new HashMap<>();
+    private final HashMap<String, Column> mappings = new HashMap<>();
     
     public LsstFilesSearchPlugin(){
 
@@ -52,13 +50,15 @@ public class LsstFilesSearchPlugin implements DatacatPlugin {
 
     @Override
     public SimpleTable joinToStatement(String key, MetajoinedStatement statement){
-        if(joined){
-            return lsstff;
+        SimpleTable joined = statement.getPluginJoin(NAMESPACE);
+        if(joined != null){
+            return joined;
         }
+        FitsFiles lsstff = new FitsFiles();
         String metadataPivot = "fileId";
         Column vecColumn = statement.setupMetadataOuterJoin(metadataPivot, Number.class);
         statement.selection(lsstff.getColumns()).leftOuterJoin(lsstff, vecColumn.eq(lsstff.fileId));
-        joined = true;
+        statement.addPluginJoin(NAMESPACE, lsstff);
         return lsstff;
     }
 
@@ -33,10 +33,7 @@ public class LsstKVSearchPlugin implements DatacatPlugin {
     };
     
     private static final String NAMESPACE = "kv";
-    FitsKeyValues lsstkv = new FitsKeyValues();
-    private boolean joined;
-
-    private HashMap<String, Column> mappings = new HashMap<>();
+    private final HashMap<String, Column> mappings = new HashMap<>();
 
     public LsstKVSearchPlugin(){
 
@@ -57,15 +54,17 @@ public class LsstKVSearchPlugin implements DatacatPlugin {
 
     @Override
     public SimpleTable joinToStatement(String key, MetajoinedStatement statement){
-        if(joined){
-            return lsstkv;
+        SimpleTable joined = statement.getPluginJoin(NAMESPACE);
+        if(joined != null){
+            return joined;
         }
+        FitsKeyValues lsstkv = new FitsKeyValues();
         String metadataPivot = "fileId";
         DatasetVersions dsv = (DatasetVersions) statement;
         Column vecColumn = dsv.setupMetadataOuterJoin(metadataPivot, Number.class);
 
         dsv.selection(lsstkv.getColumns()).leftOuterJoin(lsstkv, vecColumn.eq(lsstkv.fileId));
-        joined = true;
+        statement.addPluginJoin(NAMESPACE, lsstkv);
         return lsstkv;
     }
 
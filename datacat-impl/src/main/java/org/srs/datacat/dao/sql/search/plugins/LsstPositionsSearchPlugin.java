@@ -31,10 +31,8 @@ public class LsstPositionsSearchPlugin implements DatacatPlugin {
     };
     
     private static final String NAMESPACE = "pos";
-    FitsPositions lsstpos = new FitsPositions();
-    private boolean joined;
     
-    private HashMap<String, Column> mappings = new HashMap<>();
+    private final HashMap<String, Column> mappings = new HashMap<>();
     
     public LsstPositionsSearchPlugin(){
 
@@ -55,15 +53,17 @@ public class LsstPositionsSearchPlugin implements DatacatPlugin {
 
     @Override
     public SimpleTable joinToStatement(String key, MetajoinedStatement statement){
-        if(joined){
-            return lsstpos;
+        SimpleTable joined = statement.getPluginJoin(NAMESPACE);
+        if(joined != null){
+            return joined;
         }
+        FitsPositions lsstpos = new FitsPositions();
         String metadataPivot = "fileId";
         Column vecColumn = statement.setupMetadataOuterJoin(metadataPivot, Number.class);
 
         statement.selection(lsstpos.getColumns())
                 .leftOuterJoin(lsstpos, vecColumn.eq(lsstpos.fileId));
-        joined = true;
+        statement.addPluginJoin(NAMESPACE, lsstpos);
         return lsstpos;
     }
 
@@ -0,0 +1,118 @@
+package org.srs.datacat.dao.sql.search.tables;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.srs.datacat.dao.sql.search.MetadataStatistics;
+
+/**
+ * Decides how each metadata field used in a search is added to a {@link MetajoinedStatement}.
+ *
+ * Every joined metadata field is another join against a metadata table, and MySQL plans
+ * statements with many of them poorly. Fields which are only used to filter don't need to be
+ * joined. They can be tested with a semi-join instead, a subquery of the matching versions,
+ * which costs about as much as the number of rows for that field.
+ *
+ * Fields which are retrieved or sorted on are always joined. Filter fields set on only a small
+ * fraction of versions are semi-joined, as are all filter fields once a statement has
+ * {@link #MAX_JOINS} joins.
+ *
+ * @author bvan
+ */
+public class MetajoinPlan {
+
+    /**
+     * How a metadata field is added to a statement.
+     */
+    public enum Strategy {
+        /** Join the metadata table, making the value available to the statement. */
+        JOIN,
+        /** Filter on a subquery of the versions matching the condition. */
+        SEMI_JOIN
+    }
+
+    /**
+     * Joins a statement may have before all remaining filter fields are semi-joined.
+     */
+    public static final int MAX_JOINS = 2;
+
+    /**
+     * Filter fields set on at most this fraction of all versions are semi-joined.
+     */
+    public static final double SEMI_JOIN_MAX_FRACTION = 0.25;
+
+    /**
+     * The plan for statements which weren't planned. Every field is joined.
+     */
+    public static final MetajoinPlan ALWAYS_JOIN = new MetajoinPlan(Collections.<String, Strategy>emptyMap());
+
+    private final Map<String, Strategy> strategies;
+
+    MetajoinPlan(Map<String, Strategy> strategies){
+        this.strategies = strategies;
+    }
+
+    /**
+     * Plan the metadata fields of a statement.
+     * @param filterFields Metadata fields used in the filter
+     * @param selectedFields Metadata fields which are retrieved or sorted on
+     * @param stats Metadata statistics, or null if they aren't available
+     * @return The plan
+     */
+    public static MetajoinPlan plan(Collection<String> filterFields, Collection<String> selectedFields,
+            final MetadataStatistics stats){
+        Map<String, Strategy> strategies = new LinkedHashMap<>();
+        Set<String> selected = new LinkedHashSet<>(selectedFields);
+        for(String field: selected){
+            strategies.put(field, Strategy.JOIN);
+        }
+        int joins = selected.size();
+
+        List<String> filterOnly = new ArrayList<>(new LinkedHashSet<>(filterFields));
+        filterOnly.removeAll(selected);
+        // Join the most common fields first, the rare ones make the cheapest semi-joins
+        Collections.sort(filterOnly, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2){
+                return Double.compare(fraction(stats, o2), fraction(stats, o1));
+            }
+        });
+        for(String field: filterOnly){
+            if(joins < MAX_JOINS && fraction(stats, field) > SEMI_JOIN_MAX_FRACTION){
+                strategies.put(field, Strategy.JOIN);
+                joins++;
+            } else {
+                strategies.put(field, Strategy.SEMI_JOIN);
+            }
+        }
+        return new MetajoinPlan(strategies);
+    }
+
+    private static double fraction(MetadataStatistics stats, String field){
+        return stats != null ? stats.getFraction(field) : 1.0;
+    }
+
+    /**
+     * Get the strategy for a metadata field. Fields which weren't planned are joined.
+     */
+    public Strategy getStrategy(String metaName){
+        Strategy strategy = strategies.get(metaName);
+        return strategy != null ? strategy : Strategy.JOIN;
+    }
+
+    public Map<String, Strategy> getStrategies(){
+        return Collections.unmodifiableMap(strategies);
+    }
+
+    @Override
+    public String toString(){
+        return "MetajoinPlan{" + strategies + '}';
+    }
+
+}
@@ -12,6 +12,7 @@ import org.zerorm.core.Op;
 import org.zerorm.core.Param;
 import org.zerorm.core.Select;
 import org.zerorm.core.interfaces.MaybeHasAlias;
+import org.zerorm.core.interfaces.SimpleTable;
 
 /**
  *
@@ -19,6 +20,10 @@ import org.zerorm.core.interfaces.MaybeHasAlias;
  */
 public abstract class MetajoinedStatement extends Select {
     protected HashMap<String, Select> metaJoins = new LinkedHashMap<>();
+    private MetajoinPlan joinPlan = MetajoinPlan.ALWAYS_JOIN;
+    private int semiJoins;
+    private final SelectionIndex selectionIndex = new SelectionIndex(this);
+    private final Map<String, SimpleTable> pluginJoins = new HashMap<>();
     
     public abstract Map<String, Select> getMetajoins();
 
@@ -72,11 +77,53 @@ public abstract class MetajoinedStatement extends Select {
         return ms.metaValue;
     }
     
+    public SelectionIndex getSelectionIndex(){
+        return selectionIndex;
+    }
+
+    /**
+     * Get the table a plugin joined to this statement.
+     * @param namespace Namespace of the plugin
+     * @return The joined table, or null if the plugin hasn't joined one
+     */
+    public SimpleTable getPluginJoin(String namespace){
+        return pluginJoins.get(namespace);
+    }
+
+    /**
+     * Record the table a plugin joined to this statement, so it is only joined once.
+     */
+    public void addPluginJoin(String namespace, SimpleTable table){
+        pluginJoins.put(namespace, table);
+    }
+
+    public MetajoinPlan getJoinPlan(){
+        return joinPlan;
+    }
+
+    /**
+     * Set the plan deciding which metadata fields in expressions are joined.
+     */
+    public void setJoinPlan(MetajoinPlan joinPlan){
+        this.joinPlan = joinPlan;
+    }
+
+    /**
+     * Filter on the versions with a matching value for a metadata field, without joining it.
+     * Datasets without a value for the field never match, same as with an inner join.
+     */
+    public Expr setupMetadataSemiJoin(String metaName, Class<?> type, Op tOper, Object tRight){
+        String sName = getMetanamePrefix() + "s" + semiJoins++;
+        Metatable ms = getMetatableForType( sName, type );
+        Select matching = ms.select( ms.datacatKey )
+                .where( Op.AND.apply( ms.metaName.eq( metaName ), tOper.apply( ms.metaValue, tRight ) ) );
+        return Op.IN.apply( getMetajoinColumn(), matching );
+    }
+    
     public Expr getMetadataExpression(Object tLeft, Op tOper, Object tRight){
-        for(MaybeHasAlias c: getColumns()){
-            if(c.canonical().equals( tLeft )){
-                return tOper.apply( c, tRight );
-            }
+        MaybeHasAlias c = getSelectionIndex().getSelected( tLeft.toString() );
+        if(c != null){
+            return tOper.apply( c, tRight );
         }
         
         if(tRight == null){
@@ -93,6 +140,10 @@ public abstract class MetajoinedStatement extends Select {
         }
         
         if(getMetajoins().get( tLeft ) == null){  // join not yet set up
+            // IS NULL also matches datasets without the field, which only a join can find
+            if(tOper != Op.IS_NULL && joinPlan.getStrategy( tLeft.toString() ) == MetajoinPlan.Strategy.SEMI_JOIN){
+                return setupMetadataSemiJoin( tLeft.toString(), type, tOper, p );
+            }
             return tOper.apply( setupMetadataOuterJoin(tLeft.toString(), type), p );
         }
         
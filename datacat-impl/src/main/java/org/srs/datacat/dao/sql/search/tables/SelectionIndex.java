@@ -0,0 +1,107 @@
+package org.srs.datacat.dao.sql.search.tables;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.zerorm.core.Column;
+import org.zerorm.core.Select;
+import org.zerorm.core.interfaces.MaybeHasAlias;
+
+/**
+ * Finds the selections of a statement by their canonical name, without scanning them all for
+ * every identifier. Selections are only ever added to a statement, so what's in an index stays
+ * right. Only a name which isn't in the index makes it read the statement's selections again,
+ * which happens once for each metadata field as it's joined.
+ *
+ * Like the statement, an index is only meant to be used by one search at a time.
+ *
+ * @author bvan
+ */
+public class SelectionIndex {
+
+    private final Select statement;
+    private final Index available = new Index() {
+        @Override
+        Iterable<? extends MaybeHasAlias> current(){
+            return statement.getAvailableSelections();
+        }
+    };
+    private final Index selected = new Index() {
+        @Override
+        Iterable<? extends MaybeHasAlias> current(){
+            return statement.getColumns();
+        }
+    };
+
+    public SelectionIndex(Select statement){
+        this.statement = statement;
+    }
+
+    /**
+     * Find a selection available to the statement, selected or not.
+     */
+    public MaybeHasAlias getAvailable(String ident){
+        return available.getSelection(ident);
+    }
+
+    /**
+     * Find a column available to the statement, selected or not.
+     */
+    public Column getAvailableColumn(String ident){
+        return available.getColumn(ident);
+    }
+
+    /**
+     * Find a selection of the statement.
+     */
+    public MaybeHasAlias getSelected(String ident){
+        return selected.getSelection(ident);
+    }
+
+    /**
+     * Find a selected column of the statement.
+     */
+    public Column getSelectedColumn(String ident){
+        return selected.getColumn(ident);
+    }
+
+    private abstract static class Index {
+        private final Map<String, MaybeHasAlias> selections = new HashMap<>();
+        private final Map<String, Column> columns = new HashMap<>();
+
+        abstract Iterable<? extends MaybeHasAlias> current();
+
+        MaybeHasAlias getSelection(String ident){
+            MaybeHasAlias selection = selections.get(ident);
+            if(selection == null){
+                rebuild();
+                selection = selections.get(ident);
+            }
+            return selection;
+        }
+
+        Column getColumn(String ident){
+            Column column = columns.get(ident);
+            if(column == null){
+                rebuild();
+                column = columns.get(ident);
+            }
+            return column;
+        }
+
+        private void rebuild(){
+            selections.clear();
+            columns.clear();
+            // The first selection with a name wins, as it would when scanning them
+            for(MaybeHasAlias selection: current()){
+                String name = selection.canonical();
+                if(!selections.containsKey(name)){
+                    selections.put(name, selection);
+                }
+                if(selection instanceof Column && !columns.containsKey(name)){
+                    columns.put(name, (Column) selection);
+                }
+            }
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ public class RequestView extends HashMap<String, String>{
     public static final int OBJECT = 1<<1;
     public static final int CHILDREN = 1<<2;
     public static final int METADATA = 1<<3;
+    public static final int PAGE = 1<<4;
     
     private static final String PRESENT = "";
     
@@ -65,7 +66,9 @@ public class RequestView extends HashMap<String, String>{
     }
     
     public int getPrimaryView(){
-        if(containsKey("children")){ // Highest priority
+        if("page".equalsIgnoreCase(get("view"))){ // Never combined with the others
+            return PAGE;
+        } else if(containsKey("children")){ // Highest priority
             return CHILDREN;
         } else if(containsKey("metadata")){
             return METADATA;
@@ -83,6 +86,17 @@ public class RequestView extends HashMap<String, String>{
         if(type == null){
             type = RecordType.FOLDER; // Assume to be folder in this case.
         }
+        if(params.containsKey("view")){
+            String view = params.get("view").get(0);
+            if(!"page".equalsIgnoreCase(view)){
+                throw new IllegalArgumentException("Unknown view " + view);
+            }
+            if(params.containsKey("children") || params.containsKey("metadata") 
+                    || params.containsKey("versionMetadata")){
+                throw new IllegalArgumentException("Page view not compatible with children or metadata");
+            }
+            m.put("view", "page");
+        }
         switch(type){
             case GROUP:
                 if(params.containsKey("datasets") && params.containsKey("children")){
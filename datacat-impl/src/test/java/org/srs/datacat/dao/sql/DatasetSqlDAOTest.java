@@ -5,12 +5,23 @@ import com.google.common.base.Optional;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
 import java.nio.file.NoSuchFileException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 import junit.framework.TestCase;
 
@@ -25,10 +36,16 @@ import org.srs.datacat.dao.DAOFactory;
 import org.srs.datacat.dao.sql.SqlDAOFactory.Locker;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetContainer;
+import org.srs.datacat.model.DatasetModel;
+import org.srs.datacat.model.dataset.DatasetLocationModel;
+import org.srs.datacat.model.dataset.DatasetOption;
+import org.srs.datacat.model.dataset.DatasetViewInfoModel;
+import org.srs.datacat.model.dataset.DatasetWithViewModel;
 import org.srs.datacat.model.dataset.DatasetVersionModel;
 import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.shared.Dataset;
 import org.srs.datacat.shared.DatasetVersion;
+import org.srs.datacat.shared.DatasetViewInfo;
 import org.srs.datacat.shared.LogicalFolder;
 import org.srs.datacat.shared.FlatDataset;
 import org.srs.datacat.test.DbHarness;
@@ -234,6 +251,135 @@ public class DatasetSqlDAOTest {
         
     }
     
+    @Test
+    public void testContainerPrefetch() throws SQLException, IOException {
+        // Use -Ddatacat.prefetch.datasets=100000 for a more realistic comparison
+        int count = Integer.getInteger("datacat.prefetch.datasets", 500);
+        Locker locker = new Locker();
+        SqlContainerDAO dao = new SqlContainerDAO(conn, locker);
+        DatacatNode parent = getDatacatObject(dao, DbHarness.TEST_BASE_PATH);
+        dao.createNode(parent, "prefetchFolder", new LogicalFolder.Builder().name("prefetchFolder").build());
+        DatacatNode folder = getDatacatObject(dao, DbHarness.TEST_BASE_PATH + "/prefetchFolder");
+        
+        SqlDatasetDAO dsDao = new SqlDatasetDAO(conn, locker);
+        HashSet<DatasetOption> options = new HashSet<>(Arrays.asList(DatasetOption.CREATE_NODE, 
+                DatasetOption.CREATE_VERSION, DatasetOption.SKIP_NODE_CHECK));
+        for(int i = 0; i < count; i++){
+            String name = String.format("dataset%06d", i);
+            Dataset.Builder builder = new Dataset.Builder();
+            builder.name(name);
+            builder.dataType(DbHarness.TEST_DATATYPE_01);
+            builder.fileFormat(DbHarness.TEST_FILEFORMAT_01);
+            DatasetVersion.Builder version = new DatasetVersion.Builder();
+            version.versionId(DatasetView.NEW_VER);
+            version.datasetSource(DbHarness.TEST_DATASET_SOURCE);
+            HashMap<String, Object> md = new HashMap<>();
+            md.put("fakeMetadata", "fakeString" + i);
+            md.put("fakeMetadataNumber", i);
+            md.put("fakeMetadataTime", new java.sql.Timestamp(i * 1000L));
+            version.metadata(md);
+            dsDao.createDataset(folder, name, Optional.<DatasetModel>of(builder.build()), 
+                    Optional.<DatasetViewInfoModel>of(new DatasetViewInfo(version.build(), 
+                            (DatasetLocationModel) null)), options);
+        }
+        
+        Optional<DatasetView> view = Optional.of(DatasetView.CURRENT_ALL);
+        Optional<String> after = Optional.absent();
+        for(List<String> names: Arrays.<List<String>>asList(null, Arrays.asList("fakeMetadata"), 
+                Collections.<String>emptyList())){
+            int found = 0;
+            try(DirectoryStream<DatacatNode> stream = dao.getChildrenStream(folder, view, after, -1, 
+                    Optional.fromNullable(names))) {
+                for(DatacatNode node: stream){
+                    DatasetVersionModel version = ((DatasetWithViewModel) node).getViewInfo().getVersion();
+                    Map<String, Object> md = version.getMetadataMap();
+                    int expected = names == null ? 3 : names.size();
+                    TestCase.assertEquals(node.getName(), expected, md.size());
+                    String expectedValue = "fakeString" + found;
+                    if(expected > 0){
+                        TestCase.assertEquals(expectedValue, md.get("fakeMetadata"));
+                    }
+                    found++;
+                }
+            }
+            TestCase.assertEquals(count, found);
+        }
+        
+        // Paging from a cursor starts the prefetch in the right place
+        after = Optional.of(String.format("dataset%06d", count - 3));
+        try(DirectoryStream<DatacatNode> stream = dao.getChildrenStream(folder, view, after, -1, 
+                Optional.of(Arrays.asList("fakeMetadataNumber")))) {
+            int i = count - 2;
+            for(DatacatNode node: stream){
+                Map<String, Object> md = ((DatasetWithViewModel) node).getViewInfo().getVersion().getMetadataMap();
+                TestCase.assertEquals(i++, ((Number) md.get("fakeMetadataNumber")).intValue());
+            }
+            TestCase.assertEquals(count, i);
+        }
+
+        // A page only prefetches the versions of its own datasets
+        AtomicInteger prefetched = new AtomicInteger();
+        SqlContainerDAO pagingDao = new SqlContainerDAO(countPrefetchRows(conn, prefetched), locker);
+        int start = count / 2;
+        int max = 10;
+        after = Optional.of(String.format("dataset%06d", start - 1));
+        try(DirectoryStream<DatacatNode> stream = pagingDao.getChildrenStream(folder, view, after, max, 
+                Optional.of(Arrays.asList("fakeMetadataNumber")))) {
+            int i = start;
+            for(DatacatNode node: stream){
+                Map<String, Object> md = ((DatasetWithViewModel) node).getViewInfo().getVersion().getMetadataMap();
+                TestCase.assertEquals(i++, ((Number) md.get("fakeMetadataNumber")).intValue());
+            }
+            TestCase.assertEquals(start + max, i);
+        }
+        TestCase.assertEquals(max, prefetched.get());
+    }
+
+    /**
+     * Wrap a connection to count all the rows returned by the prefetch statements, whether the 
+     * DAO reads them or not.
+     */
+    private static Connection countPrefetchRows(final Connection conn, final AtomicInteger rows){
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), 
+                new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+                        Object ret = delegate(conn, method, args);
+                        if(!"prepareStatement".equals(method.getName())){
+                            return ret;
+                        }
+                        String sql = (String) args[0];
+                        if(!sql.startsWith("SELECT dsv.dataset") && !sql.startsWith("SELECT vd.dataset")){
+                            return ret;
+                        }
+                        final PreparedStatement stmt = (PreparedStatement) ret;
+                        return Proxy.newProxyInstance(Connection.class.getClassLoader(), 
+                                new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                                    @Override
+                                    public Object invoke(Object proxy, Method method, Object[] args) 
+                                            throws Throwable{
+                                        if("executeQuery".equals(method.getName())){
+                                            try(ResultSet all = stmt.executeQuery()) {
+                                                while(all.next()){
+                                                    rows.incrementAndGet();
+                                                }
+                                            }
+                                        }
+                                        return delegate(stmt, method, args);
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable{
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+    
     private Dataset create(String path, Dataset ds) throws SQLException, IOException {
         Locker locker = new Locker();
         SqlDatasetDAO dao = new SqlDatasetDAO(conn, locker);
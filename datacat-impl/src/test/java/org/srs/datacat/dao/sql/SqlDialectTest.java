@@ -0,0 +1,51 @@
+package org.srs.datacat.dao.sql;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.srs.datacat.test.DbHarness;
+
+/**
+ *
+ * @author bvan
+ */
+public class SqlDialectTest {
+
+    @Test
+    public void testDetect() throws SQLException{
+        TestCase.assertEquals(SqlDialect.MYSQL, SqlDialect.forProductName("MySQL"));
+        TestCase.assertEquals(SqlDialect.STANDARD, SqlDialect.forProductName("HSQL Database Engine"));
+        TestCase.assertEquals(SqlDialect.STANDARD, SqlDialect.forProductName("Oracle"));
+
+        DbHarness harness = DbHarness.getDbHarness();
+        try(Connection conn = harness.getDataSource().getConnection()) {
+            String product = conn.getMetaData().getDatabaseProductName();
+            TestCase.assertEquals(SqlDialect.forProductName(product), SqlDialect.detect(conn));
+        }
+    }
+
+    @Test
+    public void testGeneratedKeys(){
+        TestCase.assertEquals(Arrays.asList("DATASET", "REGISTERED"),
+                Arrays.asList(SqlDialect.STANDARD.generatedKeys("DATASET")));
+        TestCase.assertEquals(Arrays.asList("DATASET"), Arrays.asList(SqlDialect.MYSQL.generatedKeys("DATASET")));
+    }
+
+    @Test
+    public void testChecksum() throws SQLException{
+        TestCase.assertEquals(new BigDecimal(0x3039), SqlDialect.STANDARD.checksumValue("3039"));
+        TestCase.assertEquals(new BigDecimal("18446744073709551615"),
+                SqlDialect.STANDARD.checksumValue("ffffffffffffffff"));
+        TestCase.assertEquals(0x3039L, SqlDialect.MYSQL.checksumValue("3039"));
+        try {
+            SqlDialect.MYSQL.checksumValue("ffffffffffffffff");
+            TestCase.fail("A checksum larger than a bigint should fail");
+        } catch(SQLException ex) {
+            // Expected
+        }
+    }
+
+}
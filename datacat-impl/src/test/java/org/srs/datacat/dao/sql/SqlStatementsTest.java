@@ -0,0 +1,85 @@
+package org.srs.datacat.dao.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import junit.framework.TestCase;
+import org.apache.commons.dbcp2.DelegatingConnection;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.srs.datacat.test.DbHarness;
+
+/**
+ *
+ * @author bvan
+ */
+public class SqlStatementsTest {
+
+    static final int ITERATIONS = 100;
+    static DbHarness harness;
+
+    @BeforeClass
+    public static void setUpDb() throws SQLException{
+        harness = DbHarness.getDbHarness();
+    }
+
+    @Test
+    public void testCatalog(){
+        String sql = SqlStatements.selectMetadata("VerDataset", "Number", "DatasetVersion");
+        TestCase.assertEquals("select Metaname, Metavalue from VerDatasetMetaNumber where DatasetVersion = ?", sql);
+        TestCase.assertSame(sql, SqlStatements.selectMetadata("VerDataset", "Number", "DatasetVersion"));
+
+        sql = SqlStatements.updateColumn("DatasetVersion", "DatasetSource", "DatasetVersion");
+        TestCase.assertEquals("UPDATE DatasetVersion SET DatasetSource=? WHERE DatasetVersion = ?", sql);
+        TestCase.assertSame(sql, SqlStatements.updateColumn("DatasetVersion", "DatasetSource", "DatasetVersion"));
+        TestCase.assertEquals("UPDATE DatasetGroup SET ACL = ? WHERE DatasetGroup = ?",
+                SqlStatements.updateAcl("DatasetGroup"));
+    }
+
+    /**
+     * Statements prepared each time from the statement cache of the pool return the same rows as
+     * statements prepared by the driver, and as one statement prepared once.
+     */
+    @Test
+    public void testPreparedStatementCache() throws SQLException{
+        DataSource ds = harness.getDataSource();
+        String sql = SqlStatements.selectMetadata("VerDataset", "String", "DatasetVersion");
+        try(Connection conn = ds.getConnection()) {
+            Connection raw = ((DelegatingConnection<?>) conn).getInnermostDelegate();
+            TestCase.assertNotNull("Unable to reach the driver connection", raw);
+            long rows = prepareEach(raw, sql, ITERATIONS);
+            TestCase.assertEquals(rows, prepareEach(conn, sql, ITERATIONS));
+            try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+                long onceRows = 0;
+                for(int i = 0; i < ITERATIONS; i++){
+                    onceRows += execute(stmt, i);
+                }
+                TestCase.assertEquals(rows, onceRows);
+            }
+        }
+    }
+
+    private static long prepareEach(Connection conn, String sql, int iterations) throws SQLException{
+        long rows = 0;
+        for(int i = 0; i < iterations; i++){
+            try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+                rows += execute(stmt, i);
+            }
+        }
+        return rows;
+    }
+
+    private static long execute(PreparedStatement stmt, long pk) throws SQLException{
+        long rows = 0;
+        stmt.setLong(1, pk);
+        try(ResultSet rs = stmt.executeQuery()) {
+            while(rs.next()){
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+}
@@ -2,17 +2,26 @@
 package org.srs.datacat.dao.sql.search;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 import junit.framework.TestCase;
 import org.junit.BeforeClass;
@@ -20,12 +29,20 @@ import org.junit.Test;
 import org.srs.datacat.dao.DAOFactory;
 import org.srs.datacat.dao.DAOTestUtils;
 import org.srs.datacat.dao.sql.mysql.DAOFactoryMySQL;
+import org.srs.datacat.metrics.Metrics;
 import org.srs.datacat.model.DatacatNode;
+import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.dao.sql.search.plugins.DatacatPlugin;
+import org.srs.datacat.dao.sql.search.plugins.EXODatacatSearchPlugin;
+import org.srs.datacat.dao.sql.search.tables.MetajoinPlan;
+import org.srs.datacat.model.security.CallContext;
+import org.srs.datacat.model.security.DcGroup;
+import org.srs.datacat.model.security.DcUser;
 import org.srs.datacat.shared.Provider;
 import org.srs.datacat.test.DbHarness;
+import org.zerorm.core.Select;
 
 /**
  *
@@ -288,6 +305,241 @@ public class DatacatSearchTest {
         }
     }
 
+    @Test
+    public void testMetadataJoinPlan() throws Exception{
+        HashMap<String, Long> rowCounts = new HashMap<>();
+        rowCounts.put("a", 1000L);
+        rowCounts.put("b", 10L);
+        rowCounts.put("c", 900L);
+        rowCounts.put("d", 1000L);
+        rowCounts.put("e", 800L);
+        MetadataStatistics stats = new MetadataStatistics(1000, rowCounts);
+        MetajoinPlan plan = MetajoinPlan.plan(Arrays.asList("a", "b", "c", "d", "e"), Arrays.asList("d"), stats);
+        // d is retrieved, a is common, b is rare, and c and e are over the join budget
+        TestCase.assertEquals(MetajoinPlan.Strategy.JOIN, plan.getStrategy("d"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.JOIN, plan.getStrategy("a"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.SEMI_JOIN, plan.getStrategy("b"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.SEMI_JOIN, plan.getStrategy("c"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.SEMI_JOIN, plan.getStrategy("e"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.JOIN, plan.getStrategy("unplanned"));
+
+        // Without statistics, filter fields are joined up to the budget
+        plan = MetajoinPlan.plan(Arrays.asList("a", "b", "c"), Collections.<String>emptyList(), null);
+        TestCase.assertEquals(MetajoinPlan.Strategy.JOIN, plan.getStrategy("a"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.JOIN, plan.getStrategy("b"));
+        TestCase.assertEquals(MetajoinPlan.Strategy.SEMI_JOIN, plan.getStrategy("c"));
+    }
+
+    @Test
+    public void testMetadataStatisticsLoader() throws Exception{
+        MetadataStatistics.Loader loader = new MetadataStatistics.Loader(ds);
+        // The first search doesn't wait, the statistics are loaded in the background
+        MetadataStatistics stats = loader.get();
+        for(int i = 0; stats == null && i < 100; i++){
+            Thread.sleep(50);
+            stats = loader.get();
+        }
+        TestCase.assertNotNull("Statistics weren't loaded", stats);
+        TestCase.assertTrue(stats.getVersions() > 0);
+        TestCase.assertTrue(stats.getRowCount("num") > 0);
+        // They are kept until they are too old
+        TestCase.assertSame(stats, loader.get());
+    }
+
+    @Test
+    public void testMetadataJoinExplain() throws Exception{
+        LinkedList<DatacatNode> containers = Lists.newLinkedList(DAOTestUtils.getContainers(factory));
+        String queryString = "num == 0 and alpha == 'def'";
+        // Both fields are set on every dataset, so they are joined
+        MetadataStatistics common = new MetadataStatistics(20000, ImmutableMap.of("num", 20000L, "alpha", 20000L));
+        // Both fields look rare, so they are semi-joined
+        MetadataStatistics rare = new MetadataStatistics(20000, ImmutableMap.of("num", 10L, "alpha", 10L));
+
+        try(Connection conn = ds.getConnection()) {
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            datacatSearch.setMetadataStatistics(common);
+            Select joined = datacatSearch.compileStatement(getStream(containers), DatasetView.CURRENT_ALL,
+                    Optional.of(queryString), Optional.<String[]>absent(), Optional.<String[]>absent());
+            String joinedPlan = explain(conn, joined);
+            TestCase.assertEquals(1250, countResults());
+            conn.commit();
+
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            datacatSearch.setMetadataStatistics(rare);
+            Select semiJoined = datacatSearch.compileStatement(getStream(containers), DatasetView.CURRENT_ALL,
+                    Optional.of(queryString), Optional.<String[]>absent(), Optional.<String[]>absent());
+            String semiJoinedPlan = explain(conn, semiJoined);
+            TestCase.assertEquals(1250, countResults());
+            conn.commit();
+
+            TestCase.assertTrue(joined.formatted().contains("dsmv0"));
+            TestCase.assertFalse(semiJoined.formatted().contains("dsmv0"));
+            TestCase.assertTrue(semiJoined.formatted().contains("dsmvs0"));
+            TestCase.assertFalse("Plans should differ", joinedPlan.equals(semiJoinedPlan));
+        }
+    }
+
+    @Test
+    public void testAggregate() throws Exception{
+        LinkedList<DatacatNode> containers = Lists.newLinkedList(DAOTestUtils.getContainers(factory));
+        try(Connection conn = ds.getConnection()) {
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            List<Map<String, Object>> rows = datacatSearch.aggregate(getStream(containers), DatasetView.MASTER,
+                    "num == 0 and alpha == 'def'", null, new String[]{"count", "min(num)", "max(num)"}, null);
+            conn.commit();
+            TestCase.assertEquals(1, rows.size());
+            TestCase.assertEquals(1250, ((Number) rows.get(0).get("count")).intValue());
+            TestCase.assertEquals(0, ((Number) rows.get(0).get("min(num)")).intValue());
+            TestCase.assertEquals(0, ((Number) rows.get(0).get("max(num)")).intValue());
+
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            rows = datacatSearch.aggregate(getStream(containers), DatasetView.MASTER,
+                    "num == 0", null, new String[]{"count"}, null);
+            conn.commit();
+            int expected = ((Number) rows.get(0).get("count")).intValue();
+
+            // The groups add up to the total
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            rows = datacatSearch.aggregate(getStream(containers), DatasetView.MASTER,
+                    "num == 0", new String[]{"alpha"}, new String[]{"count(*)", "sum(size)"}, null);
+            conn.commit();
+            int total = 0;
+            for(Map<String, Object> row: rows){
+                TestCase.assertTrue(row.containsKey("alpha"));
+                TestCase.assertTrue(row.containsKey("sum(size)"));
+                total += ((Number) row.get("count(*)")).intValue();
+            }
+            TestCase.assertFalse(rows.isEmpty());
+            TestCase.assertEquals(expected, total);
+        }
+
+        try {
+            Aggregate.parse("sum");
+            TestCase.fail("Sum needs a field");
+        } catch(IllegalArgumentException ex) { }
+        try {
+            Aggregate.parse("median(num)");
+            TestCase.fail("Unknown function");
+        } catch(IllegalArgumentException ex) { }
+    }
+
+    @Test
+    public void testFacets() throws Exception{
+        LinkedList<DatacatNode> containers = Lists.newLinkedList(DAOTestUtils.getContainers(factory));
+        try(Connection conn = ds.getConnection()) {
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            List<Map<String, Object>> groups = datacatSearch.aggregate(getStream(containers), DatasetView.MASTER,
+                    "num == 0", new String[]{"alpha"}, new String[]{"count"}, null);
+            conn.commit();
+            HashMap<Object, Integer> expected = new HashMap<>();
+            for(Map<String, Object> group: groups){
+                if(group.get("alpha") != null){
+                    expected.put(group.get("alpha"), ((Number) group.get("count")).intValue());
+                }
+            }
+
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            Map<String, List<Map<String, Object>>> facets = datacatSearch.facets(getStream(containers),
+                    DatasetView.MASTER, "num == 0", new String[]{"alpha", "num"}, 0, null);
+            conn.commit();
+            List<Map<String, Object>> alpha = facets.get("alpha");
+            TestCase.assertEquals(expected.size(), alpha.size());
+            int last = Integer.MAX_VALUE;
+            for(Map<String, Object> value: alpha){
+                int count = ((Number) value.get("count")).intValue();
+                TestCase.assertEquals(expected.get(value.get("value")).intValue(), count);
+                TestCase.assertTrue("Most common values first", count <= last);
+                last = count;
+            }
+            TestCase.assertEquals(1, facets.get("num").size());
+            TestCase.assertEquals(0, ((Number) facets.get("num").get(0).get("value")).intValue());
+
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            facets = datacatSearch.facets(getStream(containers), DatasetView.MASTER, "num == 0",
+                    new String[]{"alpha"}, 1, null);
+            conn.commit();
+            TestCase.assertEquals(1, facets.get("alpha").size());
+            TestCase.assertEquals(alpha.get(0).get("count"), facets.get("alpha").get(0).get("count"));
+        }
+    }
+
+    @Test
+    public void testContainerSearchSort() throws Exception{
+        List<DatacatNode> containers = DAOTestUtils.getContainers(factory);
+        List<String> names = new ArrayList<>();
+        try(Connection conn = ds.getConnection()) {
+            ContainerSearch search = new ContainerSearch(conn, new Provider());
+            try(DirectoryStream<DatasetContainer> stream = search.search(getStream(containers), null, null, null)) {
+                for(DatasetContainer container: stream){
+                    names.add(container.getName());
+                }
+            }
+            conn.commit();
+            TestCase.assertTrue(names.size() > 3);
+            Collections.sort(names, Collections.reverseOrder());
+
+            // The database sorts and limits the results
+            List<String> found = new ArrayList<>();
+            search = new ContainerSearch(conn, new Provider());
+            try(DirectoryStream<DatasetContainer> stream = search.search(getStream(containers), null, null,
+                    new String[]{"-name"}, 3, null)) {
+                for(DatasetContainer container: stream){
+                    found.add(container.getName());
+                }
+            }
+            conn.commit();
+            TestCase.assertEquals(names.subList(0, 3), found);
+        }
+    }
+
+    @Test
+    public void testSharedPlugins() throws Exception{
+        Class<? extends DatacatPlugin>[] exo = new Class[]{EXODatacatSearchPlugin.class};
+        DatacatPlugin plugin = DatacatSearchContext.PluginScope.getInstance(EXODatacatSearchPlugin.class);
+        TestCase.assertSame(plugin, DatacatSearchContext.PluginScope.getInstance(EXODatacatSearchPlugin.class));
+
+        // Searches sharing the plugin compile the same statement
+        String queryString = "(alpha == 'def' or alpha =~ 'gh*') and num in (0, 3.14159f) "
+                + "and size > 0 and resource =~ '/nfs/*' and exo.runQuality == 'GOOD' and exo.runId > 10";
+        String[] sortFields = {"num", "-size"};
+        try(Connection conn = ds.getConnection()) {
+            String first = null;
+            for(int i = 0; i < 2; i++){
+                datacatSearch = new DatasetSearch(conn, new Provider(), exo);
+                String sql = datacatSearch.compileStatement(getStream(Collections.<DatacatNode>emptyList()),
+                        DatasetView.CURRENT_ALL, Optional.of(queryString), Optional.<String[]>absent(),
+                        Optional.of(sortFields)).formatted();
+                if(first == null){
+                    first = sql;
+                }
+                TestCase.assertEquals(first, sql);
+            }
+            conn.commit();
+        }
+    }
+
+    private static String explain(Connection conn, Select statement) throws SQLException{
+        StringBuilder plan = new StringBuilder();
+        try(PreparedStatement stmt = conn.prepareStatement("EXPLAIN PLAN FOR " + statement.formatted())) {
+            ResultSet rs = stmt.executeQuery();
+            while(rs.next()){
+                plan.append(rs.getString(1)).append('\n');
+            }
+        }
+        TestCase.assertTrue("Missing plan", plan.length() > 0);
+        return plan.toString();
+    }
+
+    private int countResults() throws IOException{
+        int count = 0;
+        try(DirectoryStream<DatasetModel> stream = datacatSearch.retrieveDatasets()) {
+            for(DatasetModel dataset: stream){
+                count++;
+            }
+        }
+        return count;
+    }
+
     @Test
     public void testErrorString() throws Exception {
         List<DatacatNode> folders = DAOTestUtils.getFolders(factory, 20);
@@ -328,4 +580,51 @@ public class DatacatSearchTest {
         };
     }
     
+
+    @Test
+    public void testAbortedSearch() throws Exception{
+        List<DatacatNode> folders = DAOTestUtils.getFolders(factory, 20);
+        long aborted = Metrics.counter(SearchUtils.ABORTED_METRIC).get();
+        
+        // Deadline has already passed
+        CallContext context = new CallContext(DcUser.PUBLIC_USER, 
+                new HashSet<>(Arrays.asList(DcGroup.PUBLIC_GROUP)));
+        context.setDeadline(-1, TimeUnit.SECONDS);
+        try(Connection conn = ds.getConnection()) {
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            try {
+                datacatSearch.search(getStream(Lists.newLinkedList(folders)), DatasetView.CURRENT_ALL, 
+                        "alpha == 'def'", null, null, context);
+                TestCase.fail("Search should have been aborted");
+            } catch(IOException ex) {
+                TestCase.assertTrue(ex.getCause() instanceof SQLTimeoutException);
+            }
+            conn.commit();
+        }
+        TestCase.assertEquals(aborted + 1, Metrics.counter(SearchUtils.ABORTED_METRIC).get());
+        
+        // Cancelled while reading results
+        context = new CallContext(DcUser.PUBLIC_USER, new HashSet<>(Arrays.asList(DcGroup.PUBLIC_GROUP)));
+        context.setDeadline(1, TimeUnit.MINUTES);
+        try(Connection conn = ds.getConnection()) {
+            datacatSearch = new DatasetSearch(conn, new Provider(), plugins);
+            try(DirectoryStream<DatasetModel> stream = datacatSearch.search(
+                    getStream(Lists.newLinkedList(folders)), DatasetView.CURRENT_ALL, 
+                    "alpha == 'def'", null, null, context)) {
+                Iterator<DatasetModel> iter = stream.iterator();
+                TestCase.assertTrue(iter.hasNext());
+                iter.next();
+                TestCase.assertTrue(context.cancel());
+                TestCase.assertFalse("Already cancelled", context.cancel());
+                try {
+                    iter.hasNext();
+                    TestCase.fail("Reading results should stop after the call is cancelled");
+                } catch(IllegalStateException ex) {
+                    // expected
+                }
+            }
+            conn.commit();
+        }
+        TestCase.assertEquals(aborted + 2, Metrics.counter(SearchUtils.ABORTED_METRIC).get());
+    }
 }
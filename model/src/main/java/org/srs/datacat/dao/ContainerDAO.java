@@ -4,6 +4,7 @@ package org.srs.datacat.dao;
 import com.google.common.base.Optional;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
+import java.util.Collection;
 import org.srs.datacat.model.container.ContainerStat;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatacatRecord;
@@ -18,6 +19,32 @@ public interface ContainerDAO extends BaseDAO {
 
     DirectoryStream<DatacatNode> getChildrenStream(DatacatRecord parent, 
             Optional<DatasetView> viewPrefetch) throws IOException;
+
+    /**
+     * Get a page of children, ordered by name.
+     * @param parent Parent container
+     * @param viewPrefetch View of datasets to prefetch, if any.
+     * @param after If present, only children whose name sorts after this name are returned.
+     * @param max Maximum number of children to return. If less than 1, all children are returned.
+     * @return A stream of the children
+     * @throws IOException 
+     */
+    DirectoryStream<DatacatNode> getChildrenStream(DatacatRecord parent, 
+            Optional<DatasetView> viewPrefetch, Optional<String> after, int max) throws IOException;
+    
+    /**
+     * Get a page of children, ordered by name, prefetching only some of the datasets' metadata.
+     * @param parent Parent container
+     * @param viewPrefetch View of datasets to prefetch, if any.
+     * @param after If present, only children whose name sorts after this name are returned.
+     * @param max Maximum number of children to return. If less than 1, all children are returned.
+     * @param metanames If present, only metadata with these names is retrieved with the datasets.
+     * @return A stream of the children
+     * @throws IOException 
+     */
+    DirectoryStream<DatacatNode> getChildrenStream(DatacatRecord parent, 
+            Optional<DatasetView> viewPrefetch, Optional<String> after, int max,
+            Optional<? extends Collection<String>> metanames) throws IOException;
     
     <V extends ContainerStat> V getStat(DatacatRecord container, Class<V> statType) throws IOException;
 
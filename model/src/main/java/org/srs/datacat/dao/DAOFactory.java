@@ -16,5 +16,31 @@ public interface DAOFactory {
     DatasetDAO newDatasetDAO() throws IOException;
     
     SearchDAO newSearchDAO(Object... plugins) throws IOException;
+
+    /**
+     * Get a SearchDAO which may read from a replica of the data source. A replica can lag behind
+     * writes made by other callers, so nothing it returns may be kept in a cache shared with
+     * other callers. Use {@link #newSearchDAO} for those.
+     */
+    SearchDAO newReadOnlySearchDAO(Object... plugins) throws IOException;
+
+    /**
+     * Begin a unit of work on the calling thread. Every DAO created on the thread until the
+     * unit is closed shares one connection.
+     * 
+     * @return The unit of work, which must be closed on the same thread
+     * @throws IOException An exception occurred talking to the data source.
+     */
+    UnitOfWork beginUnitOfWork() throws IOException;
+
+    /**
+     * Begin a unit of work for a caller. After the caller writes, their reads see their writes
+     * even when reads go to a replica.
+     * 
+     * @param caller Name of the caller, or null
+     * @return The unit of work, which must be closed on the same thread
+     * @throws IOException An exception occurred talking to the data source.
+     */
+    UnitOfWork beginUnitOfWork(String caller) throws IOException;
     
 }
@@ -4,10 +4,13 @@ package org.srs.datacat.dao;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.DatasetView;
+import org.srs.datacat.model.security.CallContext;
 
 /**
  * A DAO object for searching datasets and containers.
@@ -29,6 +32,59 @@ public interface SearchDAO extends BaseDAO {
     DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers, DatasetView datasetView, 
             String query, String[] metaFieldsToRetrieve, String[] sortFields) throws ParseException, IOException;
     
+    /**
+     * Search containers for datasets, within the deadline of the call context. The underlying 
+     * statement is cancelled if the call is cancelled.
+     * @param containers List of Containers to search for datasets in.
+     * @param datasetView Requested view of datasets to be returned.
+     * @param query String to be parsed by underlying search mechanism.
+     * @param metaFieldsToRetrieve A list of fields to return as metadata, or null for none.
+     * @param sortFields A list of fields to sort by, or null.
+     * @param context Context of the call, or null.
+     * @return Stream of datasets from the search
+     * @throws ParseException The parser failed to parse the query.
+     * @throws IOException An exception occurred performing the operation or talking to the data source.
+     */
+    DirectoryStream<DatasetModel> search(DirectoryStream<DatacatNode> containers, DatasetView datasetView, 
+            String query, String[] metaFieldsToRetrieve, String[] sortFields, 
+            CallContext context) throws ParseException, IOException;
+    
+    /**
+     * Aggregate the datasets in containers matching a query, within the deadline of the call 
+     * context. Only the aggregated rows are returned.
+     * @param containers List of Containers to search for datasets in.
+     * @param datasetView View of the datasets to aggregate.
+     * @param query String to be parsed by underlying search mechanism.
+     * @param groupBy Fields to group by, or null for a single row.
+     * @param aggregates Aggregates to compute, as in {@code count} or {@code sum(fileSizeBytes)}. 
+     * {@code count}, {@code sum}, {@code min}, {@code max} and {@code avg} are supported.
+     * @param context Context of the call, or null.
+     * @return A row for each distinct combination of the group by fields, mapping each group by 
+     * field and aggregate to its value.
+     * @throws ParseException The parser failed to parse the query.
+     * @throws IOException An exception occurred performing the operation or talking to the data source.
+     */
+    List<Map<String, Object>> aggregate(DirectoryStream<DatacatNode> containers, DatasetView datasetView, 
+            String query, String[] groupBy, String[] aggregates, 
+            CallContext context) throws ParseException, IOException;
+    
+    /**
+     * Count the distinct values of fields over the datasets in containers matching a query, 
+     * within the deadline of the call context.
+     * @param containers List of Containers to search for datasets in.
+     * @param datasetView View of the datasets.
+     * @param query String to be parsed by underlying search mechanism.
+     * @param fields Fields and metadata fields to count the values of.
+     * @param limit Maximum number of values to return for each field, or 0 for all of them.
+     * @param context Context of the call, or null.
+     * @return For each field, its most common values first, each a map with a "value" and a "count".
+     * @throws ParseException The parser failed to parse the query.
+     * @throws IOException An exception occurred performing the operation or talking to the data source.
+     */
+    Map<String, List<Map<String, Object>>> facets(DirectoryStream<DatacatNode> containers, 
+            DatasetView datasetView, String query, String[] fields, int limit, 
+            CallContext context) throws ParseException, IOException;
+    
     /**
      * Search containers for containers.
      * @param containers List of Containers to find child containers in
@@ -42,4 +98,36 @@ public interface SearchDAO extends BaseDAO {
     DirectoryStream<DatasetContainer> searchContainers(DirectoryStream<DatacatNode> containers, 
             String query, String[] metaFieldsToRetrieve, String[] sortFields) throws ParseException, IOException;
     
+    /**
+     * Search containers for containers, within the deadline of the call context.
+     * @param containers List of Containers to find child containers in
+     * @param query String to be parsed by underlying search mechanism.
+     * @param metaFieldsToRetrieve A list of fields to return as metadata, or null for none.
+     * @param sortFields A list of fields to sort by, or null.
+     * @param context Context of the call, or null.
+     * @return Stream of containers from the search
+     * @throws ParseException The parser failed to parse the query.
+     * @throws IOException An exception occurred performing the operation or talking to the data source.
+     */
+    DirectoryStream<DatasetContainer> searchContainers(DirectoryStream<DatacatNode> containers, 
+            String query, String[] metaFieldsToRetrieve, String[] sortFields, 
+            CallContext context) throws ParseException, IOException;
+    
+    /**
+     * Search containers for containers, within the deadline of the call context. The sort and the 
+     * limit are applied by the underlying search mechanism.
+     * @param containers List of Containers to find child containers in
+     * @param query String to be parsed by underlying search mechanism.
+     * @param metaFieldsToRetrieve A list of fields to return as metadata, or null for none.
+     * @param sortFields A list of fields to sort by, or null.
+     * @param maxResults Maximum number of containers to return, or 0 for all of them.
+     * @param context Context of the call, or null.
+     * @return Stream of containers from the search
+     * @throws ParseException The parser failed to parse the query.
+     * @throws IOException An exception occurred performing the operation or talking to the data source.
+     */
+    DirectoryStream<DatasetContainer> searchContainers(DirectoryStream<DatacatNode> containers, 
+            String query, String[] metaFieldsToRetrieve, String[] sortFields, int maxResults,
+            CallContext context) throws ParseException, IOException;
+    
 }
@@ -0,0 +1,18 @@
+package org.srs.datacat.dao;
+
+import java.io.IOException;
+
+/**
+ * A unit of work, such as a request. While it is open, the DAOs created on its thread share one
+ * connection to the data source, instead of borrowing a connection each.
+ *
+ * Units of work nest. Only closing the outermost unit releases the connection, and only after
+ * every DAO created in it is closed.
+ * @author bvan
+ */
+public interface UnitOfWork extends AutoCloseable {
+
+    @Override
+    void close() throws IOException;
+
+}
@@ -0,0 +1,78 @@
+package org.srs.datacat.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal registry of named counters and gauges for operational statistics.
+ * Names are dot-separated, i.e. {@code rest.workload.search.rejected}.
+ *
+ * @author bvan
+ */
+public final class Metrics {
+
+    /**
+     * A value which is computed when it's read.
+     */
+    public interface Gauge {
+        long value();
+    }
+
+    private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+
+    private Metrics(){ }
+
+    /**
+     * Get a counter, creating it if it doesn't exist.
+     * @param name Name of the counter
+     * @return The counter
+     */
+    public static AtomicLong counter(String name){
+        AtomicLong counter = COUNTERS.get(name);
+        if(counter == null){
+            AtomicLong newCounter = new AtomicLong();
+            counter = COUNTERS.putIfAbsent(name, newCounter);
+            if(counter == null){
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Register a gauge. This replaces any gauge previously registered with the same name.
+     * @param name Name of the gauge
+     * @param gauge The gauge
+     */
+    public static void gauge(String name, Gauge gauge){
+        GAUGES.put(name, gauge);
+    }
+
+    /**
+     * Remove a gauge, if it's the one registered under that name.
+     */
+    public static void removeGauge(String name, Gauge gauge){
+        GAUGES.remove(name, gauge);
+    }
+
+    /**
+     * Get the current value of all counters and gauges.
+     * @return A map of names to values, sorted by name
+     */
+    public static SortedMap<String, Long> snapshot(){
+        TreeMap<String, Long> ret = new TreeMap<>();
+        for(Map.Entry<String, AtomicLong> e: COUNTERS.entrySet()){
+            ret.put(e.getKey(), e.getValue().get());
+        }
+        for(Map.Entry<String, Gauge> e: GAUGES.entrySet()){
+            ret.put(e.getKey(), e.getValue().value());
+        }
+        return ret;
+    }
+
+}
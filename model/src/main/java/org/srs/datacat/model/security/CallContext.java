@@ -1,17 +1,35 @@
-
 package org.srs.datacat.model.security;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A CallContext object is used for verification of filesystem operations.
  * It includes the user who initiated the call into the provider, and the user's groups.
+ * 
+ * A CallContext may also carry a deadline. Long running operations, like searches, should
+ * apply the remaining time to their statements and register a {@link Cancellable} so they can
+ * be stopped if the call is cancelled (i.e. the client went away).
  * @author bvan
  */
 public class CallContext {
     
+    /**
+     * An operation in progress which can be stopped.
+     */
+    public interface Cancellable {
+        void cancel();
+    }
+    
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+    
     private final DcUser subject;
     private final Set<DcGroup> groups;
+    private volatile long deadline = NO_DEADLINE;
+    private volatile boolean cancelled = false;
+    private final List<Cancellable> cancellables = new ArrayList<>();
 
     public CallContext(DcUser subject, Set<DcGroup> groups){
         this.subject = subject;
@@ -25,5 +43,83 @@ public class CallContext {
     public Set<DcGroup> getGroups(){
         return groups;
     }
+    
+    /**
+     * Set the deadline for this call.
+     * @param timeout Time from now
+     * @param unit Unit of timeout
+     */
+    public void setDeadline(long timeout, TimeUnit unit){
+        this.deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+    }
+
+    /**
+     * @return The deadline, in milliseconds since the epoch, or {@link #NO_DEADLINE}
+     */
+    public long getDeadline(){
+        return deadline;
+    }
+    
+    public boolean hasDeadline(){
+        return deadline != NO_DEADLINE;
+    }
+    
+    /**
+     * @return Milliseconds until the deadline, which may be negative if it has passed.
+     */
+    public long getRemainingMillis(){
+        return hasDeadline() ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+    }
+    
+    /**
+     * @return true if the call was cancelled or the deadline has passed.
+     */
+    public boolean isAborted(){
+        return cancelled || getRemainingMillis() <= 0;
+    }
+    
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Register an operation to be cancelled with this call. If the call was already cancelled,
+     * the operation is cancelled immediately.
+     */
+    public void addCancellable(Cancellable cancellable){
+        synchronized(cancellables){
+            if(!cancelled){
+                cancellables.add(cancellable);
+                return;
+            }
+        }
+        cancellable.cancel();
+    }
+
+    public void removeCancellable(Cancellable cancellable){
+        synchronized(cancellables){
+            cancellables.remove(cancellable);
+        }
+    }
+    
+    /**
+     * Cancel the call, and all operations registered with it.
+     * @return false if the call had already been cancelled.
+     */
+    public boolean cancel(){
+        List<Cancellable> toCancel;
+        synchronized(cancellables){
+            if(cancelled){
+                return false;
+            }
+            cancelled = true;
+            toCancel = new ArrayList<>(cancellables);
+            cancellables.clear();
+        }
+        for(Cancellable c: toCancel){
+            c.cancel();
+        }
+        return true;
+    }
 
 }
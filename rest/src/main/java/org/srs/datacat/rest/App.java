@@ -6,7 +6,7 @@ import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 import org.srs.datacat.dao.DAOFactory;
-import org.srs.datacat.dao.sql.mysql.DAOFactoryMySQL;
+import org.srs.datacat.dao.sql.SqlDAOFactory;
 import org.srs.datacat.model.ModelProvider;
 import org.srs.datacat.security.DcUserLookupService;
 import org.srs.datacat.shared.Provider;
@@ -16,6 +16,7 @@ import org.srs.datacat.dao.sql.search.plugins.LsstFilesSearchPlugin;
 import org.srs.datacat.dao.sql.search.plugins.LsstKVSearchPlugin;
 import org.srs.datacat.dao.sql.search.plugins.LsstPositionsSearchPlugin;
 import org.srs.datacat.rest.Binders.*;
+import org.srs.datacat.rest.resources.SearchResource;
 
 /**
  *
@@ -25,11 +26,27 @@ public class App extends ResourceConfig {
     private static boolean classesLoaded = false;
     public DcFileSystemProvider fsProvider;
     private DataSource dataSource;
+    private DataSource readDataSource;
     private DcUserLookupService lookup;
 
     public App(DataSource dataSource, ModelProvider modelProvider, DcUserLookupService lookupService){
+        this(dataSource, null, modelProvider, lookupService);
+    }
+
+    /**
+     * Create the application with a read replica. Searches whose results aren't cached read from
+     * the replica. Lookups, which are cached, cached searches, and writes use the primary data
+     * source.
+     * @param dataSource Data source of the primary database
+     * @param readDataSource Data source of a replica, or null to read from the primary
+     * @param modelProvider The model provider
+     * @param lookupService Service to look up users and groups
+     */
+    public App(DataSource dataSource, DataSource readDataSource, ModelProvider modelProvider,
+            DcUserLookupService lookupService){
         super();
         this.dataSource = dataSource;
+        this.readDataSource = readDataSource;
         this.lookup = lookupService;
         registerInstances(new Reloader());
         init();
@@ -38,7 +55,7 @@ public class App extends ResourceConfig {
     private void init(){
         ModelProvider modelProvider;
         try {
-            DAOFactory factory = new DAOFactoryMySQL(dataSource);
+            DAOFactory factory = new SqlDAOFactory(dataSource, readDataSource);
             modelProvider = new Provider();
             fsProvider = new DcFileSystemProvider(factory, modelProvider);
         } catch(IOException ex) {
@@ -50,6 +67,9 @@ public class App extends ResourceConfig {
         register(ErrorResponse.ErrorTextProvider.class);
         register(DatacatObjectTextProvider.class);
         register(JacksonExceptionMapper.class);
+        register(CompressionInterceptor.class);
+        register(WorkloadExecutors.WorkloadFeature.class);
+        register(new SearchResource.SearchCacheFeature(fsProvider));
         initPlugins();
     }
 
@@ -1,6 +1,7 @@
 
 package org.srs.datacat.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.security.Principal;
@@ -12,16 +13,27 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
+import org.glassfish.jersey.process.internal.RequestScope;
+import org.srs.datacat.dao.UnitOfWork;
 import org.srs.datacat.model.security.CallContext;
 import org.srs.datacat.model.security.DcGroup;
 import org.srs.datacat.model.security.DcUser;
+import org.srs.datacat.rest.WorkloadExecutors.Workload;
 import org.srs.datacat.security.DcUserLookupService;
 import org.srs.datacat.vfs.DcFileSystemProvider;
 
@@ -36,9 +48,13 @@ public class BaseResource {
     @Context SecurityContext securityContext;
     @Context HttpServletRequest request;
     @Context HttpServletResponse response;
+    @Context Providers providers;
     @Inject DcFileSystemProvider provider;
     @Inject DcUserLookupService lookupService;
     @Inject DataSource dataSource;
+    @Inject WorkloadExecutors workloadExecutors;
+    @Inject RequestScope requestScope;
+    private CallContext callContext;
 
     public Connection getConnection() throws SQLException {
         return dataSource.getConnection();
@@ -48,6 +64,17 @@ public class BaseResource {
         return this.provider;
     }
     
+    /**
+     * The mapper responses are written to JSON with.
+     * @param type The type to write
+     * @return The mapper, or null if there isn't one
+     */
+    protected ObjectMapper getJsonMapper(Class<?> type){
+        ContextResolver<ObjectMapper> resolver =
+                providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+        return resolver != null ? resolver.getContext(type) : null;
+    }
+    
     public <T> List<T> paginateList( List<T> list, int offset, int max){
         if(offset > 0){
             if(offset > list.size()){
@@ -88,9 +115,29 @@ public class BaseResource {
     }
     
     private String getLink(String bURL, Map<String, String[]> reqParams, int iOffset, String rel){
+        return getLink(bURL, reqParams, "offset", Integer.toString(iOffset), rel);
+    }
+    
+    /**
+     * Build a link to the current request, replacing a query parameter.
+     * @param uriInfo Information about the current request
+     * @param param Query parameter to replace
+     * @param value New value of the query parameter
+     * @param rel Link relation
+     */
+    protected String getLink(UriInfo uriInfo, String param, String value, String rel){
+        HashMap<String, String[]> reqParams = new HashMap<>();
+        for(Entry<String, List<String>> e: uriInfo.getQueryParameters().entrySet()){
+            reqParams.put(e.getKey(), e.getValue().toArray(new String[0]));
+        }
+        return getLink(uriInfo.getAbsolutePath().toString(), reqParams, param, value, rel);
+    }
+    
+    private String getLink(String bURL, Map<String, String[]> reqParams, String param, String value, 
+            String rel){
         HashMap<String, String[]> params = new HashMap<>( reqParams );
-        params.remove( "offset" );
-        params.put( "offset", new String[]{Integer.toString( iOffset )} );
+        params.remove( param );
+        params.put( param, new String[]{value} );
         StringBuilder link = new StringBuilder( bURL );
         link.append( "?" );
         String key = null;
@@ -113,7 +160,45 @@ public class BaseResource {
         return link.toString();
     }
     
+    /**
+     * Run the task for a suspended request on the executor for its workload.
+     * The call context is resolved on the request thread before the task is submitted.
+     */
+    protected void submit(Workload workload, final AsyncResponse asyncResponse, 
+            final Callable<Response> task) throws IOException{
+        CallContext context = buildCallContext();
+        final String caller = context.getSubject() != null ? context.getSubject().getName() : null;
+        // Keep the request scope alive so injected proxies still work on the worker thread
+        final RequestScope.Instance scope = requestScope.referenceCurrent();
+        boolean submitted = workloadExecutors.submit(workload, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws Exception{
+                try {
+                    if(asyncResponse.isDone()){
+                        return null; // Cancelled or timed out while queued
+                    }
+                    // Every DAO the task creates shares one connection, and sees the caller's writes
+                    try(UnitOfWork unit = getProvider().getDaoFactory().beginUnitOfWork(caller)) {
+                        return requestScope.runInScope(scope, task);
+                    }
+                } finally {
+                    scope.release();
+                }
+            }
+        });
+        if(!submitted){
+            scope.release();
+        }
+    }
+    
     public CallContext buildCallContext() throws IOException{
+        if(callContext == null){
+            callContext = lookupCallContext();
+        }
+        return callContext;
+    }
+    
+    private CallContext lookupCallContext() throws IOException{
         Principal prin = securityContext.getUserPrincipal();
         String name = prin != null ?  prin.getName() : null;
         DcUser user = lookupService.lookupPrincipalByName(name);
@@ -50,4 +50,17 @@ public class Binders {
         }
     }
 
+    public static class WorkloadBinder extends AbstractBinder {
+        private final WorkloadExecutors executors;
+
+        WorkloadBinder(WorkloadExecutors executors){
+            this.executors = executors;
+        }
+
+        @Override
+        protected void configure(){
+            bind(executors).to(WorkloadExecutors.class);
+        }
+    }
+
 }
@@ -0,0 +1,239 @@
+package org.srs.datacat.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Compress response entities with gzip or deflate when the client accepts it and the entity is
+ * at least {@link #THRESHOLD} bytes long. Small entities are sent as-is, as compressing them
+ * costs more CPU than it saves on the wire.
+ *
+ * Responses which may be compressed vary on Accept-Encoding. A compressed entity isn't the same
+ * bytes as the entity it was made from, so its entity tag is made weak. Flushes are passed on
+ * to the compressing stream, so streamed responses reach the client as they are written.
+ *
+ * The encodings and threshold can be set through the application properties (i.e. servlet
+ * init-params).
+ *
+ * @author bvan
+ */
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements WriterInterceptor {
+
+    /**
+     * Minimum entity size, in bytes, before compressing. A negative value disables compression.
+     */
+    public static final String THRESHOLD = "org.srs.datacat.rest.compression.threshold";
+
+    /**
+     * Comma-separated list of encodings the server may use, in order of preference.
+     */
+    public static final String ENCODINGS = "org.srs.datacat.rest.compression.encodings";
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final String DEFAULT_ENCODINGS = "gzip,deflate";
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+
+    @Context private Configuration config;
+    @Context private HttpHeaders requestHeaders;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException{
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        int threshold = getThreshold();
+        if(threshold < 0 || headers.containsKey(HttpHeaders.CONTENT_ENCODING)){
+            context.proceed();
+            return;
+        }
+        // Caches must not give a compressed entity to a client that didn't ask for one, or the
+        // other way around
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = selectEncoding();
+        if(encoding == null){
+            context.proceed();
+            return;
+        }
+        ThresholdOutputStream out = new ThresholdOutputStream(context.getOutputStream(), headers,
+                encoding, threshold);
+        context.setOutputStream(out);
+        context.proceed();
+        out.finish();
+    }
+
+    private int getThreshold(){
+        Object value = config != null ? config.getProperty(THRESHOLD) : null;
+        if(value == null){
+            return DEFAULT_THRESHOLD;
+        }
+        return Integer.parseInt(value.toString().trim());
+    }
+
+    private List<String> getEncodings(){
+        Object value = config != null ? config.getProperty(ENCODINGS) : null;
+        String encodings = value != null ? value.toString() : DEFAULT_ENCODINGS;
+        List<String> ret = new ArrayList<>();
+        for(String encoding: encodings.split(",")){
+            encoding = encoding.trim().toLowerCase(Locale.ENGLISH);
+            if(GZIP.equals(encoding) || DEFLATE.equals(encoding)){
+                ret.add(encoding);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Find the first configured encoding that the client will accept.
+     */
+    private String selectEncoding(){
+        List<String> acceptEncoding = requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+        if(acceptEncoding == null || acceptEncoding.isEmpty()){
+            return null;
+        }
+        List<String> accepted = new ArrayList<>();
+        boolean wildcard = false;
+        for(String header: acceptEncoding){
+            for(String token: header.split(",")){
+                String[] parts = token.split(";");
+                String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+                boolean refused = false;
+                for(int i = 1; i < parts.length; i++){
+                    String param = parts[i].trim();
+                    if(param.startsWith("q=")){
+                        try {
+                            refused = Float.parseFloat(param.substring(2)) <= 0f;
+                        } catch(NumberFormatException ex) {
+                            refused = true;
+                        }
+                    }
+                }
+                if(refused){
+                    continue;
+                }
+                if("*".equals(coding)){
+                    wildcard = true;
+                } else {
+                    accepted.add(X_GZIP.equals(coding) ? GZIP : coding);
+                }
+            }
+        }
+        for(String encoding: getEncodings()){
+            if(wildcard || accepted.contains(encoding)){
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Buffers output up to the threshold. If the threshold is passed, the Content-Encoding
+     * header is set and everything is written through a compressing stream. Otherwise, the
+     * buffer is written out unmodified when the stream is finished.
+     */
+    static class ThresholdOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final MultivaluedMap<String, Object> headers;
+        private final String encoding;
+        private final int threshold;
+        private ByteArrayOutputStream buffer;
+        private DeflaterOutputStream compressed;
+        private boolean finished = false;
+
+        ThresholdOutputStream(OutputStream target, MultivaluedMap<String, Object> headers,
+                String encoding, int threshold){
+            this.target = target;
+            this.headers = headers;
+            this.encoding = encoding;
+            this.threshold = threshold;
+            this.buffer = new ByteArrayOutputStream(Math.min(threshold, 8192));
+        }
+
+        @Override
+        public void write(int b) throws IOException{
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException{
+            if(compressed == null && buffer.size() + len > threshold){
+                startCompressing();
+            }
+            if(compressed != null){
+                compressed.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        private void startCompressing() throws IOException{
+            // Headers are committed on the first write to the target, so they can still change
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            Object etag = headers.getFirst(HttpHeaders.ETAG);
+            if(etag != null){
+                headers.putSingle(HttpHeaders.ETAG, weakTag(etag));
+            }
+            // Sync flushes, so a flush sends everything compressed so far
+            compressed = GZIP.equals(encoding) ? new GZIPOutputStream(target, 8192, true)
+                    : new DeflaterOutputStream(target, 8192, true);
+            buffer.writeTo(compressed);
+            buffer = null;
+        }
+
+        /**
+         * A weak entity tag still matches the strong tag of the uncompressed entity in
+         * conditional GETs, so both validate each other.
+         */
+        static Object weakTag(Object etag){
+            if(etag instanceof EntityTag){
+                return new EntityTag(((EntityTag) etag).getValue(), true);
+            }
+            String tag = etag.toString();
+            return tag.startsWith("W/") ? tag : "W/" + tag;
+        }
+
+        @Override
+        public void flush() throws IOException{
+            // Don't commit the headers while we are still deciding
+            if(compressed != null){
+                compressed.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException{
+            finish();
+        }
+
+        void finish() throws IOException{
+            if(finished){
+                return;
+            }
+            finished = true;
+            if(compressed != null){
+                compressed.finish();
+            } else {
+                buffer.writeTo(target);
+            }
+            target.flush();
+        }
+    }
+
+}
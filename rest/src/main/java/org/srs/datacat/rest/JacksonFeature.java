@@ -9,8 +9,11 @@ import com.fasterxml.jackson.jaxrs.xml.JacksonXMLProvider;
 import java.text.SimpleDateFormat;
 import java.util.Map.Entry;
 import java.util.TimeZone;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.Feature;
 import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import org.glassfish.jersey.CommonProperties;
@@ -20,6 +23,7 @@ import org.srs.datacat.model.ModelProvider;
  * Jackson JSON/XML support.
  */
 public class JacksonFeature implements Feature {
+    static ObjectMapper jsonMapper;
     static JacksonJsonProvider jsonProvider;
     static JacksonXMLProvider xmlProvider;
     
@@ -41,6 +45,31 @@ public class JacksonFeature implements Feature {
             }
             jsonProvider = new JacksonJsonProvider(jsonMapper);
             xmlProvider = new JacksonXMLProvider(xmlMapper);
+            JacksonFeature.jsonMapper = jsonMapper;
+        }
+    }
+
+    /**
+     * The mapper used for JSON, for reading a response incrementally.
+     */
+    public ObjectMapper getJsonMapper(){
+        return jsonMapper;
+    }
+
+    /**
+     * Resolves the JSON mapper, for resources which serialize an entity themselves.
+     */
+    @Produces(MediaType.APPLICATION_JSON)
+    static class JsonMapperResolver implements ContextResolver<ObjectMapper> {
+        private final ObjectMapper mapper;
+
+        JsonMapperResolver(ObjectMapper mapper){
+            this.mapper = mapper;
+        }
+
+        @Override
+        public ObjectMapper getContext(Class<?> type){
+            return mapper;
         }
     }
 
@@ -51,6 +80,7 @@ public class JacksonFeature implements Feature {
         context.property(disableMoxy, true);
         context.register(xmlProvider, MessageBodyReader.class,MessageBodyWriter.class);
         context.register(jsonProvider, MessageBodyReader.class,MessageBodyWriter.class);
+        context.register(new JsonMapperResolver(jsonMapper), ContextResolver.class);
         return true;
     }
 
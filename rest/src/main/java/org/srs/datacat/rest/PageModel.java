@@ -0,0 +1,146 @@
+package org.srs.datacat.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.util.List;
+import org.srs.datacat.model.DatacatNode;
+import org.srs.datacat.model.DatasetContainer;
+import org.srs.datacat.rest.security.AclEntryProxy;
+
+/**
+ * Everything needed to render a page for a single path, returned by {@code ;view=page}.
+ *
+ * The containers are the child containers of the target. A child which only contains a single
+ * container is replaced by the first descendant which doesn't. The siblings are the child
+ * containers of the parent, and are only included when the target has datasets or no child
+ * containers.
+ *
+ * @author bvan
+ */
+@JsonTypeName(value="page")
+@JsonTypeInfo(use=JsonTypeInfo.Id.NAME, property="_type", defaultImpl=PageModel.class)
+@JsonDeserialize(builder=PageModel.Builder.class)
+@JsonPropertyOrder({"target", "parent", "permissions", "containers", "siblings", "datasets", "datasetCount"})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PageModel {
+    private final DatacatNode target;
+    private final DatasetContainer parent;
+    private final AclEntryProxy permissions;
+    private final List<DatasetContainer> containers;
+    private final List<DatasetContainer> siblings;
+    private final List<DatacatNode> datasets;
+    private final Integer datasetCount;
+
+    private PageModel(Builder builder){
+        this.target = builder.target;
+        this.parent = builder.parent;
+        this.permissions = builder.permissions;
+        this.containers = builder.containers;
+        this.siblings = builder.siblings;
+        this.datasets = builder.datasets;
+        this.datasetCount = builder.datasetCount;
+    }
+
+    public DatacatNode getTarget(){
+        return target;
+    }
+
+    public DatasetContainer getParent(){
+        return parent;
+    }
+
+    /**
+     * Effective permissions of the user on the target.
+     */
+    public AclEntryProxy getPermissions(){
+        return permissions;
+    }
+
+    public List<DatasetContainer> getContainers(){
+        return containers;
+    }
+
+    public List<DatasetContainer> getSiblings(){
+        return siblings;
+    }
+
+    /**
+     * The requested page of datasets in the target.
+     */
+    public List<DatacatNode> getDatasets(){
+        return datasets;
+    }
+
+    /**
+     * Total number of datasets in the target.
+     */
+    public Integer getDatasetCount(){
+        return datasetCount;
+    }
+
+    /**
+     * Builder class.
+     */
+    public static class Builder {
+        private DatacatNode target;
+        private DatasetContainer parent;
+        private AclEntryProxy permissions;
+        private List<DatasetContainer> containers;
+        private List<DatasetContainer> siblings;
+        private List<DatacatNode> datasets;
+        private Integer datasetCount;
+
+        public Builder(){ }
+
+        @JsonSetter
+        public Builder target(DatacatNode val){
+            this.target = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder parent(DatasetContainer val){
+            this.parent = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder permissions(AclEntryProxy val){
+            this.permissions = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder containers(List<DatasetContainer> val){
+            this.containers = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder siblings(List<DatasetContainer> val){
+            this.siblings = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder datasets(List<DatacatNode> val){
+            this.datasets = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder datasetCount(Integer val){
+            this.datasetCount = val;
+            return this;
+        }
+
+        public PageModel build(){
+            return new PageModel(this);
+        }
+    }
+
+}
@@ -17,6 +17,20 @@ import org.srs.datacat.security.DcUserLookupService;
  */
 public final class Utils {
 
+    /**
+     * Look up a data source which doesn't have to be configured, such as a read replica.
+     * @param jndiName Name of the data source
+     * @return The data source, or null if there isn't one with that name
+     */
+    public static DataSource initOptionalDatasource(String jndiName){
+        try {
+            new InitialContext().lookup("java:comp/env/" + jndiName);
+        } catch(NamingException ex) {
+            return null;
+        }
+        return initDatasource(jndiName);
+    }
+
     public static DataSource initDatasource(String jndiName){
         try {
             javax.naming.Context ctx = new InitialContext();
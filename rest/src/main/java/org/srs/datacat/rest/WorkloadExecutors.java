@@ -0,0 +1,232 @@
+package org.srs.datacat.rest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+import org.srs.datacat.metrics.Metrics;
+
+/**
+ * Bounded executors for each class of work the REST API does. Resources suspend the request and
+ * hand the work to the executor for its workload, so a burst of slow searches can't use up the
+ * container's threads and stall cheap lookups.
+ *
+ * Each executor has a fixed number of threads and a bounded queue. When the queue is full, the
+ * request is rejected with a 503 (Service Unavailable).
+ *
+ * The size of each executor can be set with the application properties
+ * {@code org.srs.datacat.rest.workload.<workload>.threads} and
+ * {@code org.srs.datacat.rest.workload.<workload>.queue}.
+ *
+ * @author bvan
+ */
+public class WorkloadExecutors {
+
+    public static final String PROPERTY_PREFIX = "org.srs.datacat.rest.workload.";
+    private static final String METRICS_PREFIX = "rest.workload.";
+    private static final Logger LOG = Logger.getLogger(WorkloadExecutors.class.getName());
+
+    /**
+     * Classes of work.
+     */
+    public enum Workload {
+        /** Retrieval of a single object. */
+        LOOKUP(16, 512),
+        /** Listing the children of a container. */
+        LISTING(8, 128),
+        /** Searches. */
+        SEARCH(4, 32),
+        /** Creation, modification and deletion. */
+        WRITE(8, 256);
+
+        private final int defaultThreads;
+        private final int defaultQueue;
+
+        Workload(int defaultThreads, int defaultQueue){
+            this.defaultThreads = defaultThreads;
+            this.defaultQueue = defaultQueue;
+        }
+
+        String key(){
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final EnumMap<Workload, ThreadPoolExecutor> executors = new EnumMap<>(Workload.class);
+    private final EnumMap<Workload, AtomicLong> rejected = new EnumMap<>(Workload.class);
+    private final EnumMap<Workload, Metrics.Gauge> queueGauges = new EnumMap<>(Workload.class);
+    private final EnumMap<Workload, Metrics.Gauge> activeGauges = new EnumMap<>(Workload.class);
+
+    public WorkloadExecutors(){
+        this(Collections.<String, Object>emptyMap());
+    }
+
+    public WorkloadExecutors(Map<String, Object> properties){
+        for(final Workload workload: Workload.values()){
+            int threads = intProperty(properties, PROPERTY_PREFIX + workload.key() + ".threads",
+                    workload.defaultThreads);
+            int queue = intProperty(properties, PROPERTY_PREFIX + workload.key() + ".queue",
+                    workload.defaultQueue);
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queue),
+                    new ThreadFactoryBuilder()
+                            .setDaemon(true)
+                            .setNameFormat("datacat-" + workload.key() + "-%d")
+                            .build());
+            executor.allowCoreThreadTimeOut(true);
+            executors.put(workload, executor);
+            rejected.put(workload, Metrics.counter(METRICS_PREFIX + workload.key() + ".rejected"));
+
+            Metrics.Gauge queued = new Metrics.Gauge() {
+                @Override
+                public long value(){
+                    return executor.getQueue().size();
+                }
+            };
+            Metrics.Gauge active = new Metrics.Gauge() {
+                @Override
+                public long value(){
+                    return executor.getActiveCount();
+                }
+            };
+            queueGauges.put(workload, queued);
+            activeGauges.put(workload, active);
+            Metrics.gauge(METRICS_PREFIX + workload.key() + ".queued", queued);
+            Metrics.gauge(METRICS_PREFIX + workload.key() + ".active", active);
+        }
+    }
+
+    private static int intProperty(Map<String, Object> properties, String name, int defaultValue){
+        Object value = properties.get(name);
+        return value != null ? Integer.parseInt(value.toString().trim()) : defaultValue;
+    }
+
+    /**
+     * Run a task on the executor for the given workload, and resume the response with the result.
+     * If the workload's queue is full, the response is resumed immediately with a 503.
+     *
+     * @param workload Class of work
+     * @param asyncResponse Suspended response
+     * @param task Task which produces the response. Exceptions are passed on to the response.
+     * @return false if the task was rejected
+     */
+    public boolean submit(Workload workload, final AsyncResponse asyncResponse, final Callable<Response> task){
+        try {
+            executors.get(workload).execute(new Runnable() {
+                @Override
+                public void run(){
+                    Response response;
+                    try {
+                        response = task.call();
+                    } catch(Throwable ex) {
+                        asyncResponse.resume(ex);
+                        return;
+                    }
+                    if(!asyncResponse.resume(response)){
+                        // Timed out or cancelled already, nothing will write the entity
+                        closeEntity(response);
+                    }
+                }
+            });
+            return true;
+        } catch(RejectedExecutionException ex) {
+            rejected.get(workload).incrementAndGet();
+            asyncResponse.resume(new RestException(ex, Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    "Server is too busy to handle this request", workload.key(),
+                    Collections.<String, Object>singletonMap("Retry-After", 1)));
+            return false;
+        }
+    }
+
+    /**
+     * Close the entity of a response which won't be written, if it holds on to anything, like a
+     * streamed entity holding a connection.
+     */
+    static void closeEntity(Response response){
+        Object entity = response != null ? response.getEntity() : null;
+        if(entity instanceof Closeable){
+            try {
+                ((Closeable) entity).close();
+            } catch(IOException ex) {
+                LOG.log(Level.WARNING, "Unable to close an entity which wasn't written", ex);
+            }
+        }
+    }
+
+    /**
+     * Number of tasks waiting to run for a workload.
+     */
+    public int getQueueDepth(Workload workload){
+        return executors.get(workload).getQueue().size();
+    }
+
+    /**
+     * Number of requests rejected for a workload, since startup.
+     */
+    public long getRejectedCount(Workload workload){
+        return rejected.get(workload).get();
+    }
+
+    public void shutdown(){
+        for(Workload workload: Workload.values()){
+            executors.get(workload).shutdown();
+            Metrics.removeGauge(METRICS_PREFIX + workload.key() + ".queued", queueGauges.get(workload));
+            Metrics.removeGauge(METRICS_PREFIX + workload.key() + ".active", activeGauges.get(workload));
+        }
+        for(Workload workload: Workload.values()){
+            try {
+                if(!executors.get(workload).awaitTermination(10, TimeUnit.SECONDS)){
+                    executors.get(workload).shutdownNow();
+                }
+            } catch(InterruptedException ex) {
+                LOG.log(Level.WARNING, "Interrupted while shutting down executors", ex);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Creates the executors from the application's configuration, makes them available for
+     * injection, and shuts them down with the container.
+     */
+    public static class WorkloadFeature implements Feature {
+
+        @Override
+        public boolean configure(FeatureContext context){
+            final WorkloadExecutors executors = new WorkloadExecutors(context.getConfiguration().getProperties());
+            context.register(new Binders.WorkloadBinder(executors));
+            context.register(new ContainerLifecycleListener() {
+                @Override
+                public void onStartup(Container container){ }
+
+                @Override
+                public void onReload(Container container){ }
+
+                @Override
+                public void onShutdown(Container container){
+                    executors.shutdown();
+                }
+            });
+            return true;
+        }
+    }
+
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
@@ -23,6 +24,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericEntity;
@@ -43,6 +46,7 @@ import org.srs.datacat.vfs.DcUriUtils;
 import org.srs.datacat.vfs.attribute.ContainerViewProvider;
 import org.srs.datacat.vfs.attribute.DatasetViewProvider;
 import org.srs.datacat.rest.RestException;
+import org.srs.datacat.rest.WorkloadExecutors.Workload;
 import org.srs.datacat.model.RecordType;
 import org.srs.datacat.model.container.ContainerStat;
 import org.srs.datacat.model.container.DatasetContainerBuilder;
@@ -86,8 +90,19 @@ public class ContainerResource extends BaseResource {
     @GET
     @Path(idRegex)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
-    public Response getChildren( @DefaultValue("100000") @QueryParam("max") int max,
-            @DefaultValue("0") @QueryParam("offset") int offset) throws IOException{
+    public void getChildren(@Suspended AsyncResponse asyncResponse, 
+            @DefaultValue("100000") @QueryParam("max") final int max,
+            @DefaultValue("0") @QueryParam("offset") final int offset) throws IOException{
+        Workload workload = matrixParams.containsKey("children") ? Workload.LISTING : Workload.LOOKUP;
+        submit(workload, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return getChildren(max, offset);
+            }
+        });
+    }
+    
+    public Response getChildren(int max, int offset) throws IOException{
 
         RecordType type = RecordType.FOLDER; // Folder by default
         if(containerType.equalsIgnoreCase("groups")){
@@ -133,6 +148,16 @@ public class ContainerResource extends BaseResource {
     @Path(idRegex)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void createContainer(@Suspended AsyncResponse asyncResponse, 
+            final MultivaluedMap<String, String> formParams) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return createContainer(formParams);
+            }
+        });
+    }
+    
     public Response createContainer(MultivaluedMap<String, String> formParams) throws IOException{
         String sParentPath = requestPath;
         RecordType type = RecordType.FOLDER; // Folder by default
@@ -167,6 +192,15 @@ public class ContainerResource extends BaseResource {
     @Path(idRegex)
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void createContainerJson(@Suspended AsyncResponse asyncResponse, final DatasetContainer container) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return createContainerJson(container);
+            }
+        });
+    }
+    
     public Response createContainerJson(DatasetContainer container) throws IOException{
         String sParentPath = requestPath;
         RecordType type = RecordType.FOLDER; // Folder by default
@@ -201,6 +235,15 @@ public class ContainerResource extends BaseResource {
     @Path(idRegex)
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void patchDataset(@Suspended AsyncResponse asyncResponse, final DatasetContainer containerReq) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return patchDataset(containerReq);
+            }
+        });
+    }
+    
     public Response patchDataset(DatasetContainer containerReq) throws IOException{
         java.nio.file.Path targetPath = getProvider().getPath(requestPath);
         try {
@@ -218,6 +261,15 @@ public class ContainerResource extends BaseResource {
     
     @DELETE
     @Path(idRegex)
+    public void deleteContainer(@Suspended AsyncResponse asyncResponse) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return deleteContainer();
+            }
+        });
+    }
+    
     public Response deleteContainer() throws IOException{
         java.nio.file.Path dcPath = getProvider().getPath(requestPath);
         CallContext context = buildCallContext();
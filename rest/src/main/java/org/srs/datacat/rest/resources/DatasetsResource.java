@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ws.rs.Consumes;
@@ -21,6 +22,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
@@ -35,6 +38,7 @@ import static org.srs.datacat.rest.BaseResource.OPTIONAL_EXTENSIONS;
 import org.srs.datacat.rest.FormParamConverter;
 import org.srs.datacat.rest.PATCH;
 import org.srs.datacat.rest.RestException;
+import org.srs.datacat.rest.WorkloadExecutors.Workload;
 
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetModel;
@@ -85,9 +89,18 @@ public class DatasetsResource extends BaseResource  {
     @GET
     @Path(idRegex)
     @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    public Response getDataset(@PathParam("id") String path, 
-            @MatrixParam("v") List<String> versions,
-            @MatrixParam("l") List<String> locations) throws IOException{
+    public void getDataset(@Suspended AsyncResponse asyncResponse, @PathParam("id") final String path, 
+            @MatrixParam("v") final List<String> versions,
+            @MatrixParam("l") final List<String> locations) throws IOException{
+        submit(Workload.LOOKUP, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return getDataset(path, versions, locations);
+            }
+        });
+    }
+    
+    public Response getDataset(String path, List<String> versions, List<String> locations) throws IOException{
         System.out.println(ui.getAbsolutePath());
         java.nio.file.Path targetPath = getProvider().getPath(requestPath);
         try {
@@ -123,6 +136,16 @@ public class DatasetsResource extends BaseResource  {
     @Path(idRegex)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void createDatasetFromForm(@Suspended AsyncResponse asyncResponse, 
+            final MultivaluedMap<String, String> formParams) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return createDatasetFromForm(formParams);
+            }
+        });
+    }
+    
     public Response createDatasetFromForm(MultivaluedMap<String, String> formParams) throws IOException{
         DatasetModel.Builder builder = FormParamConverter.getDatasetBuilder(formParams);
         DatasetModel dsReq = builder.build();
@@ -133,6 +156,15 @@ public class DatasetsResource extends BaseResource  {
     @Path(idRegex)
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void createDataset(@Suspended AsyncResponse asyncResponse, final DatasetModel dsReq) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return createDataset(dsReq);
+            }
+        });
+    }
+    
     public Response createDataset(DatasetModel dsReq) throws IOException{
         java.nio.file.Path targetPath = getProvider().getPath(requestPath);
         DcFile parentFile = null;
@@ -301,6 +333,15 @@ public class DatasetsResource extends BaseResource  {
     @Path(idRegex)
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void patchDataset(@Suspended AsyncResponse asyncResponse, final DatasetModel dsReq) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return patchDataset(dsReq);
+            }
+        });
+    }
+    
     public Response patchDataset(DatasetModel dsReq) throws IOException{
         java.nio.file.Path targetPath = getProvider().getPath(requestPath);
         RequestView rv = null;
@@ -330,6 +371,15 @@ public class DatasetsResource extends BaseResource  {
     
     @DELETE
     @Path(idRegex)
+    public void deleteDatasetOrView(@Suspended AsyncResponse asyncResponse) throws IOException{
+        submit(Workload.WRITE, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return deleteDatasetOrView();
+            }
+        });
+    }
+    
     public Response deleteDatasetOrView() throws IOException{
         java.nio.file.Path targetPath = getProvider().getPath(requestPath);
         try {
@@ -0,0 +1,51 @@
+package org.srs.datacat.rest.resources;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.util.SortedMap;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import org.srs.datacat.metrics.Metrics;
+import org.srs.datacat.model.security.DcGroup;
+import org.srs.datacat.rest.BaseResource;
+import static org.srs.datacat.rest.BaseResource.OPTIONAL_EXTENSIONS;
+import org.srs.datacat.rest.RestException;
+
+/**
+ * Current values of the server's counters and gauges.
+ *
+ * Only members of the group set with {@link #GROUP} can read them. If it isn't set, the metrics
+ * aren't available at all.
+ *
+ * @author bvan
+ */
+@Path("/metrics" + OPTIONAL_EXTENSIONS)
+public class MetricsResource extends BaseResource {
+
+    /**
+     * Group whose members may read the metrics, such as {@code admin@SRS}.
+     */
+    public static final String GROUP = "org.srs.datacat.rest.metrics.group";
+
+    @Context Configuration config;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public SortedMap<String, Long> getMetrics() throws IOException{
+        Object group = config != null ? config.getProperty(GROUP) : null;
+        if(group == null || group.toString().trim().isEmpty()){
+            throw new NotFoundException();
+        }
+        if(!buildCallContext().getGroups().contains(new DcGroup(group.toString().trim()))){
+            throw new RestException(new AccessDeniedException("/metrics"), 403,
+                    "Metrics are only available to members of " + group);
+        }
+        return Metrics.snapshot();
+    }
+
+}
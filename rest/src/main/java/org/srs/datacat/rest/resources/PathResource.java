@@ -2,8 +2,15 @@
 package org.srs.datacat.rest.resources;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.NoSuchFileException;
@@ -13,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ws.rs.DefaultValue;
@@ -22,30 +30,43 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import org.srs.datacat.model.DatacatNode;
+import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.model.dataset.DatasetWithViewModel;
 import org.srs.datacat.model.HasMetadata;
 import org.srs.datacat.model.container.ContainerStat;
 import org.srs.datacat.model.security.CallContext;
+import org.srs.datacat.model.security.DcAclEntry;
+import org.srs.datacat.model.security.DcGroup;
+import org.srs.datacat.model.security.DcSubject;
 
 import org.srs.datacat.rest.BaseResource;
+import org.srs.datacat.rest.PageModel;
 import org.srs.datacat.shared.RequestView;
 import static org.srs.datacat.rest.BaseResource.OPTIONAL_EXTENSIONS;
+import org.srs.datacat.shared.BasicStat;
 import org.srs.datacat.shared.BasicStat.StatType;
 import org.srs.datacat.vfs.DcFile;
 import org.srs.datacat.vfs.attribute.ContainerViewProvider;
 import org.srs.datacat.vfs.attribute.DatasetViewProvider;
 
 import org.srs.datacat.rest.RestException;
+import org.srs.datacat.rest.WorkloadExecutors.Workload;
+import org.srs.datacat.rest.security.AclEntryProxy;
 import org.srs.datacat.shared.metadata.MetadataEntry;
 import org.srs.datacat.vfs.DcFileSystemProvider;
+import org.srs.vfs.PathUtils;
 
 
 /**
@@ -56,6 +77,9 @@ import org.srs.datacat.vfs.DcFileSystemProvider;
 @Path("/path" +  OPTIONAL_EXTENSIONS)
 public class PathResource extends BaseResource {
     private final String idRegex = "{id: [%\\w\\d\\-_\\./]+}";
+    private static final BaseEncoding CURSOR_ENCODING = BaseEncoding.base64Url().omitPadding();
+    private static final int DEFAULT_PAGE_MAX = 100;
+    private static final int DEFAULT_PAGE_CMAX = 100000;
     
     public static class StatTypeWrapper {
         private final StatType value;
@@ -69,6 +93,7 @@ public class PathResource extends BaseResource {
         }
     }
     
+    @Context private Request conditionalRequest;
     private UriInfo ui;
     private List<PathSegment> pathSegments;
     private String requestPath;
@@ -95,18 +120,31 @@ public class PathResource extends BaseResource {
     }
     
     @HEAD
-    public Response getHead(@DefaultValue("false") @QueryParam("refresh") boolean refresh) throws IOException{
+    public void getHead(@Suspended AsyncResponse asyncResponse, 
+            @DefaultValue("false") @QueryParam("refresh") final boolean refresh) throws IOException{
+        submit(Workload.LOOKUP, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return getHead(refresh);
+            }
+        });
+    }
+    
+    public Response getHead(boolean refresh) throws IOException{
         java.nio.file.Path dcp = getProvider().getPath(requestPath);
         try {
             if(refresh){
                 //getProvider().getCache().removeFile(dcp);
             }
             DcFile file = getProvider().getFile(dcp, buildCallContext());
-            if(file.isRegularFile()){
-                RequestView rv = new RequestView(file.getObject().getType(), requestMatrixParams);
-                file.getAttributeView(DatasetViewProvider.class).withView(rv.getDatasetView(), rv.includeMetadata());
+            RequestView rv = new RequestView(file.getObject().getType(), requestMatrixParams);
+            if(rv.getPrimaryView() == RequestView.CHILDREN || rv.getPrimaryView() == RequestView.PAGE){
+                return Response.ok().build();
             }
-            return Response.ok().build();
+            // The same tag a GET of the entity would have
+            GenericEntity<?> entity = getEntity(file, rv, getStatType(requestMatrixParams));
+            EntityTag etag = entity != null ? entityTag(entity) : null;
+            return Response.ok().tag(etag).build();
         } catch (IllegalArgumentException ex){
             throw new RestException(ex, 400 , "Unable to correctly process view", ex.getMessage());
         } catch (NoSuchFileException ex){
@@ -121,56 +159,56 @@ public class PathResource extends BaseResource {
     
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
-    public Response getRootBean(@DefaultValue("basic") @QueryParam("stat") StatTypeWrapper statType, 
+    public void getRootBean(@Suspended AsyncResponse asyncResponse,
+            @DefaultValue("basic") @QueryParam("stat") StatTypeWrapper statType, 
             @DefaultValue("false") @QueryParam("refresh") boolean refresh) throws IOException{
-        return getBean(requestPath, requestMatrixParams, requestQueryParams, refresh);
+        getBean(asyncResponse, refresh);
     }
     
     @GET
     @Path(idRegex)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
-    public Response getBean(@DefaultValue("false") @QueryParam("refresh") boolean refresh) throws IOException{
-        return getBean(requestPath, requestMatrixParams, requestQueryParams, refresh);
+    public void getBean(@Suspended AsyncResponse asyncResponse, 
+            @DefaultValue("false") @QueryParam("refresh") final boolean refresh) throws IOException{
+        Workload workload = requestMatrixParams.containsKey("children") 
+                || requestMatrixParams.containsKey("view") ? Workload.LISTING : Workload.LOOKUP;
+        submit(workload, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                return getBean(requestPath, requestMatrixParams, requestQueryParams, refresh);
+            }
+        });
     }
     
     public Response getBean(String path, HashMap<String,List<String>> matrixParams, 
             HashMap<String, List<String>> extraQueryParams, boolean refresh) throws IOException{
-        List<String> stl = matrixParams.get( "stat");
-        String st = stl != null && !stl.isEmpty() ? stl.get(0).toUpperCase() : null;
-        Class<? extends ContainerStat> statType = ContainerStat.class;
-        if(st != null){
-            statType = getProvider().getModelProvider().getStatByName(st);
-        }
+        Class<? extends ContainerStat> statType = getStatType(matrixParams);
         java.nio.file.Path dcp = getProvider().getPath(path);
         try {
             if(refresh){
                 //getProvider().getCache().removeFile(dcp);
             }
             DcFile file = getProvider().getFile(dcp, buildCallContext());
-            DatacatNode ret;
             RequestView rv = new RequestView(file.getObject().getType(), matrixParams);
-            if(file.isRegularFile()){
-                ret = file.getAttributeView(DatasetViewProvider.class).withView(rv.getDatasetView(), rv.includeMetadata());
-            } else {
-                ret = file.getAttributeView(ContainerViewProvider.class).withView(statType);
-            }
             switch(rv.getPrimaryView()){
+                case RequestView.PAGE:
+                    return getPage(dcp, file, rv, extraQueryParams);
                 case RequestView.CHILDREN:
                     return getChildren(dcp, file, rv, extraQueryParams );
-                case RequestView.METADATA:
-                    List<MetadataEntry> entries = null;
-                    if(rv.containsKey("metadata") && ret instanceof HasMetadata){
-                        entries = MetadataEntry.toList(((HasMetadata) ret).getMetadataMap());
-                    } else if(rv.containsKey("versionMetadata") && ret instanceof DatasetWithViewModel){
-                        entries = MetadataEntry.toList(((DatasetWithViewModel) ret).getViewInfo()
-                                .getVersion().getMetadataMap());
-                    }
-                    if(entries == null){
+                default:
+                    GenericEntity<?> entity = getEntity(file, rv, statType);
+                    if(entity == null){
                         return Response.noContent().build();
                     }
-                    return Response.ok( new GenericEntity<List<MetadataEntry>>(entries){} ).build();
-                default:
-                    return Response.ok( new GenericEntity(ret, DatacatNode.class) ).build();
+                    // Children listings and pages aren't versioned, a single entity is.
+                    EntityTag etag = entityTag(entity);
+                    if(etag != null){
+                        Response.ResponseBuilder notModified = conditionalRequest.evaluatePreconditions(etag);
+                        if(notModified != null){
+                            return notModified.tag(etag).build();
+                        }
+                    }
+                    return Response.ok(entity).tag(etag).build();
             }
         } catch (IllegalArgumentException ex){
             throw new RestException(ex, 400 , "Unable to correctly process view", ex.getMessage());
@@ -183,6 +221,58 @@ public class PathResource extends BaseResource {
             throw new RestException(ex, 500);
         }
     }
+    
+    private Class<? extends ContainerStat> getStatType(HashMap<String,List<String>> matrixParams){
+        List<String> stl = matrixParams.get( "stat");
+        String st = stl != null && !stl.isEmpty() ? stl.get(0).toUpperCase() : null;
+        if(st != null){
+            return getProvider().getModelProvider().getStatByName(st);
+        }
+        return ContainerStat.class;
+    }
+    
+    /**
+     * The entity for a view of a single file.
+     * @return The entity, or null if the view of the file is empty
+     */
+    private GenericEntity<?> getEntity(DcFile file, RequestView rv, Class<? extends ContainerStat> statType)
+            throws IOException{
+        DatacatNode ret;
+        if(file.isRegularFile()){
+            ret = file.getAttributeView(DatasetViewProvider.class).withView(rv.getDatasetView(), rv.includeMetadata());
+        } else {
+            ret = file.getAttributeView(ContainerViewProvider.class).withView(statType);
+        }
+        if(rv.getPrimaryView() == RequestView.METADATA){
+            List<MetadataEntry> entries = null;
+            if(rv.containsKey("metadata") && ret instanceof HasMetadata){
+                entries = MetadataEntry.toList(((HasMetadata) ret).getMetadataMap());
+            } else if(rv.containsKey("versionMetadata") && ret instanceof DatasetWithViewModel){
+                entries = MetadataEntry.toList(((DatasetWithViewModel) ret).getViewInfo()
+                        .getVersion().getMetadataMap());
+            }
+            return entries != null ? new GenericEntity<List<MetadataEntry>>(entries){} : null;
+        }
+        return new GenericEntity(ret, DatacatNode.class);
+    }
+ 
+    /**
+     * An entity tag for an entity, a hash of the entity in JSON. It only depends on what's stored,
+     * so it doesn't change when the file is reloaded and it's the same on every server. The tag is
+     * weak, the JSON and the XML of an entity share it.
+     */
+    private EntityTag entityTag(GenericEntity<?> entity) throws IOException{
+        ObjectMapper mapper = getJsonMapper(entity.getRawType());
+        if(mapper == null){
+            return null;
+        }
+        Hasher hasher = Hashing.md5().newHasher();
+        try(OutputStream out = Funnels.asOutputStream(hasher)){
+            mapper.writerFor(mapper.getTypeFactory().constructType(entity.getType()))
+                    .writeValue(out, entity.getEntity());
+        }
+        return new EntityTag(hasher.hash().toString(), true);
+    }
  
     public Response getChildren(java.nio.file.Path dcp, DcFile dirFile, RequestView requestView, HashMap<String, List<String>> queryParams){
         boolean withDs = queryParams.containsKey("datasets") ? Boolean.valueOf( queryParams.get("datasets").get(0)) : true;
@@ -191,6 +281,9 @@ public class PathResource extends BaseResource {
             statType = getProvider().getModelProvider().getStatByName(queryParams.get("stat").get(0).toLowerCase());
         }
         int max = queryParams.containsKey("max") ? Integer.valueOf( queryParams.get("max").get(0)) :100000;
+        if(queryParams.containsKey("after")){
+            return getChildrenAfter(dirFile, requestView, queryParams.get("after").get(0), withDs, statType, max);
+        }
         int offset = queryParams.containsKey("offset") ? Integer.valueOf( queryParams.get("offset").get(0)) :0;
         boolean showCount = queryParams.containsKey("showCount") ? Boolean.valueOf( queryParams.get("showCount").get(0)) :false;
     
@@ -263,4 +356,230 @@ public class PathResource extends BaseResource {
         return resp;
     }
 
+    /**
+     * Get a page of children using a keyset cursor. The cursor is the (encoded) name of the last 
+     * child which was read. An empty cursor starts at the beginning. If there are more children, 
+     * the next cursor is returned in the x-pagination-after header and as a link.
+     */
+    private Response getChildrenAfter(DcFile dirFile, RequestView requestView, String cursor,
+            boolean withDs, Class<? extends ContainerStat> statType, int max){
+        Optional<String> after = Optional.absent();
+        if(cursor != null && !cursor.isEmpty()){
+            try {
+                after = Optional.of(new String(CURSOR_ENCODING.decode(cursor), StandardCharsets.UTF_8));
+            } catch(IllegalArgumentException ex) {
+                throw new RestException(ex, 400, "Invalid cursor", ex.getMessage());
+            }
+        }
+        
+        List<DatacatNode> retList = new ArrayList<>();
+        String lastName = null;
+        boolean hasMore = false;
+        try {
+            String childrenView = requestView.get("children");
+            CallContext context = buildCallContext();
+            DatasetView dsview = null;
+            if(!"containers".equals(childrenView)){
+                dsview = requestView.getDatasetView(DatasetView.CURRENT_ALL);
+            }
+            // Read one extra to know if there's another page
+            try(DirectoryStream<java.nio.file.Path> stream = getProvider()
+                    .newPagedDirectoryStream(dirFile.getPath(), context, DcFileSystemProvider.ACCEPT_ALL_FILTER, 
+                        after, max + 1, Optional.fromNullable(dsview))) {
+                Iterator<java.nio.file.Path> iter = stream.iterator();
+                int scanned = 0;
+                while(scanned < max && iter.hasNext()){
+                    java.nio.file.Path p = iter.next();
+                    scanned++;
+                    lastName = p.getFileName().toString();
+                    DcFile file = null;
+                    try {
+                        file = getProvider().getFile(p, context);
+                    } catch (AccessDeniedException ex){
+                        continue;
+                    }
+                    if(!withDs && file.isRegularFile()){
+                        continue;
+                    }
+                    if(file.isRegularFile()){
+                        try {
+                            retList.add(file.getAttributeView(DatasetViewProvider.class)
+                                    .withView(requestView.getDatasetView(), requestView.includeMetadata()));
+                        } catch (NoSuchFileException ex){
+                            continue;
+                        }
+                    } else {
+                        retList.add(file.getAttributeView(ContainerViewProvider.class).withView(statType));
+                    }
+                }
+                hasMore = iter.hasNext();
+            }
+        } catch (NotDirectoryException ex){
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("File exists, but Path is not a directory").build();
+        } catch (IOException ex){
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error accessing the file system: " + ex.getMessage()).build();
+        }
+        
+        Response.ResponseBuilder resp = Response.ok(new GenericEntity<List<DatacatNode>>(retList) {});
+        if(hasMore && lastName != null){
+            String nextCursor = CURSOR_ENCODING.encode(lastName.getBytes(StandardCharsets.UTF_8));
+            resp.header("Link", getLink(ui, "after", nextCursor, "next"));
+            resp.header("x-pagination-after", nextCursor);
+        }
+        return resp.build();
+    }
+
+    /**
+     * Get everything needed to display a path in one response: the target, its parent, the 
+     * user's permissions on the target, the child containers, the sibling containers and a page 
+     * of datasets. See {@link PageModel}.
+     * 
+     * Datasets are paged with the offset and max parameters, containers with coffset and cmax.
+     */
+    private Response getPage(java.nio.file.Path dcp, DcFile file, RequestView requestView, 
+            HashMap<String, List<String>> queryParams) throws IOException{
+        CallContext context = buildCallContext();
+        int offset = queryParams.containsKey("offset") ? Integer.valueOf(queryParams.get("offset").get(0)) : 0;
+        int max = queryParams.containsKey("max") ? Integer.valueOf(queryParams.get("max").get(0)) : DEFAULT_PAGE_MAX;
+        int coffset = queryParams.containsKey("coffset") ? Integer.valueOf(queryParams.get("coffset").get(0)) : 0;
+        int cmax = queryParams.containsKey("cmax") ? Integer.valueOf(queryParams.get("cmax").get(0)) : DEFAULT_PAGE_CMAX;
+        Class<? extends ContainerStat> statType = getProvider().getModelProvider()
+                .getStatByName(requestView.containsKey("stat") ? requestView.get("stat") : "dataset");
+        Class<? extends ContainerStat> basicStat = getProvider().getModelProvider().getStatByName("basic");
+        
+        PageModel.Builder page = new PageModel.Builder();
+        String permissions = getProvider().getPermissions(dcp, context, null);
+        DcSubject subject = context.getSubject() != null ? context.getSubject() : DcGroup.PUBLIC_GROUP;
+        page.permissions(new AclEntryProxy(DcAclEntry.newBuilder()
+                .subject(subject)
+                .permissions(permissions)
+                .build()));
+        
+        // The root is never returned as a parent, but its children may be siblings
+        java.nio.file.Path parent = null;
+        if(dcp.toString().length() > 1){
+            String parentPath = PathUtils.getParentPath(dcp.toString());
+            try {
+                parent = getProvider().getPath(parentPath);
+                DcFile parentFile = getProvider().getFile(parent, context);
+                if(parentPath.length() > 1){
+                    page.parent(parentFile.getAttributeView(ContainerViewProvider.class).withView(statType));
+                }
+            } catch (AccessDeniedException ex){
+                parent = null;
+            }
+        }
+        
+        if(file.isRegularFile()){
+            page.target(file.getAttributeView(DatasetViewProvider.class)
+                    .withView(requestView.getDatasetView(DatasetView.CURRENT_ALL), requestView.includeMetadata()));
+            return Response.ok(page.build()).build();
+        }
+        
+        DatasetContainer target = file.getAttributeView(ContainerViewProvider.class).withView(statType);
+        page.target(target);
+        BasicStat stat = (BasicStat) target.getStat();
+        int ccCount = stat.getFolderCount() + stat.getGroupCount();
+        int dsCount = stat.getDatasetCount();
+        boolean withContainers = ccCount > 0;
+        boolean withDatasets = dsCount > 0 && max > 0;
+        
+        List<DatasetContainer> containers = new ArrayList<>();
+        List<DatacatNode> datasets = new ArrayList<>();
+        if(withContainers || withDatasets){
+            // Containers only use the cached children
+            DatasetView dsView = requestView.getDatasetView(DatasetView.MASTER);
+            Optional<DatasetView> prefetch = Optional.of(withDatasets ? dsView : DatasetView.EMPTY);
+            int containerCount = 0;
+            int datasetCount = 0;
+            try(DirectoryStream<java.nio.file.Path> stream = getProvider()
+                    .newOptimizedDirectoryStream(dcp, context, DcFileSystemProvider.ACCEPT_ALL_FILTER, 
+                        -1, prefetch)) {
+                for(java.nio.file.Path p: stream){
+                    if((!withContainers || containerCount >= coffset + cmax) 
+                            && (!withDatasets || datasetCount >= offset + max)){
+                        break;
+                    }
+                    DcFile child;
+                    try {
+                        child = getProvider().getFile(p, context);
+                    } catch (AccessDeniedException ex){
+                        continue;
+                    }
+                    if(child.isRegularFile()){
+                        if(withDatasets && datasetCount++ >= offset && datasets.size() < max){
+                            try {
+                                datasets.add(child.getAttributeView(DatasetViewProvider.class)
+                                        .withView(dsView, requestView.includeMetadata()));
+                            } catch (NoSuchFileException ex){
+                                // Not in this view
+                            }
+                        }
+                    } else if(withContainers && containerCount++ >= coffset && containers.size() < cmax){
+                        containers.add(collapseContainers(child, context, basicStat));
+                    }
+                }
+            }
+            page.containers(containers);
+            if(withDatasets){
+                page.datasets(datasets);
+            }
+        }
+        page.datasetCount(dsCount);
+        
+        if((dsCount > 0 || ccCount == 0) && parent != null){
+            page.siblings(getContainers(parent, context, coffset, cmax));
+        }
+        return Response.ok(page.build()).build();
+    }
+    
+    /**
+     * Follow a chain of containers which only contain a single container, returning the first 
+     * one which doesn't.
+     */
+    private DatasetContainer collapseContainers(DcFile dir, CallContext context, 
+            Class<? extends ContainerStat> statType) throws IOException{
+        DatasetContainer container = dir.getAttributeView(ContainerViewProvider.class).withView(statType);
+        BasicStat stat = (BasicStat) container.getStat();
+        while(stat.getChildCount() == 1 && stat.getFolderCount() + stat.getGroupCount() == 1){
+            List<DatasetContainer> children = getContainers(dir.getPath(), context, 0, 1);
+            if(children.isEmpty()){
+                break;
+            }
+            dir = getProvider().getFile(dir.getPath().resolve(children.get(0).getName()), context);
+            container = dir.getAttributeView(ContainerViewProvider.class).withView(statType);
+            stat = (BasicStat) container.getStat();
+        }
+        return container;
+    }
+    
+    /**
+     * Get the child containers of a directory, without stats, from the cached children.
+     */
+    private List<DatasetContainer> getContainers(java.nio.file.Path dir, CallContext context, 
+            int offset, int max) throws IOException{
+        List<DatasetContainer> ret = new ArrayList<>();
+        int count = 0;
+        try(DirectoryStream<java.nio.file.Path> stream = getProvider()
+                .newOptimizedDirectoryStream(dir, context, DcFileSystemProvider.ACCEPT_ALL_FILTER, 
+                    -1, Optional.of(DatasetView.EMPTY))) {
+            Iterator<java.nio.file.Path> iter = stream.iterator();
+            while(iter.hasNext() && ret.size() < max){
+                java.nio.file.Path p = iter.next();
+                DcFile file;
+                try {
+                    file = getProvider().getFile(p, context);
+                } catch (AccessDeniedException ex){
+                    continue;
+                }
+                if(file.isDirectory() && count++ >= offset){
+                    ret.add(file.getAttributeView(ContainerViewProvider.class).withView(null));
+                }
+            }
+        }
+        return ret;
+    }
+
 }
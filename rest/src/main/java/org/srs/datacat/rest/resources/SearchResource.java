@@ -1,6 +1,11 @@
 package org.srs.datacat.rest.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.NoSuchFileException;
 import java.text.ParseException;
@@ -9,6 +14,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.inject.Inject;
@@ -20,21 +29,35 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Configuration;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
 import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.PathSegment;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import org.srs.datacat.model.DatasetContainer;
 import org.srs.datacat.model.DatasetModel;
 import org.srs.datacat.model.DatasetResultSetModel;
 import org.srs.datacat.model.DatasetView;
+import org.srs.datacat.model.security.CallContext;
 import org.srs.datacat.shared.RequestView;
 import org.srs.datacat.rest.BaseResource;
 import static org.srs.datacat.rest.BaseResource.OPTIONAL_EXTENSIONS;
 import org.srs.datacat.rest.SearchPluginProvider;
 import org.srs.datacat.rest.RestException;
+import org.srs.datacat.rest.WorkloadExecutors.Workload;
 import org.srs.datacat.model.RecordType;
+import org.srs.datacat.vfs.DcFileSystemProvider;
+import org.srs.datacat.vfs.SearchResultCache;
 
 /**
  *
@@ -42,8 +65,39 @@ import org.srs.datacat.model.RecordType;
  */
 @Path("/search" + OPTIONAL_EXTENSIONS)
 public class SearchResource extends BaseResource {
+    
+    /**
+     * Time limit for a search, in seconds, including time spent waiting to run. 
+     * Zero or less means no limit.
+     */
+    public static final String TIMEOUT = "org.srs.datacat.rest.search.timeout";
+    public static final int DEFAULT_TIMEOUT = 120;
+
+    /**
+     * Value of the "type" parameter to search for containers instead of datasets.
+     */
+    public static final String CONTAINER_SEARCH = "containers";
+
+    /**
+     * Size of the search result cache, in megabytes. Zero or less, the default, disables it.
+     * Only writes through this server drop cached results, see {@link SearchResultCache}.
+     */
+    public static final String CACHE_SIZE = "org.srs.datacat.rest.search.cache.size";
+    /**
+     * Time search results are cached for, in seconds. Writes by other servers may not be seen for
+     * this long, so it's at most {@link #MAX_CACHE_TTL}.
+     */
+    public static final String CACHE_TTL = "org.srs.datacat.rest.search.cache.ttl";
+    public static final int DEFAULT_CACHE_TTL = 30;
+    public static final int MAX_CACHE_TTL = 60;
+    
+    private static final MediaType[] SEARCH_TYPES = {
+        MediaType.APPLICATION_JSON_TYPE, MediaType.APPLICATION_XML_TYPE, MediaType.TEXT_PLAIN_TYPE};
+
     private final String searchRegex = "{id: [^\\?]+}";
     @Inject SearchPluginProvider pluginProvider;
+    @Context Configuration config;
+    @Context HttpHeaders requestHeaders;
 
     private UriInfo ui;
     private List<PathSegment> pathSegments;
@@ -68,35 +122,118 @@ public class SearchResource extends BaseResource {
     @GET
     @Path(searchRegex)
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
-    public Response find(
+    public void find(@Suspended AsyncResponse asyncResponse,
             @QueryParam("recurse") boolean recurse,
             @QueryParam("sites") List<String> sites,
-            @QueryParam("filter") String filter,
-            @QueryParam("containerFilter") String containerFilter,
-            @QueryParam("sort") List<String> sortParams,
-            @QueryParam("show") List<String> metadata,
-            @DefaultValue("100000") @QueryParam("max") int max,
-            @DefaultValue("0") @QueryParam("offset") int offset){
-
-        String pathPattern = requestPath;
-        String[] metafields = metadata.toArray(new String[0]);
-        String[] sortFields = sortParams.toArray(new String[0]);
+            @QueryParam("filter") final String filter,
+            @QueryParam("containerFilter") final String containerFilter,
+            @QueryParam("sort") final List<String> sortParams,
+            @QueryParam("show") final List<String> metadata,
+            @DefaultValue("100000") @QueryParam("max") final int max,
+            @DefaultValue("0") @QueryParam("offset") final int offset,
+            @QueryParam("groupBy") final List<String> groupBy,
+            @QueryParam("aggregate") final List<String> aggregates,
+            @QueryParam("facet") final List<String> facets,
+            @DefaultValue("20") @QueryParam("facetLimit") final int facetLimit,
+            @DefaultValue("datasets") @QueryParam("type") final String type) throws IOException{
+        final List<String> targets = Arrays.asList(requestPath);
+        applyDeadline(asyncResponse);
+        submit(Workload.SEARCH, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                if(CONTAINER_SEARCH.equals(type)){
+                    return findContainers(targets, filter, sortParams, metadata, max, offset);
+                }
+                if(!facets.isEmpty()){
+                    return facets(targets, filter, containerFilter, facets, facetLimit);
+                }
+                if(!aggregates.isEmpty()){
+                    return aggregate(targets, filter, containerFilter, groupBy, aggregates);
+                }
+                return find(targets, filter, containerFilter, sortParams, metadata, max, offset);
+            }
+        });
+    }
 
-        DatasetView dv = null;
-        try {
-            RequestView rv = new RequestView(RecordType.DATASET, requestMatrixParams);
-            if(rv.getPrimaryView() == RequestView.CHILDREN || rv.getPrimaryView() == RequestView.METADATA){
-                throw new IllegalArgumentException("Children and Metadata views not available when searching");
+    @POST
+    @Path(searchRegex)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
+    public void find(@Suspended AsyncResponse asyncResponse,
+            @FormParam("targets") final List<String> targets,
+            @FormParam("recurse") boolean recurse,
+            @FormParam("sites") List<String> sites,
+            @FormParam("filter") final String filter,
+            @FormParam("containerFilter") final String containerFilter,
+            @FormParam("sort") final List<String> sortParams,
+            @FormParam("show") final List<String> metadata,
+            @DefaultValue("100000") @FormParam("max") final int max,
+            @DefaultValue("0") @FormParam("offset") final int offset,
+            @FormParam("groupBy") final List<String> groupBy,
+            @FormParam("aggregate") final List<String> aggregates,
+            @FormParam("facet") final List<String> facets,
+            @DefaultValue("20") @FormParam("facetLimit") final int facetLimit,
+            @DefaultValue("datasets") @FormParam("type") final String type) throws IOException{
+        applyDeadline(asyncResponse);
+        submit(Workload.SEARCH, asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws IOException{
+                if(CONTAINER_SEARCH.equals(type)){
+                    return findContainers(targets, filter, sortParams, metadata, max, offset);
+                }
+                if(!facets.isEmpty()){
+                    return facets(targets, filter, containerFilter, facets, facetLimit);
+                }
+                if(!aggregates.isEmpty()){
+                    return aggregate(targets, filter, containerFilter, groupBy, aggregates);
+                }
+                return find(targets, filter, containerFilter, sortParams, metadata, max, offset);
             }
-            dv = rv.getDatasetView(DatasetView.MASTER);
-        } catch(IllegalArgumentException ex) {
-            throw new RestException(ex, 400, "Unable to process view", ex.getMessage());
+        });
+    }
+
+    /**
+     * Set the deadline for the search. When it passes, or the client disconnects, the call is
+     * cancelled, which cancels any statement still running.
+     */
+    private void applyDeadline(AsyncResponse asyncResponse) throws IOException{
+        Object value = config != null ? config.getProperty(TIMEOUT) : null;
+        int timeout = value != null ? Integer.parseInt(value.toString().trim()) : DEFAULT_TIMEOUT;
+        final CallContext context = buildCallContext();
+        if(timeout > 0){
+            context.setDeadline(timeout, TimeUnit.SECONDS);
+            asyncResponse.setTimeout(timeout, TimeUnit.SECONDS);
+            asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+                @Override
+                public void handleTimeout(AsyncResponse asyncResponse){
+                    context.cancel();
+                    asyncResponse.resume(abortedException(new TimeoutException("Search deadline passed")));
+                }
+            });
         }
+        asyncResponse.register(new ConnectionCallback() {
+            @Override
+            public void onDisconnect(AsyncResponse disconnected){
+                context.cancel();
+            }
+        });
+    }
+    
+    private static RestException abortedException(Exception ex){
+        return new RestException(ex, 503, "Search was aborted", 
+                "The search didn't complete within its time limit");
+    }
+
+    public Response find(List<String> targets, String filter, String containerFilter, 
+            List<String> sortParams, List<String> metadata, int max, int offset) throws IOException{
+
+        String[] metafields = metadata.toArray(new String[0]);
+        String[] sortFields = sortParams.toArray(new String[0]);
+        DatasetView dv = getSearchView();
 
         DatasetResultSetModel searchResults = null;
         try(DirectoryStream<DatasetModel> stream
-                = getProvider().search(Arrays.asList(pathPattern), buildCallContext(), 
-                        dv, filter, containerFilter, metafields, sortFields)) {
+                = getProvider().search(targets, buildCallContext(), dv, filter,
+                        containerFilter, metafields, sortFields)) {
             List<DatasetModel> datasets = new ArrayList<>();
             int count = 0;
             Iterator<DatasetModel> iter = stream.iterator();
@@ -111,9 +248,17 @@ public class SearchResource extends BaseResource {
                     .results(datasets).count(count).build();
         } catch(IllegalArgumentException ex) {
             throw new RestException(ex, 400, "Unable to process query, see message", ex.getMessage());
+        } catch(IllegalStateException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
+            throw ex;
         } catch(NoSuchFileException ex) {
             throw new RestException(ex, 404, "File doesn't exist", ex.getMessage());
         } catch(IOException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
             Logger.getLogger(SearchResource.class.getName()).log(Level.WARNING, "Unknown exception", ex);
             throw new RestException(ex, 500);
         } catch(ParseException ex) {
@@ -122,61 +267,206 @@ public class SearchResource extends BaseResource {
         return Response.ok(new GenericEntity<DatasetResultSetModel>(searchResults) {}).build();
     }
 
-    @POST
-    @Path(searchRegex)
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
-    public Response find(
-            @FormParam("targets") List<String> targets,
-            @FormParam("recurse") boolean recurse,
-            @FormParam("sites") List<String> sites,
-            @FormParam("filter") String filter,
-            @FormParam("containerFilter") String containerFilter,
-            @FormParam("sort") List<String> sortParams,
-            @FormParam("show") List<String> metadata,
-            @DefaultValue("100000") @FormParam("max") int max,
-            @DefaultValue("0") @FormParam("offset") int offset){
-
-        String[] metafields = metadata.toArray(new String[0]);
-        String[] sortFields = sortParams.toArray(new String[0]);
+    /**
+     * Aggregate the datasets matching a search, instead of returning them. Each row of the result
+     * has the group by fields and the aggregates, as in {@code sum(fileSizeBytes)}.
+     */
+    public Response aggregate(List<String> targets, String filter, String containerFilter, 
+            List<String> groupBy, List<String> aggregates) throws IOException{
+        DatasetView dv = getSearchView();
+        List<Map<String, Object>> results;
+        try {
+            results = getProvider().aggregate(targets, buildCallContext(), dv, filter, containerFilter,
+                    groupBy.toArray(new String[0]), aggregates.toArray(new String[0]));
+        } catch(IllegalArgumentException ex) {
+            throw new RestException(ex, 400, "Unable to process aggregation, see message", ex.getMessage());
+        } catch(IllegalStateException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
+            throw ex;
+        } catch(NoSuchFileException ex) {
+            throw new RestException(ex, 404, "File doesn't exist", ex.getMessage());
+        } catch(IOException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
+            Logger.getLogger(SearchResource.class.getName()).log(Level.WARNING, "Unknown exception", ex);
+            throw new RestException(ex, 500);
+        } catch(ParseException ex) {
+            throw new RestException(ex, 422, "Unable to parse filter", ex.getMessage());
+        }
+        return Response.ok(new GenericEntity<List<Map<String, Object>>>(results) {}).build();
+    }
 
-        DatasetView dv = null;
+    /**
+     * Count the distinct values of fields over the datasets matching a search, instead of
+     * returning them. For each field, the result has its most common values first, each with a
+     * value and a count.
+     */
+    public Response facets(List<String> targets, String filter, String containerFilter, 
+            List<String> fields, int limit) throws IOException{
+        DatasetView dv = getSearchView();
+        Map<String, List<Map<String, Object>>> results;
         try {
-            RequestView rv = new RequestView(RecordType.DATASET, requestMatrixParams);
-            if(rv.getPrimaryView() == RequestView.CHILDREN || rv.getPrimaryView() == RequestView.METADATA){
-                throw new IllegalArgumentException("Children and Metadata views not available when searching");
+            if(limit < 0){
+                throw new IllegalArgumentException("The facet limit must not be negative");
             }
-            dv = rv.getDatasetView(DatasetView.MASTER);
+            results = getProvider().facets(targets, buildCallContext(), dv, filter, containerFilter,
+                    fields.toArray(new String[0]), limit);
         } catch(IllegalArgumentException ex) {
-            throw new RestException(ex, 400, "Unable to process view", ex.getMessage());
+            throw new RestException(ex, 400, "Unable to process facets, see message", ex.getMessage());
+        } catch(IllegalStateException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
+            throw ex;
+        } catch(NoSuchFileException ex) {
+            throw new RestException(ex, 404, "File doesn't exist", ex.getMessage());
+        } catch(IOException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
+            Logger.getLogger(SearchResource.class.getName()).log(Level.WARNING, "Unknown exception", ex);
+            throw new RestException(ex, 500);
+        } catch(ParseException ex) {
+            throw new RestException(ex, 422, "Unable to parse filter", ex.getMessage());
         }
+        return Response.ok(new GenericEntity<Map<String, List<Map<String, Object>>>>(results) {}).build();
+    }
 
-        DatasetResultSetModel searchResults = null;
-        try(DirectoryStream<DatasetModel> stream
-                = getProvider().search(targets, buildCallContext(), dv, filter,
-                        containerFilter, metafields, sortFields)) {
-            List<DatasetModel> datasets = new ArrayList<>();
-            int count = 0;
-            Iterator<DatasetModel> iter = stream.iterator();
-            for(int i = 0; iter.hasNext(); i++, count++){
-                if(i >= offset && i < (offset + max)){
-                    datasets.add(iter.next());
-                } else {
-                    iter.next();
-                }
-            }
-            searchResults = getProvider().getModelProvider().getDatasetResultSetBuilder()
-                    .results(datasets).count(count).build();
+    /**
+     * Search for containers instead of datasets. The database sorts the containers and applies the
+     * limit. JSON responses are streamed, containers are written to the response as they are read.
+     * Other types are written as one entity.
+     */
+    public Response findContainers(List<String> targets, String filter, List<String> sortParams,
+            List<String> metadata, int max, final int offset) throws IOException{
+        if(max < 0 || offset < 0){
+            throw new RestException(new IllegalArgumentException(), 400, "Invalid max or offset");
+        }
+        final DirectoryStream<DatasetContainer> stream;
+        try {
+            int maxResults = (int) Math.min((long) offset + max, Integer.MAX_VALUE);
+            stream = getProvider().searchContainers(targets, buildCallContext(), filter,
+                    metadata.toArray(new String[0]), sortParams.toArray(new String[0]), maxResults);
         } catch(IllegalArgumentException ex) {
             throw new RestException(ex, 400, "Unable to process query, see message", ex.getMessage());
         } catch(NoSuchFileException ex) {
             throw new RestException(ex, 404, "File doesn't exist", ex.getMessage());
         } catch(IOException ex) {
+            if(buildCallContext().isAborted()){
+                throw abortedException(ex);
+            }
             Logger.getLogger(SearchResource.class.getName()).log(Level.WARNING, "Unknown exception", ex);
             throw new RestException(ex, 500);
         } catch(ParseException ex) {
             throw new RestException(ex, 422, "Unable to parse filter", ex.getMessage());
         }
-        return Response.ok(new GenericEntity<DatasetResultSetModel>(searchResults) {}).build();
+        ObjectMapper mapper = acceptsJson() ? getJsonMapper(DatasetContainer.class) : null;
+        if(mapper == null){
+            List<DatasetContainer> containers = new ArrayList<>();
+            try(DirectoryStream<DatasetContainer> results = stream) {
+                int i = 0;
+                for(DatasetContainer container: results){
+                    if(i++ >= offset){
+                        containers.add(container);
+                    }
+                }
+            }
+            return Response.ok(new GenericEntity<List<DatasetContainer>>(containers) {}).build();
+        }
+        return Response.ok(new ContainerOutput(stream, mapper.writerFor(DatasetContainer.class), offset),
+                MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Writes containers from a search to a JSON array. The stream is closed once the containers are
+     * written, or if the response is never written.
+     */
+    private static class ContainerOutput implements StreamingOutput, Closeable {
+        private final DirectoryStream<DatasetContainer> stream;
+        private final ObjectWriter writer;
+        private final int offset;
+
+        ContainerOutput(DirectoryStream<DatasetContainer> stream, ObjectWriter writer, int offset){
+            this.stream = stream;
+            this.writer = writer;
+            this.offset = offset;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException{
+            try(DirectoryStream<DatasetContainer> results = stream;
+                    JsonGenerator generator = writer.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                int i = 0;
+                for(DatasetContainer container: results){
+                    if(i++ >= offset){
+                        writer.writeValue(generator, container);
+                    }
+                }
+                generator.writeEndArray();
+            }
+        }
+
+        @Override
+        public void close() throws IOException{
+            stream.close();
+        }
+    }
+
+    /**
+     * Whether the response will be JSON. The first acceptable type we can produce wins, as it
+     * does when the entity is written.
+     */
+    private boolean acceptsJson(){
+        for(MediaType accepted: requestHeaders.getAcceptableMediaTypes()){
+            for(MediaType produced: SEARCH_TYPES){
+                if(accepted.isCompatible(produced)){
+                    return produced == MediaType.APPLICATION_JSON_TYPE;
+                }
+            }
+        }
+        return true;
+    }
+
+    private DatasetView getSearchView(){
+        try {
+            RequestView rv = new RequestView(RecordType.DATASET, requestMatrixParams);
+            if(rv.getPrimaryView() == RequestView.CHILDREN || rv.getPrimaryView() == RequestView.METADATA){
+                throw new IllegalArgumentException("Children and Metadata views not available when searching");
+            }
+            return rv.getDatasetView(DatasetView.MASTER);
+        } catch(IllegalArgumentException ex) {
+            throw new RestException(ex, 400, "Unable to process view", ex.getMessage());
+        }
+    }
+
+    /**
+     * Sets up the search result cache of a provider from the application's configuration.
+     */
+    public static class SearchCacheFeature implements Feature {
+        private final DcFileSystemProvider provider;
+
+        public SearchCacheFeature(DcFileSystemProvider provider){
+            this.provider = provider;
+        }
+
+        @Override
+        public boolean configure(FeatureContext context){
+            Object size = context.getConfiguration().getProperty(CACHE_SIZE);
+            Object ttl = context.getConfiguration().getProperty(CACHE_TTL);
+            long megabytes = size != null ? Long.parseLong(size.toString().trim()) : 0;
+            long seconds = ttl != null ? Long.parseLong(ttl.toString().trim()) : DEFAULT_CACHE_TTL;
+            if(megabytes <= 0 || seconds <= 0){
+                provider.setSearchResultCache(null);
+                return false;
+            }
+            provider.setSearchResultCache(new SearchResultCache(megabytes * 1024 * 1024,
+                    TimeUnit.SECONDS.toMillis(Math.min(seconds, MAX_CACHE_TTL))));
+            return true;
+        }
     }
 
 }
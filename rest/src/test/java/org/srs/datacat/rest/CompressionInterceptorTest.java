@@ -0,0 +1,144 @@
+package org.srs.datacat.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import junit.framework.TestCase;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Test;
+import org.srs.datacat.rest.resources.ContainerResource;
+import org.srs.datacat.rest.resources.DatasetsResource;
+import org.srs.datacat.rest.resources.PathResource;
+import org.srs.datacat.rest.resources.TestSecurityFilter;
+import static org.srs.datacat.rest.resources.DatasetsResourceTest.generateFoldersAndDatasetsAndVersions;
+import org.srs.datacat.shared.Provider;
+import org.srs.datacat.test.DbHarness;
+import org.srs.datacat.vfs.TestUtils;
+
+/**
+ * Checks response compression.
+ *
+ * @author bvan
+ */
+public class CompressionInterceptorTest extends JerseyTest {
+    private final Provider modelProvider = new Provider();
+
+    @Override
+    protected Application configure(){
+        DbHarness harness = null;
+        try {
+            harness = DbHarness.getDbHarness();
+        } catch(SQLException ex) {
+            System.out.println(ex);
+        }
+
+        ResourceConfig app = new App(harness.getDataSource(), modelProvider, TestUtils.getLookupService())
+                .register(TestSecurityFilter.class)
+                .register(ContainerResource.class)
+                .register(PathResource.class)
+                .register(DatasetsResource.class);
+        app.property(CompressionInterceptor.THRESHOLD, 1024);
+        return app;
+    }
+
+    @Test
+    public void testThreshold() throws IOException{
+        generateFoldersAndDatasetsAndVersions(this, 2, 2);
+        Response resp = target("/path.json/testpath")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+        TestCase.assertNull("Small entities shouldn't be compressed",
+                resp.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        TestCase.assertEquals(HttpHeaders.ACCEPT_ENCODING, resp.getHeaderString(HttpHeaders.VARY));
+        TestCase.assertTrue(resp.readEntity(String.class).startsWith("{\"_type\":\"folder\""));
+    }
+
+    @Test
+    public void testNegotiation() throws IOException{
+        generateFoldersAndDatasetsAndVersions(this, 2, 100);
+        String path = "/path.json/testpath/folder00001;children";
+
+        Response resp = get(path, null);
+        TestCase.assertNull(resp.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        TestCase.assertEquals(HttpHeaders.ACCEPT_ENCODING, resp.getHeaderString(HttpHeaders.VARY));
+        String expected = resp.readEntity(String.class);
+
+        resp = get(path, "deflate;q=0, gzip");
+        TestCase.assertEquals("gzip", resp.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        byte[] raw = resp.readEntity(byte[].class);
+        TestCase.assertEquals(expected, inflate(new GZIPInputStream(new ByteArrayInputStream(raw))));
+
+        resp = get(path, "deflate");
+        TestCase.assertEquals("deflate", resp.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        raw = resp.readEntity(byte[].class);
+        TestCase.assertEquals(expected, inflate(new InflaterInputStream(new ByteArrayInputStream(raw))));
+
+        resp = get(path, "br");
+        TestCase.assertNull(resp.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        resp.close();
+    }
+
+    @Test
+    public void testCompressedStream() throws IOException{
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.ETAG, new EntityTag("1-abc"));
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CompressionInterceptor.ThresholdOutputStream out
+                = new CompressionInterceptor.ThresholdOutputStream(target, headers, "gzip", 16);
+        byte[] small = "0123456789".getBytes("UTF-8");
+        out.write(small);
+        out.flush();
+        TestCase.assertEquals("Nothing is written while deciding", 0, target.size());
+        TestCase.assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING));
+
+        out.write(small);
+        out.flush();
+        TestCase.assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        TestCase.assertEquals(new EntityTag("1-abc", true), headers.getFirst(HttpHeaders.ETAG));
+        // A flush sends everything written so far
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()));
+        byte[] flushed = new byte[small.length * 2];
+        int read = 0;
+        while(read < flushed.length){
+            read += in.read(flushed, read, flushed.length - read);
+        }
+        TestCase.assertEquals("01234567890123456789", new String(flushed, "UTF-8"));
+
+        out.finish();
+        TestCase.assertEquals("01234567890123456789",
+                inflate(new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()))));
+    }
+
+    private Response get(String path, String acceptEncoding){
+        return target(path)
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding)
+                .get();
+    }
+
+    private static String inflate(InputStream in) throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while((n = in.read(buf)) > 0){
+            out.write(buf, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+
+}
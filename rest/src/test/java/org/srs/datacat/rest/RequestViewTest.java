@@ -66,4 +66,23 @@ public class RequestViewTest extends TestCase {
 
     }
     
+    public void testPage(){
+        Map<String,List<String>> mvmap = UriComponent.decodeMatrix( "/path;view=page;v=current", true);
+        RequestView rv = new RequestView(RecordType.FOLDER, mvmap);
+        assertEquals(RequestView.PAGE, rv.getPrimaryView());
+        
+        mvmap = UriComponent.decodeMatrix( "/path;view=page", true);
+        rv = new RequestView(RecordType.DATASET, mvmap);
+        assertEquals(RequestView.PAGE, rv.getPrimaryView());
+        
+        // Should fail
+        for(String path: new String[]{"/path;view=page;children", "/path;view=page;metadata", "/path;view=bogus"}){
+            mvmap = UriComponent.decodeMatrix(path, true);
+            try {
+                new RequestView(RecordType.FOLDER, mvmap);
+                fail("Should have failed: " + path);
+            } catch (IllegalArgumentException ex){}
+        }
+    }
+    
 }
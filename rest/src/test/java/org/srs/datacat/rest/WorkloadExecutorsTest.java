@@ -0,0 +1,125 @@
+package org.srs.datacat.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Response;
+import junit.framework.TestCase;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Test;
+import org.srs.datacat.metrics.Metrics;
+import org.srs.datacat.rest.WorkloadExecutors.Workload;
+import org.srs.datacat.rest.resources.MetricsResource;
+import org.srs.datacat.rest.resources.TestSecurityFilter;
+import org.srs.datacat.shared.Provider;
+import org.srs.datacat.test.DbHarness;
+import org.srs.datacat.vfs.TestUtils;
+
+/**
+ * Checks that a full workload queue results in a 503, and doesn't affect other workloads.
+ *
+ * @author bvan
+ */
+public class WorkloadExecutorsTest extends JerseyTest {
+    private static final CountDownLatch LATCH = new CountDownLatch(1);
+    private final Provider modelProvider = new Provider();
+
+    @Path("/slow")
+    public static class SlowResource extends BaseResource {
+        @GET
+        public void get(@Suspended AsyncResponse asyncResponse) throws IOException{
+            submit(Workload.SEARCH, asyncResponse, new Callable<Response>() {
+                @Override
+                public Response call() throws Exception{
+                    LATCH.await(10, TimeUnit.SECONDS);
+                    return Response.ok("done").build();
+                }
+            });
+        }
+    }
+
+    @Override
+    protected Application configure(){
+        DbHarness harness = null;
+        try {
+            harness = DbHarness.getDbHarness();
+        } catch(SQLException ex) {
+            System.out.println(ex);
+        }
+
+        ResourceConfig app = new App(harness.getDataSource(), modelProvider, TestUtils.getLookupService())
+                .register(TestSecurityFilter.class)
+                .register(SlowResource.class)
+                .register(MetricsResource.class);
+        app.property(WorkloadExecutors.PROPERTY_PREFIX + "search.threads", 1);
+        app.property(WorkloadExecutors.PROPERTY_PREFIX + "search.queue", 1);
+        app.property(MetricsResource.GROUP, "test_group@SRS");
+        return app;
+    }
+
+    @Test
+    public void testRejection() throws Exception{
+        AtomicLong rejected = Metrics.counter("rest.workload.search.rejected");
+        long initial = rejected.get();
+        List<Future<Response>> responses = new ArrayList<>();
+        for(int i = 0; i < 3; i++){
+            responses.add(target("/slow").request().async().get());
+        }
+        for(int i = 0; i < 100 && rejected.get() == initial; i++){
+            Thread.sleep(50);
+        }
+        TestCase.assertEquals("One request should be rejected", initial + 1, rejected.get());
+
+        // Other workloads are still served
+        Response resp = target("/metrics.json").request().get();
+        TestCase.assertEquals("Metrics are only for members of the metrics group", 403, resp.getStatus());
+        resp = target("/metrics.json").request().header("authentication", DbHarness.TEST_USER).get();
+        TestCase.assertEquals(200, resp.getStatus());
+        TestCase.assertTrue(resp.readEntity(String.class).contains("\"rest.workload.search.queued\""));
+
+        LATCH.countDown();
+        int ok = 0;
+        int unavailable = 0;
+        for(Future<Response> future: responses){
+            resp = future.get(10, TimeUnit.SECONDS);
+            if(resp.getStatus() == 200){
+                ok++;
+            } else {
+                TestCase.assertEquals(503, resp.getStatus());
+                TestCase.assertEquals("1", resp.getHeaderString("Retry-After"));
+                unavailable++;
+            }
+        }
+        TestCase.assertEquals(2, ok);
+        TestCase.assertEquals(1, unavailable);
+    }
+
+    @Test
+    public void testCloseUnwrittenEntity(){
+        final AtomicLong closed = new AtomicLong();
+        Closeable entity = new Closeable() {
+            @Override
+            public void close(){
+                closed.incrementAndGet();
+            }
+        };
+        WorkloadExecutors.closeEntity(Response.ok(entity).build());
+        TestCase.assertEquals(1, closed.get());
+        WorkloadExecutors.closeEntity(Response.ok("done").build());
+        WorkloadExecutors.closeEntity(null);
+    }
+
+}
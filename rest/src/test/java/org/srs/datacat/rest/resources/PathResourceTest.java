@@ -8,7 +8,13 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.Response;
 import junit.framework.TestCase;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -152,5 +158,126 @@ public class PathResourceTest extends JerseyTest {
         TestCase.assertEquals(404, resp.getStatus());
     }
 
+    @Test
+    public void testGetChildrenAfter() throws IOException{
+        generateFoldersAndDatasetsAndVersions(this, 10, 10);
+        List<String> names = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        while(cursor != null){
+            Response resp = target("/path.json/testpath/folder00004;children")
+                    .queryParam("after", cursor)
+                    .queryParam("max", 3)
+                    .request()
+                    .header("authentication", DbHarness.TEST_USER)
+                    .get();
+            TestCase.assertEquals(200, resp.getStatus());
+            cursor = resp.getHeaderString("x-pagination-after");
+            if(cursor != null){
+                TestCase.assertTrue(resp.getHeaderString("Link").contains("after=" + cursor));
+                TestCase.assertTrue(resp.getHeaderString("Link").endsWith("rel=next"));
+            }
+            List<Map<String, Object>> page = resp.readEntity(new GenericType<List<Map<String, Object>>>(){});
+            TestCase.assertTrue(page.size() <= 3);
+            for(Map<String, Object> child: page){
+                names.add((String) child.get("name"));
+            }
+            pages++;
+        }
+        TestCase.assertEquals(4, pages);
+        TestCase.assertEquals(10, names.size());
+        for(int i = 1; i < names.size(); i++){
+            TestCase.assertTrue(names.get(i - 1).compareTo(names.get(i)) < 0);
+        }
+        
+        Response resp = target("/path.json/testpath/folder00004;children")
+                .queryParam("after", "!!")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .get();
+        TestCase.assertEquals(400, resp.getStatus());
+    }
+
+    @Test
+    public void testConditionalGet() throws IOException{
+        generateFoldersAndDatasetsAndVersions(this, 5, 5);
+        Response resp = target("/path.json/testpath/folder00004")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+        EntityTag etag = resp.getEntityTag();
+        TestCase.assertNotNull(etag);
+        
+        resp = target("/path.json/testpath/folder00004")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .head();
+        TestCase.assertEquals(etag, resp.getEntityTag());
+        
+        resp = target("/path.json/testpath/folder00004")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .header("If-None-Match", etag)
+                .get();
+        TestCase.assertEquals(304, resp.getStatus());
+        
+        // A different view is a different entity
+        resp = target("/path.json/testpath/folder00004;stat=dataset")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .header("If-None-Match", etag)
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+    }
+    
+    @Test
+    public void testGetPage() throws IOException{
+        generateFoldersAndDatasetsAndVersions(this, 3, 5);
+        Response resp = target("/path.json/testpath/folder00001;view=page;v=current")
+                .queryParam("offset", 1)
+                .queryParam("max", 2)
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+        Map<String, Object> page = resp.readEntity(new GenericType<Map<String, Object>>(){});
+        TestCase.assertEquals("folder00001", ((Map) page.get("target")).get("name"));
+        TestCase.assertEquals("testpath", ((Map) page.get("parent")).get("name"));
+        TestCase.assertNotNull(((Map) page.get("target")).get("stat"));
+        TestCase.assertTrue(((String) ((Map) page.get("permissions")).get("permissions")).contains("r"));
+        TestCase.assertEquals(5, page.get("datasetCount"));
+        List<Map<String, Object>> datasets = (List<Map<String, Object>>) page.get("datasets");
+        TestCase.assertEquals(2, datasets.size());
+        TestCase.assertEquals("dataset00001", datasets.get(0).get("name"));
+        TestCase.assertEquals("dataset00002", datasets.get(1).get("name"));
+        TestCase.assertTrue(((List) page.get("containers")).isEmpty());
+        // A container with datasets includes its siblings
+        List<String> siblings = new ArrayList<>();
+        for(Map<String, Object> sibling: (List<Map<String, Object>>) page.get("siblings")){
+            siblings.add((String) sibling.get("name"));
+        }
+        TestCase.assertTrue(siblings.containsAll(Arrays.asList("folder00000", "folder00001", "folder00002")));
+        
+        resp = target("/path.json/testpath;view=page")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+        page = resp.readEntity(new GenericType<Map<String, Object>>(){});
+        TestCase.assertNull(page.get("parent"));
+        TestCase.assertNull(page.get("siblings"));
+        List<String> containers = new ArrayList<>();
+        for(Map<String, Object> container: (List<Map<String, Object>>) page.get("containers")){
+            containers.add((String) container.get("name"));
+        }
+        TestCase.assertTrue(containers.containsAll(Arrays.asList("folder00000", "folder00001", "folder00002")));
+        
+        resp = target("/path.json/testpath;view=page;children")
+                .request()
+                .header("authentication", DbHarness.TEST_USER)
+                .get();
+        TestCase.assertEquals(400, resp.getStatus());
+    }
     
 }
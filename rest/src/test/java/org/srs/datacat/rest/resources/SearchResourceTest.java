@@ -172,6 +172,37 @@ public class SearchResourceTest extends JerseyTest{
 
     }
     
+    @Test
+    public void testNegativeFacetLimit(){
+        Response resp = target("/search/testpath/*")
+                .queryParam("facet", "num")
+                .queryParam("facetLimit", -1)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        TestCase.assertEquals(400, resp.getStatus());
+    }
+
+    @Test
+    public void testContainerSearchTypes(){
+        // JSON is streamed
+        Response resp = target("/search/testpath/*")
+                .queryParam("type", SearchResource.CONTAINER_SEARCH)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+        TestCase.assertTrue(resp.getMediaType().isCompatible(MediaType.APPLICATION_JSON_TYPE));
+        TestCase.assertTrue(resp.readEntity(String.class).startsWith("[{"));
+
+        // Other types are written as an entity, rather than as JSON
+        resp = target("/search/testpath/*")
+                .queryParam("type", SearchResource.CONTAINER_SEARCH)
+                .request(MediaType.APPLICATION_XML)
+                .get();
+        TestCase.assertEquals(200, resp.getStatus());
+        TestCase.assertTrue(resp.getMediaType().isCompatible(MediaType.APPLICATION_XML_TYPE));
+        TestCase.assertTrue(resp.readEntity(String.class).startsWith("<"));
+    }
+
     private List<DatasetModel> doSearch(String pathPattern, String filter, int status){
         Response resp = target("/search" + pathPattern)
                 .queryParam( "filter", filter )
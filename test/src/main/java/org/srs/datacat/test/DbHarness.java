@@ -34,6 +34,11 @@ public abstract class DbHarness {
         } else {
             throw new IllegalArgumentException("unable to intiate database test harness");
         }
+        addTestRecords(h);
+        return h;
+    }
+
+    protected static void addTestRecords(DbHarness h) throws SQLException{
         Connection conn = h.getDataSource().getConnection();
         try {
             insertDatasetSource(conn, DbHarness.TEST_DATASET_SOURCE);
@@ -46,7 +51,6 @@ public abstract class DbHarness {
         } catch (SQLException ex){}
         conn.commit();
         conn.close();
-        return h;
     }
 
     protected static String insertDatasetSource(Connection conn, String source) throws SQLException{
@@ -35,6 +35,20 @@ public class HSqlDbHarness extends DbHarness {
     public static String JUNIT_DATASET_FILEFORMAT = "junit.test";
     
     protected HSqlDbHarness() throws SQLException{
+        this(url);
+    }
+
+    /**
+     * Create a separate in-memory database, such as a stand-in for a replica.
+     * @param name Name of the database
+     */
+    public static HSqlDbHarness newDatabase(String name) throws SQLException{
+        HSqlDbHarness h = new HSqlDbHarness("jdbc:hsqldb:mem:" + name);
+        addTestRecords(h);
+        return h;
+    }
+
+    protected HSqlDbHarness(String url) throws SQLException{
         
         try {
             Class.forName(driver);
@@ -51,6 +65,8 @@ public class HSqlDbHarness extends DbHarness {
             new PoolableConnectionFactory(connectionFactory, null);
         
         poolableConnectionFactory.setDefaultAutoCommit(false);
+        // Cache prepared statements for each pooled connection
+        poolableConnectionFactory.setPoolStatements(true);
 
         ObjectPool<PoolableConnection> connectionPool =
                 new GenericObjectPool<>(poolableConnectionFactory);
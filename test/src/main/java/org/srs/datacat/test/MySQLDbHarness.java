@@ -51,6 +51,8 @@ public class MySQLDbHarness extends DbHarness {
             new PoolableConnectionFactory(connectionFactory, null);
         
         poolableConnectionFactory.setDefaultAutoCommit(false);
+        // Cache prepared statements for each pooled connection
+        poolableConnectionFactory.setPoolStatements(true);
 
         ObjectPool<PoolableConnection> connectionPool =
                 new GenericObjectPool<>(poolableConnectionFactory);
@@ -12,6 +12,7 @@ import org.srs.webapps.datacat.auth.GroupManagerServerFeature;
 public class App extends org.srs.datacat.rest.App {
     public App(){
         super(Utils.initDatasource("jdbc/datacat-prod"),
+                Utils.initOptionalDatasource("jdbc/datacat-replica"),
                 Utils.initModelProvider(Provider.class),
                 Utils.initUserLookupService(GroupManagerAuthProvider.class)
         );
@@ -4,16 +4,21 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.client.ClientRequestFilter;
 import org.srs.datacat.client.Client;
 import org.srs.datacat.client.ClientBuilder;
+import org.srs.datacat.client.ConnectionPool;
 import org.srs.datacat.client.auth.HeaderFilter;
 import org.srs.datacat.model.DatacatNode;
 import org.srs.datacat.model.DatasetContainer;
@@ -22,10 +27,9 @@ import org.srs.datacat.model.DatasetView;
 import org.srs.datacat.model.RecordType;
 import org.srs.datacat.model.security.DcAclEntry;
 import org.srs.datacat.model.security.DcPermissions;
-import org.srs.datacat.shared.BasicStat;
+import org.srs.datacat.rest.PageModel;
 import org.srs.datacat.shared.DatasetStat;
 import org.srs.datacat.shared.RequestView;
-import org.srs.vfs.PathUtils;
 import org.srs.webapps.datacat.model.NodeTargetModel;
 import org.srs.webapps.datacat.model.ApplicationUriInfo;
 
@@ -35,6 +39,11 @@ import org.srs.webapps.datacat.model.ApplicationUriInfo;
  */
 public class ControllerUtils {
     static final int DEFAULT_MAX = 100;
+    static final String CLIENT_PARAM_PREFIX = "org.srs.datacat.client.";
+    static final String CLIENT_URL_PARAM = CLIENT_PARAM_PREFIX + "url";
+    private static final Object CLIENT_LOCK = new Object();
+    private static volatile Client sharedClient;
+    private static ConnectionPool connectionPool;
     
     
     private static ClientRequestFilter getCasClientFilter(HttpServletRequest request){
@@ -71,17 +80,84 @@ public class ControllerUtils {
         return getPassThroughFilter(request);
     }
     
+    /**
+     * Get a client for the REST API, authenticated as the user of the request. All requests share
+     * one client, and its pool of persistent connections.
+     */
     public static Client getClient(HttpServletRequest request) throws IOException{
-        String localUrl = String.format("%s://%s:%s%s/r",
-                request.getScheme(), request.getServerName(), request.getServerPort(),
+        return getSharedClient(request).withRequestFilter(getClientFilter(request));
+    }
+
+    private static Client getSharedClient(HttpServletRequest request) throws IOException{
+        Client client = sharedClient;
+        if(client != null){
+            return client;
+        }
+        synchronized(CLIENT_LOCK){
+            if(sharedClient == null){
+                try {
+                    sharedClient = ClientBuilder.newBuilder()
+                            .setUrl(getRestUrl(request))
+                            .setConnectionPool(getConnectionPool(request.getServletContext()))
+                            .build();
+                } catch(URISyntaxException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            return sharedClient;
+        }
+    }
+
+    /**
+     * The base URL of the REST API, from the {@value #CLIENT_URL_PARAM} init parameter. Without
+     * it, the API of this application is used, through the port the request came in on. The
+     * Host header is never used, the client would follow whatever the caller put in it.
+     */
+    static String getRestUrl(HttpServletRequest request){
+        String url = request.getServletContext().getInitParameter(CLIENT_URL_PARAM);
+        if(url != null){
+            return url;
+        }
+        return String.format("%s://localhost:%d%s/r", request.getScheme(), request.getLocalPort(),
                 request.getContextPath());
-        try {
-            return ClientBuilder.newBuilder()
-                    .setUrl(localUrl)
-                    .addClientRequestFilter(getClientFilter(request))
-                    .build();
-        } catch(URISyntaxException ex) {
-            throw new IOException(ex);
+    }
+
+    private static ConnectionPool getConnectionPool(ServletContext context){
+        synchronized(CLIENT_LOCK){
+            if(connectionPool == null){
+                Map<String, String> config = new HashMap<>();
+                for(String key: Arrays.asList("maxConnections", "maxConnectionsPerRoute", "idleTimeout")){
+                    String value = context.getInitParameter(CLIENT_PARAM_PREFIX + key);
+                    if(value != null){
+                        config.put(key, value);
+                    }
+                }
+                connectionPool = ConnectionPool.fromConfig(config);
+            }
+            return connectionPool;
+        }
+    }
+
+    /**
+     * Closes the shared client and its connections when the application stops.
+     */
+    public static class SharedClientListener implements ServletContextListener {
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce){ }
+
+        @Override
+        public void contextDestroyed(ServletContextEvent sce){
+            synchronized(CLIENT_LOCK){
+                if(sharedClient != null){
+                    sharedClient.close();
+                    sharedClient = null;
+                }
+                if(connectionPool != null){
+                    connectionPool.close();
+                    connectionPool = null;
+                }
+            }
         }
     }
 
@@ -91,21 +167,29 @@ public class ControllerUtils {
         String path = info.getDatacatPath();
         NodeTargetModel requestModel = new NodeTargetModel(info);
         HashMap<String, List<String>> requestQueryParams = getQueryParams(request);
-        
-        // This Assumes all REST requests are routed to the same base URL
-        Client client = getClient(request); 
-        DatacatNode target = client.getObject(path, "current", "all");
 
-        if(target.getType().isContainer()){
-            target = client.getContainer(path, "dataset");
-        }
-        String parentPath = PathUtils.getParentPath(target.getPath());
-        if(parentPath.length() > 1){
-            requestModel.setParent(client.getContainer(parentPath, "dataset"));
+        int offset = requestQueryParams.containsKey("offset")
+                ? Integer.valueOf(requestQueryParams.get("offset").get(0)) : 0;
+
+        int max = getMax(requestQueryParams);
+
+        int cmax = requestQueryParams.containsKey("cmax") ? 
+                Integer.valueOf(requestQueryParams.get("cmax").get(0)) : 100000;
+        int coffset = requestQueryParams.containsKey("coffset") ? 
+                Integer.valueOf(requestQueryParams.get("coffset").get(0)) : 0;
+        // Filtered or sorted datasets still need a search
+        boolean searchDatasets = requestQueryParams.containsKey("filter") || requestQueryParams.containsKey("sort");
+
+        Client client = getClient(request); 
+        PageModel page = client.getPage(path, null, null, offset, includeDatasets && !searchDatasets ? max : 0,
+                coffset, cmax);
+        DatacatNode target = page.getTarget();
+        if(page.getParent() != null){
+            requestModel.setParent(page.getParent());
         }
 
         requestModel.setTarget(target);
-        DcAclEntry e = client.getPermissions(path, null);
+        DcAclEntry e = page.getPermissions().entry();
         requestModel.setWritable(e.getPermissions().contains(DcPermissions.WRITE));
         requestModel.setDeletable(e.getPermissions().contains(DcPermissions.DELETE));
         requestModel.setInsertable(e.getPermissions().contains(DcPermissions.INSERT));
@@ -114,50 +198,30 @@ public class ControllerUtils {
             long ccCount = t.getGroupCount() + t.getFolderCount();
             long dsCount = t.getDatasetCount();
 
-            int offset = requestQueryParams.containsKey("offset")
-                    ? Integer.valueOf(requestQueryParams.get("offset").get(0)) : 0;
-
-            int max = requestQueryParams.containsKey("max")
-                    ? Integer.valueOf(requestQueryParams.get("max").get(0)) : DEFAULT_MAX;
-
-            int cmax = requestQueryParams.containsKey("cmax") ? 
-                    Integer.valueOf(requestQueryParams.get("cmax").get(0)) : 100000;
-            int coffset = requestQueryParams.containsKey("coffset") ? 
-                    Integer.valueOf(requestQueryParams.get("coffset").get(0)) : 0;
             if(includeDatasets && dsCount > 0){
-                RequestView rv = new RequestView(RecordType.FOLDER, null);
                 ArrayList<DatacatNode> datasets = new ArrayList<>();
-                DatasetResultSetModel searchResults = getDatasets(client, path, rv, requestQueryParams, offset, max);
-                for(DatacatNode d: searchResults.getResults()){
-                    if(!d.getType().isContainer()){
-                        datasets.add(d);
+                if(searchDatasets){
+                    RequestView rv = new RequestView(RecordType.FOLDER, null);
+                    DatasetResultSetModel searchResults = getDatasets(client, path, rv, requestQueryParams, offset, max);
+                    for(DatacatNode d: searchResults.getResults()){
+                        if(!d.getType().isContainer()){
+                            datasets.add(d);
+                        }
                     }
+                    requestModel.setDatasetCount(searchResults.getCount());
+                } else {
+                    datasets.addAll(getDatasets(page));
+                    requestModel.setDatasetCount(page.getDatasetCount());
                 }
                 requestModel.setDatasets(datasets);
-                requestModel.setDatasetCount(searchResults.getCount());
-                // Paging
-                StringBuffer reqUrl = request.getRequestURL();
-                if(request.getQueryString() != null){
-                    reqUrl.append('?').append(request.getQueryString());
-                }
-                requestModel.setContainers(client.getContainers(PathUtils.getParentPath(path), coffset, cmax, null));
+                requestModel.setContainers(page.getSiblings());
             } else if (ccCount > 0){
-                List<DatasetContainer> childContainers = new ArrayList<>();
-                List<DatasetContainer> containers = client.getContainers(path, coffset, cmax, "basic");
-                for(DatasetContainer container: containers){
-                    BasicStat stat = (BasicStat) container.getStat();
-                    // Dive in recursively until we find a non-empty container
-                    while(stat.getChildCount() == 1 && stat.getFolderCount() + stat.getGroupCount() == 1){
-                        container = client.getContainers(container.getPath(), coffset, cmax, "basic").get(0);
-                        stat = (BasicStat) container.getStat();
-                    }
-                    childContainers.add(container);
-                }
-                requestModel.setContainers(childContainers);
+                // Single-child chains are already collapsed
+                requestModel.setContainers(page.getContainers());
             }
             if (ccCount == 0){
                 if(requestModel.getContainers() == null){
-                    requestModel.setContainers(client.getContainers(PathUtils.getParentPath(path), coffset, cmax, null));
+                    requestModel.setContainers(page.getSiblings());
                 }
                 requestModel.setSelected(target);
             }
@@ -178,8 +242,7 @@ public class ControllerUtils {
         int offset = requestQueryParams.containsKey("offset")
                 ? Integer.valueOf(requestQueryParams.get("offset").get(0)) : 0;
 
-        int max = requestQueryParams.containsKey("max")
-                ? Integer.valueOf(requestQueryParams.get("max").get(0)) : DEFAULT_MAX;
+        int max = getMax(requestQueryParams);
 
         ArrayList<DatacatNode> datasets = new ArrayList<>();
         DatasetResultSetModel searchResults = getDatasets(client, searchPath, rv, requestQueryParams, offset, max);
@@ -200,6 +263,24 @@ public class ControllerUtils {
         return targetModel;
     }
     
+    /**
+     * The number of datasets to show on a page. At least one is shown, the REST API leaves the
+     * datasets out of a page when none are requested.
+     */
+    static int getMax(Map<String, List<String>> requestQueryParams){
+        int max = requestQueryParams.containsKey("max")
+                ? Integer.valueOf(requestQueryParams.get("max").get(0)) : DEFAULT_MAX;
+        return Math.max(max, 1);
+    }
+
+    /**
+     * The datasets of a page, which are missing if none were requested.
+     */
+    static List<DatacatNode> getDatasets(PageModel page){
+        List<DatacatNode> datasets = page.getDatasets();
+        return datasets != null ? datasets : Collections.<DatacatNode>emptyList();
+    }
+
     public static HashMap<String, List<String>> getQueryParams(HttpServletRequest request){
         HashMap<String, List<String>> requestQueryParams = new HashMap<>();
         Map<String, String[]> params = request.getParameterMap();
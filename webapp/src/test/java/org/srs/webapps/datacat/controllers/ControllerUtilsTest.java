@@ -0,0 +1,37 @@
+package org.srs.webapps.datacat.controllers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.srs.datacat.model.DatacatNode;
+import org.srs.datacat.rest.PageModel;
+
+/**
+ *
+ * @author bvan
+ */
+public class ControllerUtilsTest {
+
+    @Test
+    public void testMax(){
+        HashMap<String, List<String>> params = new HashMap<>();
+        TestCase.assertEquals(ControllerUtils.DEFAULT_MAX, ControllerUtils.getMax(params));
+        params.put("max", Arrays.asList("25"));
+        TestCase.assertEquals(25, ControllerUtils.getMax(params));
+        // No datasets would be requested, so the page would have none
+        params.put("max", Arrays.asList("0"));
+        TestCase.assertEquals(1, ControllerUtils.getMax(params));
+        params.put("max", Arrays.asList("-5"));
+        TestCase.assertEquals(1, ControllerUtils.getMax(params));
+    }
+
+    @Test
+    public void testPageWithoutDatasets(){
+        PageModel page = new PageModel.Builder().datasetCount(10).build();
+        TestCase.assertEquals(Collections.<DatacatNode>emptyList(), ControllerUtils.getDatasets(page));
+    }
+
+}